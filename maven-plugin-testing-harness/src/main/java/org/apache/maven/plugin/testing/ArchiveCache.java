@@ -0,0 +1,250 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Content-addressed store of generated archives, used by {@link ArtifactStubFactory} to avoid building the same
+ * unpackable file again and again. An archive is identified by its archiver type, the hash of the packed source file
+ * content and the entry name it is packed under. As the factory names the entry after the coordinates of the artifact,
+ * an archive is only reused for the same artifact, never across artifacts. Cached archives live in a plain directory,
+ * so they survive across test runs, and are restored as hard links when possible, otherwise as copies. Restored files
+ * should thus be treated as read-only.
+ *
+ * @since 3.0.1
+ */
+public class ArchiveCache
+{
+    private final File directory;
+
+    private final ConcurrentMap<String, String> contentHashes = new ConcurrentHashMap<String, String>();
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private boolean linkFiles = true;
+
+    /**
+     * @param directory where to store the cached archives, created if needed
+     */
+    public ArchiveCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Computes the cache key of an archive. The entry name is part of the key, as it is part of the archive: archives
+     * packing the same content under different names are cached separately.
+     *
+     * @param type the archiver type, usually the extension of the archive
+     * @param srcFile the file packed in the archive
+     * @param entryName the name of the file in the archive
+     * @return the key
+     * @throws IOException if the source file cannot be read
+     */
+    public String getKey( String type, File srcFile, String entryName )
+        throws IOException
+    {
+        return digest( type + '\0' + getContentHash( srcFile ) + '\0' + entryName ) + "." + type;
+    }
+
+    /**
+     * Restores a cached archive.
+     *
+     * @param key the key of the archive, as computed by {@link #getKey(String, File, String)}
+     * @param destFile where to restore it
+     * @return <code>true</code> on a cache hit, <code>false</code> if the archive isn't cached
+     * @throws IOException if the archive cannot be restored
+     */
+    public boolean restore( String key, File destFile )
+        throws IOException
+    {
+        File cached = new File( directory, key );
+        if ( !cached.isFile() )
+        {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        if ( !linkFiles || !ArtifactFileUtils.link( cached, destFile ) )
+        {
+            ArtifactFileUtils.copy( cached, destFile );
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Adds an archive to the cache. Concurrent stores of the same key, even from other JVMs, are safe: the first one
+     * wins.
+     *
+     * @param key the key of the archive, as computed by {@link #getKey(String, File, String)}
+     * @param archive the archive to cache
+     * @throws IOException if the archive cannot be stored
+     */
+    public void store( String key, File archive )
+        throws IOException
+    {
+        File cached = new File( directory, key );
+        if ( cached.isFile() )
+        {
+            return;
+        }
+
+        directory.mkdirs();
+        File tmp = File.createTempFile( key, ".tmp", directory );
+        try
+        {
+            ArtifactFileUtils.copy( archive, tmp );
+            if ( !tmp.renameTo( cached ) && !cached.isFile() )
+            {
+                // the file system refused the rename, and no concurrent store won: copy in place instead
+                try
+                {
+                    ArtifactFileUtils.copy( archive, cached );
+                }
+                catch ( IOException e )
+                {
+                    cached.delete();
+                    throw e;
+                }
+            }
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * @return Returns the directory of the cache.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @return Returns the number of archives restored from the cache.
+     */
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return Returns the number of lookups that didn't find a cached archive.
+     */
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return Returns true if archives are restored as hard links when possible.
+     */
+    public boolean isLinkFiles()
+    {
+        return linkFiles;
+    }
+
+    /**
+     * @param linkFiles Set to false to always restore archives as copies, for tests that modify them.
+     */
+    public void setLinkFiles( boolean linkFiles )
+    {
+        this.linkFiles = linkFiles;
+    }
+
+    private String getContentHash( File srcFile )
+        throws IOException
+    {
+        // the file is only hashed again when it changes
+        String id = srcFile.getAbsolutePath() + '\0' + srcFile.length() + '\0' + srcFile.lastModified();
+        String hash = contentHashes.get( id );
+        if ( hash == null )
+        {
+            MessageDigest digest = newDigest();
+            InputStream in = new FileInputStream( srcFile );
+            try
+            {
+                byte[] buffer = new byte[8192];
+                for ( int n = in.read( buffer ); n >= 0; n = in.read( buffer ) )
+                {
+                    digest.update( buffer, 0, n );
+                }
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+            hash = toHex( digest.digest() );
+            contentHashes.put( id, hash );
+        }
+        return hash;
+    }
+
+    private static String digest( String value )
+    {
+        try
+        {
+            return toHex( newDigest().digest( value.getBytes( "UTF-8" ) ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not available: " + e.getMessage() );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder buffer = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            buffer.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return buffer.toString();
+    }
+}
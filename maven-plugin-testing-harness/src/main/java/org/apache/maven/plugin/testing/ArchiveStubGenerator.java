@@ -0,0 +1,347 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * This class generates large synthetic zip archives (jar, war, ...) to be used for benchmarking mojos that unpack or
+ * repackage dependencies. Unlike the unpackable files of {@link ArtifactStubFactory}, which wrap a single source
+ * file, it writes a configurable number of entries, nested in directories up to a given
+ * depth, with sizes spread log-uniformly between a minimum and a maximum, a share of entries repeating the content of
+ * earlier ones and a share of entries stored without compression. Entries are streamed to disk one by one: only the
+ * buffer of the biggest entry and the zip central directory are kept in memory. The content is compressible text, and
+ * all random choices derive from the seed, so the same settings always produce the same archive.
+ *
+ * @since 3.0.1
+ */
+public class ArchiveStubGenerator
+{
+    private static final byte[] ALPHABET = "etaoinshrdlu \n.,".getBytes();
+
+    /** Fixed entry time, so that archives are reproducible: 2000-01-01. */
+    private static final long ENTRY_TIME = 946684800000L;
+
+    private final long seed;
+
+    private int entryCount = 1000;
+
+    private int depth = 4;
+
+    private int directoryFanOut = 8;
+
+    private int minEntrySize = 16;
+
+    private int maxEntrySize = 64 * 1024;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private double duplicateRatio = 0.1;
+
+    private double storedRatio;
+
+    /**
+     * Default constructor, using a seed of <code>0</code>.
+     */
+    public ArchiveStubGenerator()
+    {
+        this( 0L );
+    }
+
+    /**
+     * @param seed the seed for all random choices made while generating archives
+     */
+    public ArchiveStubGenerator( long seed )
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the archive of each artifact in <code>workingDir</code>, named like {@link ArtifactStubFactory} does,
+     * and sets it as the artifact file. The archives of different artifacts differ, but each one only depends on the
+     * seed and the artifact coordinates.
+     *
+     * @param artifacts the artifacts to attach archives to
+     * @param workingDir where to create the archives
+     * @throws IOException if any archive cannot be written
+     */
+    public void setArchiveFiles( Collection<Artifact> artifacts, File workingDir )
+        throws IOException
+    {
+        for ( Artifact artifact : artifacts )
+        {
+            setArchiveFile( artifact, workingDir );
+        }
+    }
+
+    /**
+     * Generates the archive of an artifact in <code>workingDir</code> and sets it as the artifact file.
+     *
+     * @param artifact the artifact to attach an archive to
+     * @param workingDir where to create the archive
+     * @return the archive
+     * @throws IOException if the archive cannot be written
+     */
+    public File setArchiveFile( Artifact artifact, File workingDir )
+        throws IOException
+    {
+        String fileName = ArtifactStubFactory.getFormattedFileName( artifact, false );
+        File destFile = new File( workingDir, fileName );
+        destFile.getParentFile().mkdirs();
+
+        createArchive( destFile, seed * 31 + fileName.hashCode() );
+
+        artifact.setFile( destFile );
+        return destFile;
+    }
+
+    /**
+     * Generates an archive.
+     *
+     * @param destFile the archive to write
+     * @throws IOException if the archive cannot be written
+     */
+    public void createArchive( File destFile )
+        throws IOException
+    {
+        createArchive( destFile, seed );
+    }
+
+    private void createArchive( File destFile, long archiveSeed )
+        throws IOException
+    {
+        if ( minEntrySize < 0 || maxEntrySize < minEntrySize )
+        {
+            throw new IllegalArgumentException( "Invalid entry sizes: " + minEntrySize + " - " + maxEntrySize );
+        }
+
+        Random random = new Random( archiveSeed );
+        byte[] buffer = new byte[maxEntrySize];
+        CRC32 crc = new CRC32();
+
+        ZipOutputStream out =
+            new ZipOutputStream( new BufferedOutputStream( new FileOutputStream( destFile ), 65536 ) );
+        try
+        {
+            out.setLevel( compressionLevel );
+            StringBuilder name = new StringBuilder();
+            for ( int i = 0; i < entryCount; i++ )
+            {
+                name.setLength( 0 );
+                int entryDepth = depth > 0 ? random.nextInt( depth + 1 ) : 0;
+                for ( int level = 0; level < entryDepth; level++ )
+                {
+                    name.append( "dir-" ).append( random.nextInt( directoryFanOut ) ).append( '/' );
+                }
+                name.append( "entry-" ).append( i ).append( ".txt" );
+
+                // a duplicate reuses the content of an earlier entry, recreated from its seed
+                long contentSeed = i > 0 && random.nextDouble() < duplicateRatio ? random.nextInt( i ) : i;
+                int size = fillContent( buffer, archiveSeed ^ ( contentSeed * 0x9E3779B97F4A7C15L ) );
+
+                ZipEntry entry = new ZipEntry( name.toString() );
+                entry.setTime( ENTRY_TIME );
+                if ( storedRatio > 0 && random.nextDouble() < storedRatio )
+                {
+                    crc.reset();
+                    crc.update( buffer, 0, size );
+                    entry.setMethod( ZipEntry.STORED );
+                    entry.setSize( size );
+                    entry.setCompressedSize( size );
+                    entry.setCrc( crc.getValue() );
+                }
+                out.putNextEntry( entry );
+                out.write( buffer, 0, size );
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the size of the content written to the buffer
+     */
+    private int fillContent( byte[] buffer, long contentSeed )
+    {
+        Random random = new Random( contentSeed );
+        int size;
+        if ( maxEntrySize == minEntrySize )
+        {
+            size = minEntrySize;
+        }
+        else
+        {
+            double min = Math.log( minEntrySize + 1 );
+            double max = Math.log( maxEntrySize + 1 );
+            size = (int) Math.min( maxEntrySize, Math.exp( min + random.nextDouble() * ( max - min ) ) - 1 );
+        }
+
+        // one random int gives the characters of eight bytes
+        for ( int i = 0; i < size; )
+        {
+            int bits = random.nextInt();
+            for ( int n = 0; n < 8 && i < size; n++, bits >>>= 4 )
+            {
+                buffer[i++] = ALPHABET[bits & 0x0f];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Returns the number of entries of each archive.
+     */
+    public int getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * @param entryCount The number of entries of each archive. More than 65535 entries require a JVM writing Zip64.
+     */
+    public void setEntryCount( int entryCount )
+    {
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * @return Returns the maximum number of directories above an entry.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @param depth The maximum number of directories above an entry.
+     */
+    public void setDepth( int depth )
+    {
+        this.depth = depth;
+    }
+
+    /**
+     * @return Returns the number of distinct directory names at each level.
+     */
+    public int getDirectoryFanOut()
+    {
+        return directoryFanOut;
+    }
+
+    /**
+     * @param directoryFanOut The number of distinct directory names at each level.
+     */
+    public void setDirectoryFanOut( int directoryFanOut )
+    {
+        this.directoryFanOut = directoryFanOut;
+    }
+
+    /**
+     * @return Returns the minimum size of an entry, in bytes.
+     */
+    public int getMinEntrySize()
+    {
+        return minEntrySize;
+    }
+
+    /**
+     * @return Returns the maximum size of an entry, in bytes.
+     */
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    /**
+     * Sizes are spread log-uniformly between both bounds, so there are as many entries between 100 bytes and 1 kB as
+     * between 1 kB and 10 kB.
+     *
+     * @param minEntrySize The minimum size of an entry, in bytes.
+     * @param maxEntrySize The maximum size of an entry, in bytes.
+     */
+    public void setEntrySizes( int minEntrySize, int maxEntrySize )
+    {
+        this.minEntrySize = minEntrySize;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * @return Returns the compression level of deflated entries.
+     */
+    public int getCompressionLevel()
+    {
+        return compressionLevel;
+    }
+
+    /**
+     * @param compressionLevel The compression level of deflated entries, from 0 to 9, or -1 for the default level.
+     * @see Deflater
+     */
+    public void setCompressionLevel( int compressionLevel )
+    {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return Returns the share of entries repeating the content of an earlier entry.
+     */
+    public double getDuplicateRatio()
+    {
+        return duplicateRatio;
+    }
+
+    /**
+     * @param duplicateRatio The share of entries repeating the content of an earlier entry, between 0 and 1.
+     */
+    public void setDuplicateRatio( double duplicateRatio )
+    {
+        this.duplicateRatio = duplicateRatio;
+    }
+
+    /**
+     * @return Returns the share of entries stored without compression.
+     */
+    public double getStoredRatio()
+    {
+        return storedRatio;
+    }
+
+    /**
+     * @param storedRatio The share of entries stored without compression, between 0 and 1.
+     */
+    public void setStoredRatio( double storedRatio )
+    {
+        this.storedRatio = storedRatio;
+    }
+}
@@ -0,0 +1,163 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * File creation helpers for the stub factories: channel copies, sparse files and hard links. Hard links are created
+ * through <code>java.nio.file</code> when the running JVM provides it, so callers must be ready to fall back to a copy.
+ *
+ * @since 3.0.1
+ */
+final class ArtifactFileUtils
+{
+    private static final Method TO_PATH;
+
+    private static final Method CREATE_LINK;
+
+    static
+    {
+        Method toPath = null;
+        Method createLink = null;
+        try
+        {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            toPath = File.class.getMethod( "toPath" );
+            createLink = Class.forName( "java.nio.file.Files" ).getMethod( "createLink", pathClass, pathClass );
+        }
+        catch ( Exception e )
+        {
+            // pre Java 7: no hard links, callers copy instead
+            toPath = null;
+            createLink = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    private ArtifactFileUtils()
+    {
+        // no op
+    }
+
+    /**
+     * Copies a file through its channels, replacing the destination.
+     *
+     * @param source the file to copy
+     * @param destination the file to create
+     * @throws IOException if any
+     */
+    static void copy( File source, File destination )
+        throws IOException
+    {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try
+        {
+            in = new FileInputStream( source );
+            out = new FileOutputStream( destination );
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+            while ( position < size )
+            {
+                position += inChannel.transferTo( position, size - position, outChannel );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+            IOUtil.close( in );
+        }
+        destination.setLastModified( source.lastModified() );
+    }
+
+    /**
+     * Creates a file of the given length without writing its content, so that file systems supporting sparse files
+     * don't allocate its blocks.
+     *
+     * @param file the file to create
+     * @param length its length in bytes
+     * @throws IOException if any
+     */
+    static void createSparseFile( File file, long length )
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.setLength( length );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Replaces <code>link</code> by a hard link to <code>existing</code>.
+     *
+     * @param existing the file to link to
+     * @param link the link to create
+     * @return <code>true</code> if the link was created, <code>false</code> if hard links aren't supported by the JVM
+     *         or the file system, in which case <code>link</code> doesn't exist anymore
+     */
+    static boolean link( File existing, File link )
+    {
+        if ( CREATE_LINK == null )
+        {
+            return false;
+        }
+        link.delete();
+        try
+        {
+            CREATE_LINK.invoke( null, TO_PATH.invoke( link ), TO_PATH.invoke( existing ) );
+            return true;
+        }
+        catch ( InvocationTargetException e )
+        {
+            // cross device link, unsupported operation, ...
+            return false;
+        }
+        catch ( IllegalAccessException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the running JVM can create hard links
+     */
+    static boolean isLinkSupported()
+    {
+        return CREATE_LINK != null;
+    }
+}
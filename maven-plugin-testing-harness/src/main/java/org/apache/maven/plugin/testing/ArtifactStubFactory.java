@@ -22,13 +22,29 @@ package org.apache.maven.plugin.testing;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.testing.stubs.CoordinatePool;
 import org.apache.maven.plugin.testing.stubs.DefaultArtifactHandlerStub;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -51,6 +67,53 @@ import org.codehaus.plexus.util.StringUtils;
  */
 public class ArtifactStubFactory
 {
+    /**
+     * How the files of artifacts that aren't unpackable are created.
+     *
+     * @since 3.0.1
+     */
+    public enum FileMode
+    {
+        /** An empty file, even if a srcFile is set. */
+        EMPTY,
+        /** A sparse file of {@link ArtifactStubFactory#setFileSize(long) fixed size}, using little disk space. */
+        SPARSE,
+        /** A hard link to the srcFile, falling back to a copy where links aren't supported. */
+        LINK,
+        /** A copy of the srcFile. */
+        COPY
+    }
+
+    private static final String[] GROUP_PREFIXES =
+        { "org.apache", "com.example", "org.codehaus", "io.github", "net.sourceforge", "org.eclipse" };
+
+    private static final String[] RELEASE_VERSIONS =
+        { "1.0", "1.0.1", "1.1", "1.2.3", "2.0", "2.1.0", "2.5", "3.0", "3.1.1", "4.11" };
+
+    private static final String[] SNAPSHOT_VERSIONS = { "1.1-SNAPSHOT", "2.0-SNAPSHOT", "3.2-SNAPSHOT" };
+
+    private static final String[] SCOPES = { Artifact.SCOPE_COMPILE, Artifact.SCOPE_TEST, Artifact.SCOPE_RUNTIME,
+        Artifact.SCOPE_PROVIDED, Artifact.SCOPE_SYSTEM };
+
+    private static final int[] SCOPE_WEIGHTS = { 70, 15, 7, 6, 2 };
+
+    private static final String[] TYPES = { "jar", "pom", "test-jar", "war", "zip", "ejb" };
+
+    private static final int[] TYPE_WEIGHTS = { 84, 5, 4, 3, 2, 2 };
+
+    private static final String[] CLASSIFIERS = { null, "sources", "javadoc", "jdk15" };
+
+    private static final int[] CLASSIFIER_WEIGHTS = { 90, 5, 3, 2 };
+
+    private final ConcurrentMap<String, VersionRange> sharedVersionRanges =
+        new ConcurrentHashMap<String, VersionRange>();
+
+    private double snapshotRatio = 0.1;
+
+    private FileMode fileMode;
+
+    private long fileSize = 1024 * 1024;
+
     private File workingDir;
 
     private boolean createFiles;
@@ -61,6 +124,10 @@ public class ArtifactStubFactory
 
     private ArchiverManager archiverManager;
 
+    private ArchiveCache archiveCache;
+
+    private boolean shareArtifactHandlers;
+
     /**
      * Default constructor. This should be used only if real files aren't needed...just the artifact objects
      */
@@ -157,10 +224,13 @@ public class ArtifactStubFactory
                                     String type, String classifier, boolean optional )
         throws IOException
     {
-        ArtifactHandler ah = new DefaultArtifactHandlerStub( type, classifier );
+        ArtifactHandler ah = shareArtifactHandlers ? DefaultArtifactHandlerStub.getInstance( type, classifier )
+                        : new DefaultArtifactHandlerStub( type, classifier );
 
+        CoordinatePool pool = CoordinatePool.getInstance();
         Artifact artifact =
-            new DefaultArtifact( groupId, artifactId, versionRange, scope, type, classifier, ah, optional );
+            new DefaultArtifact( pool.intern( groupId ), artifactId, versionRange, pool.intern( scope ),
+                                 pool.intern( type ), pool.intern( classifier ), ah, optional );
 
         // i have no idea why this needs to be done manually when isSnapshot is able to figure it out.
         artifact.setRelease( !artifact.isSnapshot() );
@@ -239,6 +309,16 @@ public class ArtifactStubFactory
      */
     private void setArtifactFile( Artifact artifact, File workingDir, File srcFile, boolean createUnpackableFile )
         throws IOException
+    {
+        File theFile = getArtifactFileLocation( artifact, workingDir );
+        theFile.getParentFile().mkdirs();
+
+        writeArtifactFile( artifact, theFile, srcFile, createUnpackableFile );
+
+        artifact.setFile( theFile );
+    }
+
+    private File getArtifactFileLocation( Artifact artifact, File workingDir )
     {
         if ( workingDir == null )
         {
@@ -248,14 +328,17 @@ public class ArtifactStubFactory
 
         String fileName = getFormattedFileName( artifact, false );
 
-        File theFile = new File( workingDir, fileName );
-        theFile.getParentFile().mkdirs();
+        return new File( workingDir, fileName );
+    }
 
-        if ( srcFile == null )
-        {
-            theFile.createNewFile();
-        }
-        else if ( createUnpackableFile )
+    /**
+     * Writes the file of an artifact according to the file mode, assuming its directory exists. Unpackable files are
+     * always real archives: the file mode only applies to the other files.
+     */
+    private void writeArtifactFile( Artifact artifact, File theFile, File srcFile, boolean createUnpackableFile )
+        throws IOException
+    {
+        if ( createUnpackableFile && srcFile != null )
         {
             try
             {
@@ -270,12 +353,25 @@ public class ArtifactStubFactory
                 throw new IOException( "ArchiverException: " + e.getMessage() );
             }
         }
+        else if ( fileMode == FileMode.SPARSE )
+        {
+            ArtifactFileUtils.createSparseFile( theFile, fileSize );
+        }
+        else if ( srcFile == null || fileMode == FileMode.EMPTY )
+        {
+            theFile.createNewFile();
+        }
+        else if ( fileMode == FileMode.LINK )
+        {
+            if ( !ArtifactFileUtils.link( srcFile, theFile ) )
+            {
+                ArtifactFileUtils.copy( srcFile, theFile );
+            }
+        }
         else
         {
-            FileUtils.copyFile( srcFile, theFile );
+            ArtifactFileUtils.copy( srcFile, theFile );
         }
-
-        artifact.setFile( theFile );
     }
 
     /**
@@ -298,10 +394,22 @@ public class ArtifactStubFactory
     public void createUnpackableFile( Artifact artifact, File destFile )
         throws NoSuchArchiverException, ArchiverException, IOException
     {
+        String entryName = getUnpackableFileName( artifact );
+
+        String cacheKey = null;
+        if ( archiveCache != null )
+        {
+            cacheKey = archiveCache.getKey( FileUtils.getExtension( destFile.getName() ), srcFile, entryName );
+            if ( archiveCache.restore( cacheKey, destFile ) )
+            {
+                return;
+            }
+        }
+
         Archiver archiver = archiverManager.getArchiver( destFile );
 
         archiver.setDestFile( destFile );
-        archiver.addFile( srcFile, getUnpackableFileName( artifact ) );
+        archiver.addFile( srcFile, entryName );
 
         try
         {
@@ -320,6 +428,11 @@ public class ArtifactStubFactory
             war.setIgnoreWebxml( false );
         }
         archiver.createArchive();
+
+        if ( archiveCache != null )
+        {
+            archiveCache.store( cacheKey, destFile );
+        }
     }
 
     /**
@@ -474,6 +587,284 @@ public class ArtifactStubFactory
         return set;
     }
 
+    /**
+     * Creates a large set of distinct artifacts with a realistic spread of coordinates, for testing plugins against
+     * big dependency sets. A few groupIds own most of the artifacts, scopes are mostly <code>compile</code> then
+     * <code>test</code>, types are mostly <code>jar</code>, most artifacts have no classifier and a
+     * {@link #setSnapshotRatio(double) share} of them are snapshots. The same count and seed always produce the same
+     * set. Artifact handlers and version ranges are shared between artifacts, and so are the coordinate strings. If
+     * files are to be created, this is done in parallel once all artifacts exist.
+     *
+     * @param count the number of artifacts
+     * @param seed the seed for all random choices
+     * @return a set of <code>DefaultArtifact</code>, in creation order
+     * @throws IOException if any
+     * @since 3.0.1
+     */
+    public Set<Artifact> createArtifacts( int count, long seed )
+        throws IOException
+    {
+        Random random = new Random( seed );
+
+        String[] groupIds = new String[Math.max( 1, count / 25 )];
+        for ( int i = 0; i < groupIds.length; i++ )
+        {
+            groupIds[i] = GROUP_PREFIXES[i % GROUP_PREFIXES.length] + ".group" + i;
+        }
+
+        List<Artifact> artifacts = new ArrayList<Artifact>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            // cubing the uniform draw skews the choice towards the first groups, giving a long tail
+            double skew = random.nextDouble();
+            String groupId = groupIds[(int) ( groupIds.length * skew * skew * skew )];
+
+            boolean snapshot = random.nextDouble() < snapshotRatio;
+            String version = snapshot ? SNAPSHOT_VERSIONS[random.nextInt( SNAPSHOT_VERSIONS.length )]
+                            : RELEASE_VERSIONS[random.nextInt( RELEASE_VERSIONS.length )];
+
+            String scope = SCOPES[pick( random, SCOPE_WEIGHTS )];
+            String type = TYPES[pick( random, TYPE_WEIGHTS )];
+            String classifier = "test-jar".equals( type ) ? "tests" : CLASSIFIERS[pick( random, CLASSIFIER_WEIGHTS )];
+
+            Artifact artifact =
+                new DefaultArtifact( groupId, "artifact-" + i, getSharedVersionRange( version ), scope, type,
+                                     classifier, DefaultArtifactHandlerStub.getInstance( type, classifier ), false );
+            artifact.setRelease( !snapshot );
+            artifacts.add( artifact );
+        }
+
+        if ( createFiles )
+        {
+            setArtifactFiles( artifacts, this.workingDir, this.srcFile, this.createUnpackableFile );
+        }
+
+        return new LinkedHashSet<Artifact>( artifacts );
+    }
+
+    private static int pick( Random random, int[] weights )
+    {
+        int total = 0;
+        for ( int weight : weights )
+        {
+            total += weight;
+        }
+
+        int roll = random.nextInt( total );
+        for ( int i = 0; i < weights.length; i++ )
+        {
+            roll -= weights[i];
+            if ( roll < 0 )
+            {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private VersionRange getSharedVersionRange( String version )
+    {
+        VersionRange range = sharedVersionRanges.get( version );
+        if ( range == null )
+        {
+            range = VersionRange.createFromVersion( version );
+            VersionRange existing = sharedVersionRanges.putIfAbsent( version, range );
+            if ( existing != null )
+            {
+                range = existing;
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Creates the files of many artifacts at once and attaches them, like {@link #setArtifactFile(Artifact, File,
+     * File)} does for a single one, honouring the {@link #setFileMode(FileMode) file mode}. All directories are
+     * created first, then the files are written in parallel, using one thread per available processor.
+     *
+     * @param artifacts the artifacts to attach files to
+     * @param workingDir where to create the files
+     * @param srcFile file to copy or link, or <code>null</code> to create empty files
+     * @throws IOException if any file could not be created
+     * @since 3.0.1
+     */
+    public void setArtifactFiles( Collection<Artifact> artifacts, File workingDir, File srcFile )
+        throws IOException
+    {
+        setArtifactFiles( artifacts, workingDir, srcFile, false );
+    }
+
+    private void setArtifactFiles( Collection<Artifact> artifacts, File workingDir, final File srcFile,
+                                   final boolean createUnpackableFile )
+        throws IOException
+    {
+        final Map<Artifact, File> files = new LinkedHashMap<Artifact, File>();
+        Set<File> directories = new TreeSet<File>();
+        for ( Artifact artifact : artifacts )
+        {
+            File theFile = getArtifactFileLocation( artifact, workingDir );
+            files.put( artifact, theFile );
+            directories.add( theFile.getParentFile() );
+        }
+
+        // sorted, so parents come first and each directory is created once
+        for ( File directory : directories )
+        {
+            if ( !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory() )
+            {
+                throw new IOException( "Unable to create directory " + directory );
+            }
+        }
+
+        int threads = Math.min( Runtime.getRuntime().availableProcessors(), files.size() );
+        if ( threads <= 1 )
+        {
+            for ( Map.Entry<Artifact, File> entry : files.entrySet() )
+            {
+                writeArtifactFile( entry.getKey(), entry.getValue(), srcFile, createUnpackableFile );
+                entry.getKey().setFile( entry.getValue() );
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>( files.size() );
+            for ( final Map.Entry<Artifact, File> entry : files.entrySet() )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws IOException
+                    {
+                        writeArtifactFile( entry.getKey(), entry.getValue(), srcFile, createUnpackableFile );
+                        entry.getKey().setFile( entry.getValue() );
+                        return null;
+                    }
+                } ) );
+            }
+
+            for ( Future<Void> future : futures )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause() instanceof IOException )
+                    {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException( "Unable to create artifact file: " + e.getCause() );
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new IOException( "Interrupted while creating artifact files." );
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Returns the share of snapshots in {@link #createArtifacts(int, long)}.
+     * @since 3.0.1
+     */
+    public double getSnapshotRatio()
+    {
+        return this.snapshotRatio;
+    }
+
+    /**
+     * @param snapshotRatio The share of snapshots, between 0 and 1, in {@link #createArtifacts(int, long)}.
+     * @since 3.0.1
+     */
+    public void setSnapshotRatio( double snapshotRatio )
+    {
+        this.snapshotRatio = snapshotRatio;
+    }
+
+    /**
+     * @return Returns the cache of unpackable files, or <code>null</code> if they are always built.
+     * @since 3.0.1
+     */
+    public ArchiveCache getArchiveCache()
+    {
+        return this.archiveCache;
+    }
+
+    /**
+     * @param archiveCache The cache to reuse unpackable files from, or <code>null</code> to always build them.
+     * @since 3.0.1
+     */
+    public void setArchiveCache( ArchiveCache archiveCache )
+    {
+        this.archiveCache = archiveCache;
+    }
+
+    /**
+     * @return Returns the file mode, or <code>null</code> for the default behaviour.
+     * @since 3.0.1
+     */
+    public FileMode getFileMode()
+    {
+        return this.fileMode;
+    }
+
+    /**
+     * @param fileMode How to create the files of artifacts that aren't unpackable. If <code>null</code>, the srcFile
+     *            is copied if set, otherwise an empty file is created.
+     * @since 3.0.1
+     */
+    public void setFileMode( FileMode fileMode )
+    {
+        this.fileMode = fileMode;
+    }
+
+    /**
+     * @return Returns the size of the files created in {@link FileMode#SPARSE} mode.
+     * @since 3.0.1
+     */
+    public long getFileSize()
+    {
+        return this.fileSize;
+    }
+
+    /**
+     * @param fileSize The size in bytes of the files created in {@link FileMode#SPARSE} mode.
+     * @since 3.0.1
+     */
+    public void setFileSize( long fileSize )
+    {
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * @return Returns true if the created artifacts share one read-only handler per type and classifier.
+     * @since 3.0.1
+     */
+    public boolean isShareArtifactHandlers()
+    {
+        return this.shareArtifactHandlers;
+    }
+
+    /**
+     * @param shareArtifactHandlers Set to true to give the artifacts created by <code>createArtifact</code> the shared
+     *            read-only handler of their type and classifier, see
+     *            {@link DefaultArtifactHandlerStub#getInstance(String, String)}, instead of a handler of their own.
+     *            Artifacts generated in bulk always share their handlers.
+     * @since 3.0.1
+     */
+    public void setShareArtifactHandlers( boolean shareArtifactHandlers )
+    {
+        this.shareArtifactHandlers = shareArtifactHandlers;
+    }
+
     /**
      * @return Returns the createFiles.
      */
@@ -0,0 +1,445 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.ArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.testing.stubs.CompactMavenProjectStub;
+import org.apache.maven.plugin.testing.stubs.DefaultArtifactHandlerStub;
+import org.apache.maven.plugin.testing.stubs.MavenProjectStub;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.codehaus.plexus.PlexusContainer;
+
+/**
+ * This class creates synthetic reactors of <code>MavenProjectStub</code> instances to be used for testing aggregator
+ * and reactor-aware mojos at a realistic scale. The reactor is a tree of modules with a configurable maximum depth and
+ * fan-out, where every module with children is a <code>pom</code> aggregator and the leaves use a weighted mix of
+ * packagings. Leaf modules may depend on other leaf modules that come earlier in the reactor, so the returned list is
+ * always in a valid build order. All random choices derive from the seed, so the same settings always produce the
+ * same reactor.
+ *
+ * @since 3.0.1
+ */
+public class ReactorStubFactory
+{
+    private final long seed;
+
+    private int depth = 3;
+
+    private int fanOut = 10;
+
+    private double dependencyDensity = 0.05;
+
+    private String groupId = "org.apache.maven.plugin.testing.reactor";
+
+    private String version = "1.0-SNAPSHOT";
+
+    private File basedir = new File( "target/synthetic-reactor" );
+
+    private boolean compact;
+
+    private final Map<String, Integer> packagings = new LinkedHashMap<String, Integer>();
+
+    /**
+     * Default constructor, using a seed of <code>0</code>.
+     */
+    public ReactorStubFactory()
+    {
+        this( 0L );
+    }
+
+    /**
+     * @param seed the seed for all random choices made while generating a reactor
+     */
+    public ReactorStubFactory( long seed )
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Adds a packaging to the mix used for leaf modules. If no packaging is added, leaves use
+     * <code>jar</code>, <code>war</code> and <code>maven-plugin</code> with weights 8, 1 and 1.
+     *
+     * @param packaging the packaging, e.g. <code>jar</code>
+     * @param weight the relative weight of this packaging, must be positive
+     */
+    public void addPackaging( String packaging, int weight )
+    {
+        if ( weight <= 0 )
+        {
+            throw new IllegalArgumentException( "The weight of packaging " + packaging + " must be positive." );
+        }
+        packagings.put( packaging, Integer.valueOf( weight ) );
+    }
+
+    /**
+     * Creates a reactor of <code>moduleCount</code> projects. The first project is the execution root, an aggregator
+     * of all top-level modules. Modules are laid out breadth-first, every aggregator gets up to <code>fanOut</code>
+     * children and no module is nested deeper than <code>depth</code> levels below the root.
+     *
+     * @param moduleCount the total number of projects, including the root
+     * @return the projects, in reactor build order
+     * @throws IllegalArgumentException if the count doesn't fit into a tree of the configured depth and fan-out
+     */
+    public List<MavenProject> createReactor( int moduleCount )
+    {
+        if ( moduleCount < 1 )
+        {
+            throw new IllegalArgumentException( "A reactor needs at least one module." );
+        }
+
+        int[] parents = new int[moduleCount];
+        int[] levels = new int[moduleCount];
+        int[] childCounts = new int[moduleCount];
+
+        parents[0] = -1;
+        int parent = 0;
+        for ( int i = 1; i < moduleCount; i++ )
+        {
+            while ( parent < i && ( childCounts[parent] >= fanOut || levels[parent] >= depth ) )
+            {
+                parent++;
+            }
+            if ( parent >= i )
+            {
+                throw new IllegalArgumentException( "A reactor with depth " + depth + " and fan-out " + fanOut
+                    + " cannot hold " + moduleCount + " modules." );
+            }
+            parents[i] = parent;
+            levels[i] = levels[parent] + 1;
+            childCounts[parent]++;
+        }
+
+        Random random = new Random( seed );
+        Map<String, ArtifactHandler> handlers = new HashMap<String, ArtifactHandler>();
+        VersionRange versionRange = VersionRange.createFromVersion( version );
+
+        List<MavenProject> projects = new ArrayList<MavenProject>( moduleCount );
+        List<Integer> leaves = new ArrayList<Integer>();
+        for ( int i = 0; i < moduleCount; i++ )
+        {
+            String packaging = childCounts[i] > 0 || moduleCount == 1 ? "pom" : choosePackaging( random );
+            String artifactId = i == 0 ? "reactor-root" : "module-" + i;
+
+            MavenProject project = compact ? new CompactMavenProjectStub() : new MavenProjectStub( new Model() );
+            project.setGroupId( groupId );
+            project.setArtifactId( artifactId );
+            project.setVersion( version );
+            project.setPackaging( packaging );
+            project.setName( artifactId );
+
+            ArtifactHandler handler = handlers.get( packaging );
+            if ( handler == null )
+            {
+                handler = new DefaultArtifactHandlerStub( packaging, null );
+                handlers.put( packaging, handler );
+            }
+            project.setArtifact( new DefaultArtifact( groupId, artifactId, versionRange, null, packaging, null,
+                                                      handler ) );
+
+            if ( i == 0 )
+            {
+                project.setExecutionRoot( true );
+                project.setFile( new File( basedir, "pom.xml" ) );
+            }
+            else
+            {
+                MavenProject parentProject = projects.get( parents[i] );
+                project.setParent( parentProject );
+                project.setFile( new File( parentProject.getFile().getParentFile(), artifactId + "/pom.xml" ) );
+                parentProject.getModel().addModule( artifactId );
+            }
+
+            if ( !"pom".equals( packaging ) )
+            {
+                project.setDependencies( createDependencies( random, projects, leaves ) );
+                leaves.add( Integer.valueOf( i ) );
+            }
+
+            projects.add( project );
+        }
+
+        collectProjects( projects, parents, childCounts );
+
+        return projects;
+    }
+
+    /**
+     * Creates a reactor of <code>moduleCount</code> projects and wires it into a new <code>MavenSession</code>, with
+     * the execution root as the current project.
+     *
+     * @param container the container for the session, may be <code>null</code>
+     * @param moduleCount the total number of projects, including the root
+     * @return a session holding the generated reactor
+     * @see #createReactor(int)
+     */
+    public MavenSession createSession( PlexusContainer container, int moduleCount )
+    {
+        return createSession( container, createReactor( moduleCount ) );
+    }
+
+    /**
+     * Wires the given reactor into a new <code>MavenSession</code>, with the first project as the current project.
+     *
+     * @param container the container for the session, may be <code>null</code>
+     * @param projects the reactor projects, in build order
+     * @return a session holding the given projects
+     */
+    public MavenSession createSession( PlexusContainer container, List<MavenProject> projects )
+    {
+        MavenSession session =
+            new MavenSession( container, MavenRepositorySystemUtils.newSession(), new DefaultMavenExecutionRequest(),
+                              new DefaultMavenExecutionResult() );
+        session.setProjects( projects );
+        session.setCurrentProject( projects.get( 0 ) );
+        return session;
+    }
+
+    private String choosePackaging( Random random )
+    {
+        if ( packagings.isEmpty() )
+        {
+            int roll = random.nextInt( 10 );
+            return roll < 8 ? "jar" : roll < 9 ? "war" : "maven-plugin";
+        }
+
+        int total = 0;
+        for ( Integer weight : packagings.values() )
+        {
+            total += weight.intValue();
+        }
+
+        int roll = random.nextInt( total );
+        for ( Map.Entry<String, Integer> entry : packagings.entrySet() )
+        {
+            roll -= entry.getValue().intValue();
+            if ( roll < 0 )
+            {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException( "unreachable" );
+    }
+
+    /**
+     * Picks dependencies among the earlier leaves, each with probability <code>dependencyDensity</code>. Gaps between
+     * picks are drawn from a geometric distribution, so the cost is proportional to the number of dependencies
+     * rather than to the number of earlier leaves.
+     */
+    private List<Dependency> createDependencies( Random random, List<MavenProject> projects, List<Integer> leaves )
+    {
+        if ( dependencyDensity <= 0 || leaves.isEmpty() )
+        {
+            return Collections.<Dependency>emptyList();
+        }
+
+        List<Dependency> dependencies = new ArrayList<Dependency>();
+        double logQ = dependencyDensity < 1 ? Math.log( 1 - dependencyDensity ) : 0;
+        int index = -1;
+        while ( true )
+        {
+            if ( dependencyDensity >= 1 )
+            {
+                index++;
+            }
+            else
+            {
+                index += 1 + (int) Math.floor( Math.log( 1 - random.nextDouble() ) / logQ );
+            }
+            if ( index < 0 || index >= leaves.size() )
+            {
+                break;
+            }
+
+            MavenProject target = projects.get( leaves.get( index ).intValue() );
+            Dependency dependency = new Dependency();
+            dependency.setGroupId( target.getGroupId() );
+            dependency.setArtifactId( target.getArtifactId() );
+            dependency.setVersion( target.getVersion() );
+            dependency.setType( target.getArtifact().getType() );
+            dependency.setScope( Artifact.SCOPE_COMPILE );
+            dependencies.add( dependency );
+        }
+        return dependencies.isEmpty() ? Collections.<Dependency>emptyList() : dependencies;
+    }
+
+    private void collectProjects( List<MavenProject> projects, int[] parents, int[] childCounts )
+    {
+        List<List<MavenProject>> collected = new ArrayList<List<MavenProject>>( projects.size() );
+        for ( int i = 0; i < projects.size(); i++ )
+        {
+            collected.add( childCounts[i] > 0 ? new ArrayList<MavenProject>() : null );
+        }
+
+        for ( int i = 1; i < projects.size(); i++ )
+        {
+            for ( int ancestor = parents[i]; ancestor >= 0; ancestor = parents[ancestor] )
+            {
+                collected.get( ancestor ).add( projects.get( i ) );
+            }
+        }
+
+        for ( int i = 0; i < projects.size(); i++ )
+        {
+            List<MavenProject> list = collected.get( i );
+            projects.get( i ).setCollectedProjects(
+                list == null ? Collections.<MavenProject>emptyList() : list );
+        }
+    }
+
+    /**
+     * @return Returns the seed.
+     */
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    /**
+     * @return Returns the maximum nesting depth below the root.
+     */
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+    /**
+     * @param depth The maximum nesting depth below the root to set.
+     */
+    public void setDepth( int depth )
+    {
+        this.depth = depth;
+    }
+
+    /**
+     * @return Returns the maximum number of modules per aggregator.
+     */
+    public int getFanOut()
+    {
+        return this.fanOut;
+    }
+
+    /**
+     * @param fanOut The maximum number of modules per aggregator to set.
+     */
+    public void setFanOut( int fanOut )
+    {
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * @return Returns the probability that a leaf module depends on a given earlier leaf module.
+     */
+    public double getDependencyDensity()
+    {
+        return this.dependencyDensity;
+    }
+
+    /**
+     * @param dependencyDensity The probability, between 0 and 1, that a leaf module depends on a given earlier leaf
+     *            module.
+     */
+    public void setDependencyDensity( double dependencyDensity )
+    {
+        this.dependencyDensity = dependencyDensity;
+    }
+
+    /**
+     * @return Returns the groupId.
+     */
+    public String getGroupId()
+    {
+        return this.groupId;
+    }
+
+    /**
+     * @param groupId The groupId to set.
+     */
+    public void setGroupId( String groupId )
+    {
+        this.groupId = groupId;
+    }
+
+    /**
+     * @return Returns the version.
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @param version The version to set.
+     */
+    public void setVersion( String version )
+    {
+        this.version = version;
+    }
+
+    /**
+     * @return Returns the basedir.
+     */
+    public File getBasedir()
+    {
+        return this.basedir;
+    }
+
+    /**
+     * @param basedir The directory of the root POM to set. No files are created there.
+     */
+    public void setBasedir( File basedir )
+    {
+        this.basedir = basedir;
+    }
+
+    /**
+     * @return Returns whether the reactor is made of <code>CompactMavenProjectStub</code> instances.
+     */
+    public boolean isCompact()
+    {
+        return this.compact;
+    }
+
+    /**
+     * @param compact If <code>true</code>, create <code>CompactMavenProjectStub</code> instances instead of
+     *            <code>MavenProjectStub</code> ones, to keep reactors of many thousand modules small.
+     */
+    public void setCompact( boolean compact )
+    {
+        this.compact = compact;
+    }
+}
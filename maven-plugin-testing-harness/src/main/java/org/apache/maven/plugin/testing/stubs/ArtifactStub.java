@@ -29,11 +29,17 @@ import org.apache.maven.artifact.metadata.ArtifactMetadata;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
 import org.apache.maven.artifact.versioning.VersionRange;
 
 /**
- * Stub class for {@link Artifact} testing.
+ * Stub class for {@link Artifact} testing. Stubs are equal when their <code>groupId</code>, <code>artifactId</code>,
+ * <code>version</code>, <code>type</code> and <code>classifier</code> are, and are ordered like
+ * <code>DefaultArtifact</code> instances. The id, hash code and parsed version of an <code>ArtifactStub</code> are
+ * computed once, and computed again only after a coordinate setter is called; subclasses, which may override the
+ * getters, compute them on every call. The groupId, version, type and scope are shared through the
+ * {@link CoordinatePool}.
  *
  * @author jesse
  * @version $Id: ArtifactStub.java 1340752 2012-05-20 15:20:59Z hboutemy $
@@ -57,14 +63,161 @@ public class ArtifactStub
 
     private ArtifactRepository artifactRepository;
 
+    private String id;
+
+    private int hashCode;
+
+    private ArtifactVersion artifactVersion;
+
+    /** Whether the getters are the ones of this class, so the values derived from them can be cached. */
+    private final boolean cacheable = getClass() == ArtifactStub.class;
+
     /**
-     * By default, return <code>0</code>
+     * By default, compare the <code>groupId</code>, <code>artifactId</code>, <code>type</code>,
+     * <code>classifier</code> and <code>version</code>, like <code>DefaultArtifact</code> does.
      *
      * @see java.lang.Comparable#compareTo(java.lang.Object)
      */
     public int compareTo( Artifact artifact )
     {
-        return 0;
+        int result = compare( getGroupId(), artifact.getGroupId() );
+        if ( result == 0 )
+        {
+            result = compare( getArtifactId(), artifact.getArtifactId() );
+        }
+        if ( result == 0 )
+        {
+            result = compare( getType(), artifact.getType() );
+        }
+        if ( result == 0 )
+        {
+            // like DefaultArtifact, an artifact without classifier comes after the classified ones
+            String classifier = getClassifier();
+            String other = artifact.getClassifier();
+            if ( classifier == null || other == null )
+            {
+                result = classifier == other ? 0 : ( classifier == null ? 1 : -1 );
+            }
+            else
+            {
+                result = classifier.compareTo( other );
+            }
+        }
+        if ( result == 0 )
+        {
+            ArtifactVersion version = getArtifactVersion();
+            ArtifactVersion other;
+            if ( artifact instanceof ArtifactStub )
+            {
+                other = ( (ArtifactStub) artifact ).getArtifactVersion();
+            }
+            else
+            {
+                other = artifact.getVersion() == null ? null : new DefaultArtifactVersion( artifact.getVersion() );
+            }
+            if ( version == null || other == null )
+            {
+                result = version == other ? 0 : ( version == null ? -1 : 1 );
+            }
+            else
+            {
+                result = version.compareTo( other );
+            }
+        }
+        return result;
+    }
+
+    private static int compare( String a, String b )
+    {
+        if ( a == null || b == null )
+        {
+            return a == b ? 0 : ( a == null ? -1 : 1 );
+        }
+        return a.compareTo( b );
+    }
+
+    private ArtifactVersion getArtifactVersion()
+    {
+        if ( !cacheable )
+        {
+            return getVersion() == null ? null : new DefaultArtifactVersion( getVersion() );
+        }
+        if ( artifactVersion == null && getVersion() != null )
+        {
+            artifactVersion = new DefaultArtifactVersion( getVersion() );
+        }
+        return artifactVersion;
+    }
+
+    /**
+     * By default, compare the <code>groupId</code>, <code>artifactId</code>, <code>version</code>, <code>type</code>
+     * and <code>classifier</code>, like <code>DefaultArtifact</code> does.
+     *
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    public boolean equals( Object o )
+    {
+        if ( o == this )
+        {
+            return true;
+        }
+        if ( !( o instanceof Artifact ) )
+        {
+            return false;
+        }
+        if ( o instanceof ArtifactStub && hashCode() != o.hashCode() )
+        {
+            return false;
+        }
+
+        Artifact a = (Artifact) o;
+        return equal( getGroupId(), a.getGroupId() ) && equal( getArtifactId(), a.getArtifactId() )
+            && equal( getVersion(), a.getVersion() ) && equal( getType(), a.getType() )
+            && equal( getClassifier(), a.getClassifier() );
+    }
+
+    private static boolean equal( String a, String b )
+    {
+        return a == null ? b == null : a.equals( b );
+    }
+
+    /**
+     * @return a hash code of the <code>groupId</code>, <code>artifactId</code>, <code>version</code>,
+     *         <code>type</code> and <code>classifier</code>.
+     * @see java.lang.Object#hashCode()
+     */
+    public int hashCode()
+    {
+        int result = hashCode;
+        if ( result == 0 )
+        {
+            result = 17;
+            result = 37 * result + hash( getGroupId() );
+            result = 37 * result + hash( getArtifactId() );
+            result = 37 * result + hash( getType() );
+            result = 37 * result + hash( getVersion() );
+            result = 37 * result + hash( getClassifier() );
+            if ( cacheable )
+            {
+                hashCode = result;
+            }
+        }
+        return result;
+    }
+
+    private static int hash( String value )
+    {
+        return value == null ? 0 : value.hashCode();
+    }
+
+    /**
+     * Forgets the cached id, hash code and version, after a change of coordinates.
+     */
+    private void coordinatesChanged()
+    {
+        id = null;
+        hashCode = 0;
+        artifactVersion = null;
     }
 
     /** {@inheritDoc} */
@@ -88,7 +241,8 @@ public class ArtifactStub
     /** {@inheritDoc} */
     public void setVersion( String version )
     {
-        this.version = version;
+        this.version = CoordinatePool.getInstance().intern( version );
+        coordinatesChanged();
     }
 
     /** {@inheritDoc} */
@@ -110,7 +264,8 @@ public class ArtifactStub
      */
     public void setType( String type )
     {
-        this.type = type;
+        this.type = CoordinatePool.getInstance().intern( type );
+        coordinatesChanged();
     }
 
     /** {@inheritDoc} */
@@ -157,12 +312,28 @@ public class ArtifactStub
     }
 
     /**
-     * @return <code>null</code>.
+     * @return <code>groupId:artifactId:type[:classifier]:version</code>.
      * @see org.apache.maven.artifact.Artifact#getId()
      */
     public String getId()
     {
-        return null;
+        String result = id;
+        if ( result == null )
+        {
+            StringBuilder buffer = new StringBuilder( 64 );
+            buffer.append( getGroupId() ).append( ':' ).append( getArtifactId() ).append( ':' ).append( getType() );
+            if ( hasClassifier() )
+            {
+                buffer.append( ':' ).append( getClassifier() );
+            }
+            buffer.append( ':' ).append( getVersion() );
+            result = buffer.toString();
+            if ( cacheable )
+            {
+                id = result;
+            }
+        }
+        return result;
     }
 
     /**
@@ -291,7 +462,7 @@ public class ArtifactStub
     /** {@inheritDoc} */
     public void setScope( String scope )
     {
-        this.scope = scope;
+        this.scope = CoordinatePool.getInstance().intern( scope );
     }
 
     /**
@@ -326,13 +497,15 @@ public class ArtifactStub
     /** {@inheritDoc} */
     public void setGroupId( String groupId )
     {
-        this.groupId = groupId;
+        this.groupId = CoordinatePool.getInstance().intern( groupId );
+        coordinatesChanged();
     }
 
     /** {@inheritDoc} */
     public void setArtifactId( String artifactId )
     {
         this.artifactId = artifactId;
+        coordinatesChanged();
     }
 
     /**
@@ -0,0 +1,423 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Dependency graph for very large fixtures, holding no <code>Artifact</code> instance. Coordinate strings are pooled
+ * and every node is a row of five int indices into the pool, found through an open-addressed table of node ids
+ * indexed by a hash of that row. An empty classifier is stored as <code>null</code>. Edges are stored in compressed sparse row layout: the
+ * dependencies of node <code>n</code> are the entries <code>offsets[n]</code> to <code>offsets[n + 1]</code> of an
+ * int array of target nodes, with the scope and optional flag of each edge packed into one byte. The graph costs a few
+ * bytes per edge, and the <code>Artifact</code> instances returned by {@link #getDependencies(Artifact)} are created
+ * on each call.
+ * <p/>
+ * Nodes and edges are added first, then the graph is compacted on the first read, or by {@link #compact()}; nothing
+ * can be added afterwards. A compacted graph is safe for concurrent reads without locking.
+ *
+ * @since 3.0.1
+ */
+public class CompactDependencyGraph
+    implements StubDependencyGraph
+{
+    private static final String[] SCOPES = { null, Artifact.SCOPE_COMPILE, Artifact.SCOPE_PROVIDED,
+        Artifact.SCOPE_RUNTIME, Artifact.SCOPE_TEST, Artifact.SCOPE_SYSTEM, Artifact.SCOPE_IMPORT };
+
+    private static final int SCOPE_MASK = 0x07;
+
+    private static final int OPTIONAL_FLAG = 0x08;
+
+    private static final int GROUP_ID = 0;
+
+    private static final int ARTIFACT_ID = 1;
+
+    private static final int VERSION = 2;
+
+    private static final int TYPE = 3;
+
+    private static final int CLASSIFIER = 4;
+
+    private static final int FIELDS = 5;
+
+    private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+    private final List<String> strings = new ArrayList<String>();
+
+    /** Pool indices of the coordinates of each node, {@link #FIELDS} per node. */
+    private int[] nodes = new int[FIELDS * 1024];
+
+    /** Node ids plus one, <code>0</code> marking a free slot, kept at most half full. */
+    private int[] nodeTable = new int[2048];
+
+    private int nodeCount;
+
+    /** Edges as added, three ints each: source, target and flags. Released on compaction. */
+    private int[] edges = new int[3 * 1024];
+
+    private int edgeCount;
+
+    private volatile boolean compacted;
+
+    private int[] offsets;
+
+    private int[] targets;
+
+    private byte[] flags;
+
+    /**
+     * Adds a node, unless the graph already has one with the same coordinates.
+     *
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param version the version
+     * @param type the type
+     * @param classifier the classifier, or <code>null</code>
+     * @return the id of the node
+     * @throws IllegalStateException if the graph is compacted
+     */
+    public synchronized int addNode( String groupId, String artifactId, String version, String type,
+                                     String classifier )
+    {
+        checkNotCompacted();
+        if ( ( nodeCount + 1 ) * FIELDS > nodes.length )
+        {
+            nodes = Arrays.copyOf( nodes, nodes.length * 2 );
+        }
+        // the row after the last node holds the candidate
+        int row = nodeCount * FIELDS;
+        nodes[row + GROUP_ID] = pool( groupId );
+        nodes[row + ARTIFACT_ID] = pool( artifactId );
+        nodes[row + VERSION] = pool( version );
+        nodes[row + TYPE] = pool( type );
+        nodes[row + CLASSIFIER] = pool( normalize( classifier ) );
+
+        int slot = findNode( nodes, row );
+        if ( slot >= 0 )
+        {
+            return slot;
+        }
+        nodeTable[-slot - 1] = nodeCount + 1;
+        nodeCount++;
+        if ( nodeCount * 2 > nodeTable.length )
+        {
+            rehash();
+        }
+        return nodeCount - 1;
+    }
+
+    /**
+     * @param artifact the artifact
+     * @return the id of the node with the coordinates of the artifact, added if needed
+     */
+    public int addNode( Artifact artifact )
+    {
+        return addNode( artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType(),
+                        artifact.getClassifier() );
+    }
+
+    /**
+     * Adds a dependency between two nodes.
+     *
+     * @param from the id of the depending node
+     * @param to the id of the dependency
+     * @param scope the scope of the dependency, or <code>null</code>
+     * @param optional whether the dependency is optional
+     * @throws IllegalStateException if the graph is compacted
+     */
+    public synchronized void addDependency( int from, int to, String scope, boolean optional )
+    {
+        checkNotCompacted();
+        if ( from < 0 || from >= nodeCount || to < 0 || to >= nodeCount )
+        {
+            throw new IllegalArgumentException( "Unknown node: " + ( from < 0 || from >= nodeCount ? from : to ) );
+        }
+
+        if ( ( edgeCount + 1 ) * 3 > edges.length )
+        {
+            edges = Arrays.copyOf( edges, edges.length * 2 );
+        }
+        int row = edgeCount * 3;
+        edges[row] = from;
+        edges[row + 1] = to;
+        edges[row + 2] = scopeCode( scope ) | ( optional ? OPTIONAL_FLAG : 0 );
+        edgeCount++;
+    }
+
+    /**
+     * Adds a dependency, adding both artifacts as nodes if needed.
+     *
+     * @param artifact the depending artifact
+     * @param dependency the dependency, with its scope and optional flag
+     */
+    public void addDependency( Artifact artifact, Artifact dependency )
+    {
+        addDependency( addNode( artifact ), addNode( dependency ), dependency.getScope(), dependency.isOptional() );
+    }
+
+    /**
+     * Builds the compressed rows of the graph from the added edges. Called on the first read if needed.
+     */
+    public synchronized void compact()
+    {
+        if ( compacted )
+        {
+            return;
+        }
+
+        offsets = new int[nodeCount + 1];
+        for ( int i = 0; i < edgeCount; i++ )
+        {
+            offsets[edges[i * 3] + 1]++;
+        }
+        for ( int n = 0; n < nodeCount; n++ )
+        {
+            offsets[n + 1] += offsets[n];
+        }
+
+        targets = new int[edgeCount];
+        flags = new byte[edgeCount];
+        int[] next = Arrays.copyOf( offsets, nodeCount );
+        for ( int i = 0; i < edgeCount; i++ )
+        {
+            int position = next[edges[i * 3]]++;
+            targets[position] = edges[i * 3 + 1];
+            flags[position] = (byte) edges[i * 3 + 2];
+        }
+
+        edges = null;
+        compacted = true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains( Artifact artifact )
+    {
+        return getNodeId( artifact ) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    public List<Artifact> getDependencies( Artifact artifact )
+    {
+        int id = getNodeId( artifact );
+        if ( id < 0 )
+        {
+            return null;
+        }
+
+        int[] ids = getDependencyIds( id );
+        List<Artifact> dependencies = new ArrayList<Artifact>( ids.length );
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            int edge = offsets[id] + i;
+            dependencies.add( createArtifact( ids[i], SCOPES[flags[edge] & SCOPE_MASK],
+                                              ( flags[edge] & OPTIONAL_FLAG ) != 0 ) );
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param artifact the artifact
+     * @return the id of the node with the coordinates of the artifact, or <code>-1</code>
+     */
+    public int getNodeId( Artifact artifact )
+    {
+        if ( !compacted )
+        {
+            compact();
+        }
+        int[] row = new int[FIELDS];
+        row[GROUP_ID] = poolIndex( artifact.getGroupId() );
+        row[ARTIFACT_ID] = poolIndex( artifact.getArtifactId() );
+        row[VERSION] = poolIndex( artifact.getVersion() );
+        row[TYPE] = poolIndex( artifact.getType() );
+        row[CLASSIFIER] = poolIndex( normalize( artifact.getClassifier() ) );
+        for ( int index : row )
+        {
+            if ( index < 0 )
+            {
+                return -1;
+            }
+        }
+        int slot = findNode( row, 0 );
+        return slot >= 0 ? slot : -1;
+    }
+
+    /**
+     * @param row an array holding pool indices of coordinates
+     * @param offset the position of the coordinates in the array
+     * @return the id of the node with these coordinates, or <code>-(slot + 1)</code> of the free slot of the table
+     *         where it would go
+     */
+    private int findNode( int[] row, int offset )
+    {
+        int mask = nodeTable.length - 1;
+        for ( int slot = hash( row, offset ) & mask;; slot = ( slot + 1 ) & mask )
+        {
+            int entry = nodeTable[slot];
+            if ( entry == 0 )
+            {
+                return -slot - 1;
+            }
+            int node = ( entry - 1 ) * FIELDS;
+            if ( nodes[node + GROUP_ID] == row[offset + GROUP_ID]
+                && nodes[node + ARTIFACT_ID] == row[offset + ARTIFACT_ID]
+                && nodes[node + VERSION] == row[offset + VERSION] && nodes[node + TYPE] == row[offset + TYPE]
+                && nodes[node + CLASSIFIER] == row[offset + CLASSIFIER] )
+            {
+                return entry - 1;
+            }
+        }
+    }
+
+    private void rehash()
+    {
+        nodeTable = new int[nodeTable.length * 2];
+        int mask = nodeTable.length - 1;
+        for ( int n = 0; n < nodeCount; n++ )
+        {
+            int slot = hash( nodes, n * FIELDS ) & mask;
+            while ( nodeTable[slot] != 0 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            nodeTable[slot] = n + 1;
+        }
+    }
+
+    private static int hash( int[] row, int offset )
+    {
+        int h = 0;
+        for ( int i = 0; i < FIELDS; i++ )
+        {
+            h = 31 * h + row[offset + i];
+        }
+        // spread the bits, since the table index only keeps the low ones
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ ( h >>> 13 );
+    }
+
+    /**
+     * @param id the id of a node
+     * @return the ids of the direct dependencies of the node
+     */
+    public int[] getDependencyIds( int id )
+    {
+        if ( !compacted )
+        {
+            compact();
+        }
+        return Arrays.copyOfRange( targets, offsets[id], offsets[id + 1] );
+    }
+
+    /**
+     * @param id the id of a node
+     * @return a new artifact with the coordinates of the node, without scope
+     */
+    public Artifact getArtifact( int id )
+    {
+        return createArtifact( id, null, false );
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public synchronized int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of edges
+     */
+    public synchronized int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    private Artifact createArtifact( int id, String scope, boolean optional )
+    {
+        if ( !compacted )
+        {
+            compact();
+        }
+        int row = id * FIELDS;
+        String groupId = strings.get( nodes[row + GROUP_ID] );
+        String artifactId = strings.get( nodes[row + ARTIFACT_ID] );
+        String version = strings.get( nodes[row + VERSION] );
+        String type = strings.get( nodes[row + TYPE] );
+        String classifier = strings.get( nodes[row + CLASSIFIER] );
+
+        return new DefaultArtifact( groupId, artifactId, VersionRange.createFromVersion( version ), scope, type,
+                                    classifier, DefaultArtifactHandlerStub.getInstance( type, classifier ),
+                                    optional );
+    }
+
+    private void checkNotCompacted()
+    {
+        if ( compacted )
+        {
+            throw new IllegalStateException( "The graph is compacted, nothing can be added." );
+        }
+    }
+
+    private int poolIndex( String value )
+    {
+        Integer id = stringIds.get( value );
+        return id == null ? -1 : id.intValue();
+    }
+
+    private static String normalize( String classifier )
+    {
+        return classifier == null || classifier.length() == 0 ? null : classifier;
+    }
+
+    private int pool( String value )
+    {
+        Integer id = stringIds.get( value );
+        if ( id == null )
+        {
+            id = Integer.valueOf( strings.size() );
+            strings.add( value );
+            stringIds.put( value, id );
+        }
+        return id.intValue();
+    }
+
+    private static int scopeCode( String scope )
+    {
+        for ( int i = 1; i < SCOPES.length; i++ )
+        {
+            if ( SCOPES[i].equals( scope ) )
+            {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
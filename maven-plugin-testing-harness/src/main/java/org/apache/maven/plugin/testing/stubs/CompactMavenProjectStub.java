@@ -0,0 +1,330 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Memory-lean stub of <code>MavenProject</code> for very large synthetic reactors. Unlike {@link MavenProjectStub},
+ * it does not shadow the fields of <code>MavenProject</code> with a second set of its own: it only holds the
+ * coordinates and the dependencies until its <code>Model</code> is created, on first access, and keeps the reactor
+ * wiring in the fields of <code>MavenProject</code>. The groupId, version and packaging are shared through the
+ * {@link CoordinatePool}.
+ * Every other method keeps the behaviour of <code>MavenProject</code>, working against the lazily created model.
+ *
+ * @since 3.0.1
+ */
+public class CompactMavenProjectStub
+    extends MavenProject
+{
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private String packaging;
+
+    private String name;
+
+    /** The dependencies while there is no model, <code>null</code> if none were set. */
+    private List<Dependency> dependencies;
+
+    /**
+     * Default constructor
+     */
+    public CompactMavenProjectStub()
+    {
+        super( (Model) null );
+    }
+
+    /**
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param version the version
+     * @param packaging the packaging
+     */
+    public CompactMavenProjectStub( String groupId, String artifactId, String version, String packaging )
+    {
+        this();
+        this.groupId = intern( groupId );
+        this.artifactId = artifactId;
+        this.version = intern( version );
+        this.packaging = intern( packaging );
+    }
+
+    /**
+     * Creates the model on first access, populated with the coordinates and dependencies of this stub.
+     *
+     * @see org.apache.maven.project.MavenProject#getModel()
+     */
+    public Model getModel()
+    {
+        Model model = super.getModel();
+        if ( model == null )
+        {
+            model = new Model();
+            model.setGroupId( groupId );
+            model.setArtifactId( artifactId );
+            model.setVersion( version );
+            model.setPackaging( packaging );
+            model.setName( name );
+            model.setDependencies( dependencies == null ? new ArrayList<Dependency>()
+                            : new ArrayList<Dependency>( dependencies ) );
+            setModel( model );
+        }
+        return model;
+    }
+
+    /**
+     * Shares the groupId, version and packaging of the model through the {@link CoordinatePool}. Keeps the
+     * coordinates and dependencies of the previous model when the model is reset to <code>null</code>.
+     *
+     * @see org.apache.maven.project.MavenProject#setModel(org.apache.maven.model.Model)
+     */
+    public void setModel( Model model )
+    {
+        Model previous = super.getModel();
+        super.setModel( model );
+        if ( model != null )
+        {
+            model.setGroupId( intern( model.getGroupId() ) );
+            model.setVersion( intern( model.getVersion() ) );
+            model.setPackaging( intern( model.getPackaging() ) );
+            // the model holds them from now on
+            groupId = null;
+            artifactId = null;
+            version = null;
+            packaging = null;
+            name = null;
+            dependencies = null;
+        }
+        else if ( previous != null )
+        {
+            groupId = intern( previous.getGroupId() );
+            artifactId = previous.getArtifactId();
+            version = intern( previous.getVersion() );
+            packaging = intern( previous.getPackaging() );
+            name = previous.getName();
+            dependencies = previous.getDependencies();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the model has been created, either by {@link #setModel(Model)} or on access.
+     */
+    public boolean isModelCreated()
+    {
+        return super.getModel() != null;
+    }
+
+    /**
+     * By default, return <code>groupId:artifactId:packaging:version</code>, without creating the model.
+     *
+     * @see org.apache.maven.project.MavenProject#getId()
+     */
+    public String getId()
+    {
+        return getGroupId() + ":" + getArtifactId() + ":" + getPackaging() + ":" + getVersion();
+    }
+
+    /**
+     * By default, return the groupId of the model, or else the one set on this stub, without creating the model.
+     *
+     * @see org.apache.maven.project.MavenProject#getGroupId()
+     */
+    public String getGroupId()
+    {
+        return isModelCreated() ? super.getGroupId() : groupId;
+    }
+
+    /** {@inheritDoc} */
+    public void setGroupId( String groupId )
+    {
+        if ( isModelCreated() )
+        {
+            super.getModel().setGroupId( intern( groupId ) );
+        }
+        else
+        {
+            this.groupId = intern( groupId );
+        }
+    }
+
+    /**
+     * By default, return the artifactId of the model, or else the one set on this stub, without creating the model.
+     *
+     * @see org.apache.maven.project.MavenProject#getArtifactId()
+     */
+    public String getArtifactId()
+    {
+        return isModelCreated() ? super.getArtifactId() : artifactId;
+    }
+
+    /** {@inheritDoc} */
+    public void setArtifactId( String artifactId )
+    {
+        if ( isModelCreated() )
+        {
+            super.getModel().setArtifactId( artifactId );
+        }
+        else
+        {
+            this.artifactId = artifactId;
+        }
+    }
+
+    /**
+     * By default, return the version of the model, or else the one set on this stub, without creating the model.
+     *
+     * @see org.apache.maven.project.MavenProject#getVersion()
+     */
+    public String getVersion()
+    {
+        return isModelCreated() ? super.getVersion() : version;
+    }
+
+    /** {@inheritDoc} */
+    public void setVersion( String version )
+    {
+        if ( isModelCreated() )
+        {
+            super.getModel().setVersion( intern( version ) );
+        }
+        else
+        {
+            this.version = intern( version );
+        }
+    }
+
+    /**
+     * By default, return the packaging of the model, or else the one set on this stub, without creating the model.
+     *
+     * @see org.apache.maven.project.MavenProject#getPackaging()
+     */
+    public String getPackaging()
+    {
+        return isModelCreated() ? super.getPackaging() : packaging;
+    }
+
+    /** {@inheritDoc} */
+    public void setPackaging( String packaging )
+    {
+        if ( isModelCreated() )
+        {
+            super.getModel().setPackaging( intern( packaging ) );
+        }
+        else
+        {
+            this.packaging = intern( packaging );
+        }
+    }
+
+    /**
+     * By default, return the name of the model, or else the one set on this stub, or
+     * <code>Unnamed - <i>id</i></code> if there is none, without creating the model.
+     *
+     * @see org.apache.maven.project.MavenProject#getName()
+     */
+    public String getName()
+    {
+        String value = isModelCreated() ? super.getModel().getName() : name;
+        if ( value == null )
+        {
+            return "Unnamed - " + getId();
+        }
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    public void setName( String name )
+    {
+        if ( isModelCreated() )
+        {
+            super.getModel().setName( name );
+        }
+        else
+        {
+            this.name = name;
+        }
+    }
+
+    /**
+     * By default, return the dependencies of the model, or else the dependencies set on this stub, without creating
+     * the model. The list is created on first access if none were set.
+     *
+     * @see org.apache.maven.project.MavenProject#getDependencies()
+     */
+    public List<Dependency> getDependencies()
+    {
+        if ( isModelCreated() )
+        {
+            return super.getModel().getDependencies();
+        }
+        if ( dependencies == null )
+        {
+            dependencies = new ArrayList<Dependency>();
+        }
+        return dependencies;
+    }
+
+    /**
+     * Keeps the given list as is; pass an immutable list to share it between stubs.
+     *
+     * @see org.apache.maven.project.MavenProject#setDependencies(java.util.List)
+     */
+    public void setDependencies( List<Dependency> dependencies )
+    {
+        if ( isModelCreated() )
+        {
+            super.getModel().setDependencies( dependencies );
+        }
+        else
+        {
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * By default, return the modules of the model, or <code>Collections.EMPTY_LIST</code> if no model has been
+     * created yet.
+     *
+     * @see org.apache.maven.project.MavenProject#getModules()
+     */
+    public List<String> getModules()
+    {
+        if ( !isModelCreated() )
+        {
+            return Collections.<String>emptyList();
+        }
+        return super.getModel().getModules();
+    }
+
+    private static String intern( String value )
+    {
+        return CoordinatePool.getInstance().intern( value );
+    }
+}
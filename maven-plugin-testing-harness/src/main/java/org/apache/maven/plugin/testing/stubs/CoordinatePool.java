@@ -0,0 +1,216 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe pool of low-cardinality coordinate strings, i.e. groupIds, versions, types, classifiers and scopes, so
+ * that the many stubs of a large fixture share one instance of each. Strings are held weakly: once no stub uses a
+ * string anymore, the garbage collector drops it from the pool, so that the shared pool does not grow for the whole
+ * test JVM. High-cardinality strings, like artifactIds or keys unique to a node, should not be pooled: there is
+ * nothing to share, and pooling them only costs the entry.
+ * <p/>
+ * Statistics about the duplicates removed are only kept once {@link #setStatisticsEnabled(boolean) enabled}, to keep
+ * {@link #intern(String)} free of shared counters.
+ *
+ * @since 3.0.1
+ */
+public final class CoordinatePool
+{
+    private static final CoordinatePool INSTANCE = new CoordinatePool();
+
+    private static final int STRIPES = 16;
+
+    /** Each stripe is guarded by its own lock; values are weak references to the keys themselves. */
+    private final Map<String, WeakReference<String>>[] stripes;
+
+    private volatile boolean statisticsEnabled;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Creates an empty pool, e.g. one owned by a fixture and dropped with it.
+     */
+    @SuppressWarnings( "unchecked" )
+    public CoordinatePool()
+    {
+        stripes = new Map[STRIPES];
+        for ( int i = 0; i < STRIPES; i++ )
+        {
+            stripes[i] = new WeakHashMap<String, WeakReference<String>>();
+        }
+    }
+
+    /**
+     * @return the pool shared by the stubs and the {@link org.apache.maven.plugin.testing.ArtifactStubFactory}
+     */
+    public static CoordinatePool getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @param value a string, may be null
+     * @return the pooled instance equal to the given string, or <code>null</code>
+     */
+    public String intern( String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        Map<String, WeakReference<String>> stripe = stripes[( value.hashCode() & 0x7fffffff ) % STRIPES];
+        String pooled;
+        synchronized ( stripe )
+        {
+            WeakReference<String> reference = stripe.get( value );
+            pooled = reference == null ? null : reference.get();
+            if ( pooled == null )
+            {
+                stripe.put( value, new WeakReference<String>( value ) );
+                pooled = value;
+            }
+        }
+        if ( statisticsEnabled )
+        {
+            requestCount.incrementAndGet();
+            if ( pooled != value )
+            {
+                duplicateCount.incrementAndGet();
+                bytesSaved.addAndGet( sizeOf( value ) );
+            }
+        }
+        return pooled;
+    }
+
+    /**
+     * @param parts the coordinates, <code>null</code> ones being written as empty strings
+     * @return the pooled key made of the given coordinates, separated by <code>':'</code>; only worth it for keys
+     *         shared by many stubs
+     */
+    public String key( String... parts )
+    {
+        StringBuilder buffer = new StringBuilder( 64 );
+        for ( int i = 0; i < parts.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                buffer.append( ':' );
+            }
+            if ( parts[i] != null )
+            {
+                buffer.append( parts[i] );
+            }
+        }
+        return intern( buffer.toString() );
+    }
+
+    /**
+     * @return the number of distinct strings in the pool, still used by a stub or not collected yet
+     */
+    public int size()
+    {
+        int size = 0;
+        for ( Map<String, WeakReference<String>> stripe : stripes )
+        {
+            synchronized ( stripe )
+            {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param statisticsEnabled <code>true</code> to count the requests and the duplicates removed from now on,
+     *            <code>false</code> by default
+     */
+    public void setStatisticsEnabled( boolean statisticsEnabled )
+    {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * @return the number of non null strings passed to {@link #intern(String)} or {@link #key(String...)} while the
+     *         statistics were enabled
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests answered with another, pooled instance
+     */
+    public long getDuplicateCount()
+    {
+        return duplicateCount.get();
+    }
+
+    /**
+     * @return the share of requests answered with another, pooled instance, between <code>0</code> and
+     *         <code>1</code>
+     */
+    public double getDedupRatio()
+    {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : (double) duplicateCount.get() / requests;
+    }
+
+    /**
+     * @return the estimated heap size of the duplicates that could be dropped, assuming a 64-bit JVM with compressed
+     *         references and 2 bytes per character
+     */
+    public long getBytesSaved()
+    {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Empties the pool and resets its statistics. Stubs created before still hold their instances.
+     */
+    public void clear()
+    {
+        for ( Map<String, WeakReference<String>> stripe : stripes )
+        {
+            synchronized ( stripe )
+            {
+                stripe.clear();
+            }
+        }
+        requestCount.set( 0 );
+        duplicateCount.set( 0 );
+        bytesSaved.set( 0 );
+    }
+
+    private static long sizeOf( String value )
+    {
+        // String object header and fields, plus the char array header and content, each aligned on 8 bytes
+        return 24 + ( ( 16 + 2L * value.length() + 7 ) & ~7L );
+    }
+}
@@ -19,6 +19,9 @@ package org.apache.maven.plugin.testing.stubs;
  * under the License.
  */
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.maven.artifact.handler.ArtifactHandler;
 
 /**
@@ -30,6 +33,9 @@ import org.apache.maven.artifact.handler.ArtifactHandler;
 public class DefaultArtifactHandlerStub
     implements ArtifactHandler
 {
+    private static final ConcurrentMap<String, DefaultArtifactHandlerStub> INSTANCES =
+        new ConcurrentHashMap<String, DefaultArtifactHandlerStub>();
+
     private String extension;
 
     private String type;
@@ -69,6 +75,33 @@ public class DefaultArtifactHandlerStub
         this.type = type;
     }
 
+    /**
+     * Returns the shared handler of the given type and classifier. It holds the same values as a new
+     * <code>DefaultArtifactHandlerStub( type, classifier )</code>, computed once, so it can be shared between
+     * artifacts and threads. Its setters throw an <code>UnsupportedOperationException</code>: create a handler of
+     * your own to modify it.
+     *
+     * @param type the artifact handler type, not null
+     * @param classifier the artifact handler classifier, may be null
+     * @return the read-only handler of this type and classifier
+     * @since 3.0.1
+     */
+    public static DefaultArtifactHandlerStub getInstance( String type, String classifier )
+    {
+        String key = classifier == null ? type : type + ':' + classifier;
+        DefaultArtifactHandlerStub handler = INSTANCES.get( key );
+        if ( handler == null )
+        {
+            handler = new SharedArtifactHandlerStub( type, classifier );
+            DefaultArtifactHandlerStub existing = INSTANCES.putIfAbsent( key, handler );
+            if ( existing != null )
+            {
+                handler = existing;
+            }
+        }
+        return handler;
+    }
+
     /** {@inheritDoc} */
     public String getExtension()
     {
@@ -199,4 +232,65 @@ public class DefaultArtifactHandlerStub
     {
         this.type = theType;
     }
+
+    /**
+     * Shared handler: every lazy value is computed up front, and the setters fail.
+     */
+    private static final class SharedArtifactHandlerStub
+        extends DefaultArtifactHandlerStub
+    {
+        SharedArtifactHandlerStub( String type, String classifier )
+        {
+            super( type, classifier );
+            getExtension();
+            getDirectory();
+            getLanguage();
+        }
+
+        public void setAddedToClasspath( boolean theAddedToClasspath )
+        {
+            throw readOnly();
+        }
+
+        public void setClassifier( String theClassifier )
+        {
+            throw readOnly();
+        }
+
+        public void setDirectory( String theDirectory )
+        {
+            throw readOnly();
+        }
+
+        public void setExtension( String theExtension )
+        {
+            throw readOnly();
+        }
+
+        public void setIncludesDependencies( boolean theIncludesDependencies )
+        {
+            throw readOnly();
+        }
+
+        public void setLanguage( String theLanguage )
+        {
+            throw readOnly();
+        }
+
+        public void setPackaging( String thePackaging )
+        {
+            throw readOnly();
+        }
+
+        public void setType( String theType )
+        {
+            throw readOnly();
+        }
+
+        private UnsupportedOperationException readOnly()
+        {
+            return new UnsupportedOperationException( "The shared artifact handler of type " + getType()
+                + " cannot be modified: set a new DefaultArtifactHandlerStub on the artifact instead." );
+        }
+    }
 }
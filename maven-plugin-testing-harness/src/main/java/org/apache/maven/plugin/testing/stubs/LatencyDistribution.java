@@ -0,0 +1,111 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Random;
+
+/**
+ * Distribution of the simulated latency of a repository call, in milliseconds, used by {@link StubArtifactResolver}.
+ *
+ * @since 3.0.1
+ */
+public abstract class LatencyDistribution
+{
+    /**
+     * @param random the source of randomness
+     * @return the next latency, in milliseconds
+     */
+    public abstract long nextLatency( Random random );
+
+    /**
+     * @param millis the latency of every call
+     * @return a distribution always returning the same latency
+     */
+    public static LatencyDistribution fixed( final long millis )
+    {
+        return new LatencyDistribution()
+        {
+            public long nextLatency( Random random )
+            {
+                return millis;
+            }
+
+            public String toString()
+            {
+                return "fixed(" + millis + ")";
+            }
+        };
+    }
+
+    /**
+     * @param minMillis the minimum latency
+     * @param maxMillis the maximum latency
+     * @return a distribution spreading latencies uniformly between both bounds
+     */
+    public static LatencyDistribution uniform( final long minMillis, final long maxMillis )
+    {
+        if ( maxMillis < minMillis )
+        {
+            throw new IllegalArgumentException( "Invalid latency range: " + minMillis + " - " + maxMillis );
+        }
+        return new LatencyDistribution()
+        {
+            public long nextLatency( Random random )
+            {
+                return minMillis + (long) ( random.nextDouble() * ( maxMillis - minMillis + 1 ) );
+            }
+
+            public String toString()
+            {
+                return "uniform(" + minMillis + ", " + maxMillis + ")";
+            }
+        };
+    }
+
+    /**
+     * A Pareto distribution: most calls take about <code>minMillis</code>, and a few ones take much longer, the lower
+     * the shape the longer the tail. With a shape of 1.16, 20% of the calls account for 80% of the total latency.
+     *
+     * @param minMillis the minimum latency
+     * @param shape the shape of the distribution, must be positive
+     * @param maxMillis the latency at which the tail is cut
+     * @return a long-tail distribution
+     */
+    public static LatencyDistribution longTail( final long minMillis, final double shape, final long maxMillis )
+    {
+        if ( shape <= 0 )
+        {
+            throw new IllegalArgumentException( "The shape must be positive: " + shape );
+        }
+        return new LatencyDistribution()
+        {
+            public long nextLatency( Random random )
+            {
+                double u = 1.0 - random.nextDouble();
+                return Math.min( maxMillis, (long) ( minMillis / Math.pow( u, 1.0 / shape ) ) );
+            }
+
+            public String toString()
+            {
+                return "longTail(" + minMillis + ", " + shape + ", " + maxMillis + ")";
+            }
+        };
+    }
+}
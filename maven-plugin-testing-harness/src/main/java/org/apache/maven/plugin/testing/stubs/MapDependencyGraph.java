@@ -0,0 +1,129 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Dependency graph holding its artifacts in maps, simple to build from any <code>Artifact</code> instances, e.g.
+ * created by an {@link org.apache.maven.plugin.testing.ArtifactStubFactory}. Adding nodes and edges is thread safe.
+ *
+ * @since 3.0.1
+ */
+public class MapDependencyGraph
+    implements StubDependencyGraph
+{
+    private final ConcurrentMap<String, List<Artifact>> dependencies = new ConcurrentHashMap<String, List<Artifact>>();
+
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    /**
+     * Adds an artifact without dependencies, unless it is already a node of this graph.
+     *
+     * @param artifact the artifact
+     */
+    public void addArtifact( Artifact artifact )
+    {
+        getOrCreate( artifact );
+    }
+
+    /**
+     * Adds a dependency, adding both artifacts as nodes if needed.
+     *
+     * @param artifact the depending artifact
+     * @param dependency the dependency, with its scope and optional flag
+     */
+    public void addDependency( Artifact artifact, Artifact dependency )
+    {
+        List<Artifact> list = getOrCreate( artifact );
+        synchronized ( list )
+        {
+            list.add( dependency );
+        }
+        getOrCreate( dependency );
+        modificationCount.incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains( Artifact artifact )
+    {
+        return dependencies.containsKey( key( artifact ) );
+    }
+
+    /** {@inheritDoc} */
+    public List<Artifact> getDependencies( Artifact artifact )
+    {
+        List<Artifact> list = dependencies.get( key( artifact ) );
+        return list == null ? null : Collections.unmodifiableList( list );
+    }
+
+    /**
+     * @return the number of nodes of this graph
+     */
+    public int size()
+    {
+        return dependencies.size();
+    }
+
+    /**
+     * @return the number of changes made to this graph, to tell whether it changed since it was last read
+     */
+    public long getModificationCount()
+    {
+        return modificationCount.get();
+    }
+
+    private List<Artifact> getOrCreate( Artifact artifact )
+    {
+        String key = key( artifact );
+        List<Artifact> list = dependencies.get( key );
+        if ( list == null )
+        {
+            list = new ArrayList<Artifact>( 4 );
+            List<Artifact> existing = dependencies.putIfAbsent( key, list );
+            if ( existing != null )
+            {
+                list = existing;
+            }
+            else
+            {
+                modificationCount.incrementAndGet();
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @param artifact an artifact
+     * @return <code>groupId:artifactId:type:classifier:version</code>
+     */
+    static String key( Artifact artifact )
+    {
+        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getType() + ':'
+            + ( artifact.getClassifier() == null ? "" : artifact.getClassifier() ) + ':' + artifact.getVersion();
+    }
+}
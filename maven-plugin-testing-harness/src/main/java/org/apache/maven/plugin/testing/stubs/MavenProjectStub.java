@@ -66,6 +66,11 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 /**
  * Very simple stub of <code>MavenProject</code> object, going to take a lot of work to make it
  * useful as a stub though.
+ * <p>
+ * Artifacts given to {@link #setArtifacts(Set)} or {@link #addArtifact(Artifact)} are indexed by scope as they are
+ * added or removed, so the compile, runtime, test and system artifacts, dependencies and classpath elements are
+ * derived from them, unless set explicitly. The lists returned are immutable, and shared until the artifacts change.
+ * </p>
  *
  * @author jesse
  * @version $Id: MavenProjectStub.java 1340752 2012-05-20 15:20:59Z hboutemy $
@@ -123,6 +128,8 @@ public class MavenProjectStub
 
     private boolean executionRoot;
 
+    private List<Dependency> dependencies;
+
     private List<Artifact> compileArtifacts;
 
     private List<Dependency> compileDependencies;
@@ -163,6 +170,8 @@ public class MavenProjectStub
 
     private Build build;
 
+    private ScopedArtifacts scopedArtifacts;
+
     /**
      * Default constructor
      */
@@ -307,14 +316,10 @@ public class MavenProjectStub
         return new File( PlexusTestCase.getBasedir() );
     }
 
-    /**
-     * By default, do nothing.
-     *
-     * @see org.apache.maven.project.MavenProject#setDependencies(java.util.List)
-     */
+    /** {@inheritDoc} */
     public void setDependencies( List<Dependency> list )
     {
-        // nop
+        this.dependencies = list;
     }
 
     /**
@@ -324,7 +329,11 @@ public class MavenProjectStub
      */
     public List<Dependency> getDependencies()
     {
-        return Collections.<Dependency>emptyList();
+        if ( dependencies == null )
+        {
+            return Collections.<Dependency>emptyList();
+        }
+        return dependencies;
     }
 
     /**
@@ -394,11 +403,20 @@ public class MavenProjectStub
         return testCompileSourceRoots;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the compile source roots if they were set, or else the output directory of the build
+     * followed by the files of the compile, provided and system scoped artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getCompileClasspathElements()
+     */
     public List<String> getCompileClasspathElements()
         throws DependencyResolutionRequiredException
     {
-        return compileSourceRoots;
+        if ( compileSourceRoots != null || getScopedArtifacts().isEmpty() )
+        {
+            return compileSourceRoots;
+        }
+        return getScopedArtifacts().getClasspathElements( ScopedArtifacts.COMPILE, getBuildOutputDirectory() );
     }
 
     /**
@@ -409,67 +427,149 @@ public class MavenProjectStub
         this.compileArtifacts = compileArtifacts;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the compile, provided and system scoped artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getCompileArtifacts()
+     */
     public List<Artifact> getCompileArtifacts()
     {
-        return compileArtifacts;
+        if ( compileArtifacts != null )
+        {
+            return compileArtifacts;
+        }
+        return getScopedArtifacts().getArtifacts( ScopedArtifacts.COMPILE );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the compile, provided and system scoped artifacts, as dependencies.
+     *
+     * @see org.apache.maven.project.MavenProject#getCompileDependencies()
+     */
     public List<Dependency> getCompileDependencies()
     {
-        return compileDependencies;
+        if ( compileDependencies != null )
+        {
+            return compileDependencies;
+        }
+        return getScopedArtifacts().getDependencies( ScopedArtifacts.COMPILE );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the test output and output directories of the build, followed by the files of all artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getTestClasspathElements()
+     */
     public List<String> getTestClasspathElements()
         throws DependencyResolutionRequiredException
     {
-        return testClasspathElements;
+        if ( testClasspathElements != null )
+        {
+            return testClasspathElements;
+        }
+        return getScopedArtifacts().getClasspathElements( ScopedArtifacts.TEST, getBuildTestOutputDirectory(),
+                                                          getBuildOutputDirectory() );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return all artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getTestArtifacts()
+     */
     public List<Artifact> getTestArtifacts()
     {
-        return testArtifacts;
+        if ( testArtifacts != null )
+        {
+            return testArtifacts;
+        }
+        return getScopedArtifacts().getArtifacts( ScopedArtifacts.TEST );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return all artifacts, as dependencies.
+     *
+     * @see org.apache.maven.project.MavenProject#getTestDependencies()
+     */
     public List<Dependency> getTestDependencies()
     {
-        return testDependencies;
+        if ( testDependencies != null )
+        {
+            return testDependencies;
+        }
+        return getScopedArtifacts().getDependencies( ScopedArtifacts.TEST );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the output directory of the build, followed by the files of the compile and runtime scoped
+     * artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getRuntimeClasspathElements()
+     */
     public List<String> getRuntimeClasspathElements()
         throws DependencyResolutionRequiredException
     {
-        return runtimeClasspathElements;
+        if ( runtimeClasspathElements != null )
+        {
+            return runtimeClasspathElements;
+        }
+        return getScopedArtifacts().getClasspathElements( ScopedArtifacts.RUNTIME, getBuildOutputDirectory() );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the compile and runtime scoped artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getRuntimeArtifacts()
+     */
     public List<Artifact> getRuntimeArtifacts()
     {
-        return runtimeArtifacts;
+        if ( runtimeArtifacts != null )
+        {
+            return runtimeArtifacts;
+        }
+        return getScopedArtifacts().getArtifacts( ScopedArtifacts.RUNTIME );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the compile and runtime scoped artifacts, as dependencies.
+     *
+     * @see org.apache.maven.project.MavenProject#getRuntimeDependencies()
+     */
     public List<Dependency> getRuntimeDependencies()
     {
-        return runtimeDependencies;
+        if ( runtimeDependencies != null )
+        {
+            return runtimeDependencies;
+        }
+        return getScopedArtifacts().getDependencies( ScopedArtifacts.RUNTIME );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the output directory of the build, followed by the files of the system scoped artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getSystemClasspathElements()
+     */
     public List<String> getSystemClasspathElements()
         throws DependencyResolutionRequiredException
     {
-        return systemClasspathElements;
+        if ( systemClasspathElements != null )
+        {
+            return systemClasspathElements;
+        }
+        return getScopedArtifacts().getClasspathElements( ScopedArtifacts.SYSTEM, getBuildOutputDirectory() );
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the system scoped artifacts.
+     *
+     * @see org.apache.maven.project.MavenProject#getSystemArtifacts()
+     */
     public List<Artifact> getSystemArtifacts()
     {
-        return systemArtifacts;
+        if ( systemArtifacts != null )
+        {
+            return systemArtifacts;
+        }
+        return getScopedArtifacts().getArtifacts( ScopedArtifacts.SYSTEM );
     }
 
     /**
@@ -640,10 +740,18 @@ public class MavenProjectStub
         this.model = model;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * By default, return the system scoped artifacts, as dependencies.
+     *
+     * @see org.apache.maven.project.MavenProject#getSystemDependencies()
+     */
     public List<Dependency> getSystemDependencies()
     {
-        return systemDependencies;
+        if ( systemDependencies != null )
+        {
+            return systemDependencies;
+        }
+        return getScopedArtifacts().getDependencies( ScopedArtifacts.SYSTEM );
     }
 
     /** {@inheritDoc} */
@@ -671,7 +779,7 @@ public class MavenProjectStub
     /** {@inheritDoc} */
     public void setGroupId( String string )
     {
-        this.groupId = string;
+        this.groupId = CoordinatePool.getInstance().intern( string );
     }
 
     /** {@inheritDoc} */
@@ -707,7 +815,7 @@ public class MavenProjectStub
     /** {@inheritDoc} */
     public void setVersion( String string )
     {
-        this.version = string;
+        this.version = CoordinatePool.getInstance().intern( string );
     }
 
     /** {@inheritDoc} */
@@ -725,7 +833,7 @@ public class MavenProjectStub
     /** {@inheritDoc} */
     public void setPackaging( String string )
     {
-        this.packaging = string;
+        this.packaging = CoordinatePool.getInstance().intern( string );
     }
 
     /** {@inheritDoc} */
@@ -1059,23 +1167,79 @@ public class MavenProjectStub
     }
 
     /**
-     * By default, do nothing.
+     * Replaces the artifacts of this stub, from which the scoped views are derived.
      *
      * @see org.apache.maven.project.MavenProject#setArtifacts(java.util.Set)
      */
     public void setArtifacts( Set<Artifact> set )
     {
-        // nop
+        ScopedArtifacts artifacts = getScopedArtifacts();
+        artifacts.clear();
+        if ( set != null )
+        {
+            for ( Artifact artifact : set )
+            {
+                artifacts.add( artifact );
+            }
+        }
     }
 
     /**
-     * By default, return <code>Collections.EMPTY_SET</code>.
+     * By default, return an unmodifiable copy of the artifacts, <code>Collections.EMPTY_SET</code> if none were added.
      *
      * @see org.apache.maven.project.MavenProject#getArtifacts()
      */
     public Set<Artifact> getArtifacts()
     {
-        return Collections.<Artifact>emptySet();
+        if ( getScopedArtifacts().isEmpty() )
+        {
+            return Collections.<Artifact>emptySet();
+        }
+        return getScopedArtifacts().getArtifacts();
+    }
+
+    /**
+     * Adds an artifact, updating only the scoped views it belongs to. Its scope must not change afterwards.
+     *
+     * @param artifact the artifact
+     * @return <code>true</code> if the artifact was not already there
+     * @since 3.0.1
+     */
+    public boolean addArtifact( Artifact artifact )
+    {
+        return getScopedArtifacts().add( artifact );
+    }
+
+    /**
+     * Removes an artifact, updating only the scoped views it belonged to.
+     *
+     * @param artifact the artifact
+     * @return <code>true</code> if the artifact was there
+     * @since 3.0.1
+     */
+    public boolean removeArtifact( Artifact artifact )
+    {
+        return getScopedArtifacts().remove( artifact );
+    }
+
+    private ScopedArtifacts getScopedArtifacts()
+    {
+        // created lazily, as the MavenProject constructor may call overridden methods before fields are initialized
+        if ( scopedArtifacts == null )
+        {
+            scopedArtifacts = new ScopedArtifacts();
+        }
+        return scopedArtifacts;
+    }
+
+    private String getBuildOutputDirectory()
+    {
+        return getBuild() == null ? null : getBuild().getOutputDirectory();
+    }
+
+    private String getBuildTestOutputDirectory()
+    {
+        return getBuild() == null ? null : getBuild().getTestOutputDirectory();
     }
 
     /**
@@ -1229,13 +1393,17 @@ public class MavenProjectStub
     }
 
     /**
-     * By default, return <code>Collections.EMPTY_LIST</code>.
+     * By default, return the modules of the stub model, or <code>Collections.EMPTY_LIST</code> if there is no model.
      *
      * @see org.apache.maven.project.MavenProject#getModules()
      */
     public List<String> getModules()
     {
-        return Collections.<String>emptyList();
+        if ( model == null )
+        {
+            return Collections.<String>emptyList();
+        }
+        return model.getModules();
     }
 
     /**
@@ -0,0 +1,102 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Record of one call to {@link StubArtifactResolver#resolve(org.apache.maven.artifact.Artifact, java.util.List,
+ * org.apache.maven.artifact.repository.ArtifactRepository)}, to measure the parallelism of the code under test.
+ *
+ * @since 3.0.1
+ */
+public final class ResolutionCall
+{
+    private final String artifactId;
+
+    private final long startNanos;
+
+    private final long endNanos;
+
+    private final int concurrency;
+
+    private final boolean failed;
+
+    ResolutionCall( String artifactId, long startNanos, long endNanos, int concurrency, boolean failed )
+    {
+        this.artifactId = artifactId;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+        this.concurrency = concurrency;
+        this.failed = failed;
+    }
+
+    /**
+     * @return the <code>groupId:artifactId:version</code> of the resolved artifact
+     */
+    public String getArtifactId()
+    {
+        return artifactId;
+    }
+
+    /**
+     * @return the start of the call, as given by <code>System.nanoTime()</code>
+     */
+    public long getStartNanos()
+    {
+        return startNanos;
+    }
+
+    /**
+     * @return the end of the call, as given by <code>System.nanoTime()</code>
+     */
+    public long getEndNanos()
+    {
+        return endNanos;
+    }
+
+    /**
+     * @return the duration of the call, in nanoseconds
+     */
+    public long getDurationNanos()
+    {
+        return endNanos - startNanos;
+    }
+
+    /**
+     * @return the number of calls in progress when this one started, including itself
+     */
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    /**
+     * @return <code>true</code> if the call threw an exception
+     */
+    public boolean isFailed()
+    {
+        return failed;
+    }
+
+    /** {@inheritDoc} */
+    public String toString()
+    {
+        return artifactId + " " + ( getDurationNanos() / 1000000 ) + "ms x" + concurrency + ( failed ? " failed" : "" );
+    }
+}
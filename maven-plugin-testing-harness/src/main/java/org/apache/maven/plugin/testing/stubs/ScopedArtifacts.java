@@ -0,0 +1,297 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+
+/**
+ * Artifacts of a {@link MavenProjectStub}, indexed by classpath scope. Each artifact gets a slot, and each view a bit
+ * set of the slots it includes, updated on every addition or removal. The lists returned for a view, and the set of all
+ * artifacts, are immutable and kept until they change; the classpath elements of a view are also built again when the
+ * file of one of its artifacts changed, since files are often set after the artifacts are added.
+ *
+ * @since 3.0.1
+ */
+final class ScopedArtifacts
+{
+    /** Compile, provided and system scoped artifacts. */
+    static final int COMPILE = 0;
+
+    /** Compile and runtime scoped artifacts. */
+    static final int RUNTIME = 1;
+
+    /** Artifacts of any scope. */
+    static final int TEST = 2;
+
+    /** System scoped artifacts. */
+    static final int SYSTEM = 3;
+
+    private static final int VIEWS = 4;
+
+    private final List<Artifact> slots = new ArrayList<Artifact>();
+
+    private final Map<Artifact, Integer> positions = new LinkedHashMap<Artifact, Integer>();
+
+    private final BitSet[] views = new BitSet[VIEWS];
+
+    private Set<Artifact> allCache;
+
+    private final List<?>[] artifactCache = new List<?>[VIEWS];
+
+    private final List<?>[] dependencyCache = new List<?>[VIEWS];
+
+    private final List<?>[] classpathCache = new List<?>[VIEWS];
+
+    private final String[][] classpathDirectories = new String[VIEWS][];
+
+    private final File[][] classpathFiles = new File[VIEWS][];
+
+    ScopedArtifacts()
+    {
+        for ( int i = 0; i < VIEWS; i++ )
+        {
+            views[i] = new BitSet();
+        }
+    }
+
+    synchronized boolean add( Artifact artifact )
+    {
+        if ( positions.containsKey( artifact ) )
+        {
+            return false;
+        }
+        int slot = slots.size();
+        slots.add( artifact );
+        positions.put( artifact, slot );
+        allCache = null;
+        int mask = getViews( artifact.getScope() );
+        for ( int i = 0; i < VIEWS; i++ )
+        {
+            if ( ( mask & ( 1 << i ) ) != 0 )
+            {
+                views[i].set( slot );
+                invalidate( i );
+            }
+        }
+        return true;
+    }
+
+    synchronized boolean remove( Artifact artifact )
+    {
+        Integer slot = positions.remove( artifact );
+        if ( slot == null )
+        {
+            return false;
+        }
+        slots.set( slot, null );
+        allCache = null;
+        for ( int i = 0; i < VIEWS; i++ )
+        {
+            if ( views[i].get( slot ) )
+            {
+                views[i].clear( slot );
+                invalidate( i );
+            }
+        }
+        if ( positions.size() < slots.size() / 2 )
+        {
+            compact();
+        }
+        return true;
+    }
+
+    synchronized void clear()
+    {
+        slots.clear();
+        positions.clear();
+        allCache = null;
+        for ( int i = 0; i < VIEWS; i++ )
+        {
+            views[i].clear();
+            invalidate( i );
+        }
+    }
+
+    /**
+     * @return an unmodifiable copy of all artifacts, in the order they were added, kept until an artifact is added or
+     *         removed
+     */
+    synchronized Set<Artifact> getArtifacts()
+    {
+        if ( allCache == null )
+        {
+            allCache = Collections.unmodifiableSet( new LinkedHashSet<Artifact>( positions.keySet() ) );
+        }
+        return allCache;
+    }
+
+    synchronized boolean isEmpty()
+    {
+        return positions.isEmpty();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    synchronized List<Artifact> getArtifacts( int view )
+    {
+        List<Artifact> artifacts = (List<Artifact>) artifactCache[view];
+        if ( artifacts == null )
+        {
+            BitSet bits = views[view];
+            artifacts = new ArrayList<Artifact>( bits.cardinality() );
+            for ( int slot = bits.nextSetBit( 0 ); slot >= 0; slot = bits.nextSetBit( slot + 1 ) )
+            {
+                artifacts.add( slots.get( slot ) );
+            }
+            artifacts = Collections.unmodifiableList( artifacts );
+            artifactCache[view] = artifacts;
+        }
+        return artifacts;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    synchronized List<Dependency> getDependencies( int view )
+    {
+        List<Dependency> dependencies = (List<Dependency>) dependencyCache[view];
+        if ( dependencies == null )
+        {
+            List<Artifact> artifacts = getArtifacts( view );
+            dependencies = new ArrayList<Dependency>( artifacts.size() );
+            for ( Artifact artifact : artifacts )
+            {
+                Dependency dependency = new Dependency();
+                dependency.setGroupId( artifact.getGroupId() );
+                dependency.setArtifactId( artifact.getArtifactId() );
+                dependency.setVersion( artifact.getVersion() );
+                dependency.setClassifier( artifact.getClassifier() );
+                dependency.setType( artifact.getType() );
+                dependency.setScope( artifact.getScope() );
+                dependency.setOptional( artifact.isOptional() );
+                dependencies.add( dependency );
+            }
+            dependencies = Collections.unmodifiableList( dependencies );
+            dependencyCache[view] = dependencies;
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param view the view
+     * @param directories the output directories to put first, skipping <code>null</code> ones
+     * @return the given directories, followed by the files of the artifacts of the view
+     */
+    @SuppressWarnings( "unchecked" )
+    synchronized List<String> getClasspathElements( int view, String... directories )
+    {
+        List<String> elements = (List<String>) classpathCache[view];
+        List<Artifact> artifacts = getArtifacts( view );
+        if ( elements == null || !Arrays.equals( directories, classpathDirectories[view] )
+            || !sameFiles( artifacts, classpathFiles[view] ) )
+        {
+            File[] files = new File[artifacts.size()];
+            elements = new ArrayList<String>( directories.length + artifacts.size() );
+            for ( String directory : directories )
+            {
+                if ( directory != null )
+                {
+                    elements.add( directory );
+                }
+            }
+            for ( int i = 0; i < files.length; i++ )
+            {
+                files[i] = artifacts.get( i ).getFile();
+                if ( files[i] != null )
+                {
+                    elements.add( files[i].getPath() );
+                }
+            }
+            elements = Collections.unmodifiableList( elements );
+            classpathCache[view] = elements;
+            classpathDirectories[view] = directories.clone();
+            classpathFiles[view] = files;
+        }
+        return elements;
+    }
+
+    private static boolean sameFiles( List<Artifact> artifacts, File[] files )
+    {
+        if ( files == null || files.length != artifacts.size() )
+        {
+            return false;
+        }
+        for ( int i = 0; i < files.length; i++ )
+        {
+            if ( files[i] != artifacts.get( i ).getFile() )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void invalidate( int view )
+    {
+        artifactCache[view] = null;
+        dependencyCache[view] = null;
+        classpathCache[view] = null;
+    }
+
+    private void compact()
+    {
+        List<Artifact> artifacts = new ArrayList<Artifact>( positions.keySet() );
+        clear();
+        for ( Artifact artifact : artifacts )
+        {
+            add( artifact );
+        }
+    }
+
+    private static int getViews( String scope )
+    {
+        if ( scope == null || Artifact.SCOPE_COMPILE.equals( scope ) )
+        {
+            return 1 << COMPILE | 1 << RUNTIME | 1 << TEST;
+        }
+        if ( Artifact.SCOPE_PROVIDED.equals( scope ) )
+        {
+            return 1 << COMPILE | 1 << TEST;
+        }
+        if ( Artifact.SCOPE_RUNTIME.equals( scope ) )
+        {
+            return 1 << RUNTIME | 1 << TEST;
+        }
+        if ( Artifact.SCOPE_SYSTEM.equals( scope ) )
+        {
+            return 1 << COMPILE | 1 << TEST | 1 << SYSTEM;
+        }
+        return 1 << TEST;
+    }
+}
@@ -19,29 +19,46 @@ package org.apache.maven.plugin.testing.stubs;
  * under the License.
  */
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.artifact.repository.RepositoryRequest;
 import org.apache.maven.artifact.resolver.ArtifactCollector;
 import org.apache.maven.artifact.resolver.ArtifactResolutionException;
 import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.artifact.resolver.ResolutionListener;
+import org.apache.maven.artifact.resolver.ResolutionNode;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.repository.legacy.resolver.conflict.ConflictResolver;
 
 /**
+ * Stub collector. If a {@link StubDependencyGraph} is set, the dependencies of the given artifacts are collected from
+ * it in a single breadth-first pass: each <code>groupId:artifactId:type:classifier</code> is expanded once, the nearest
+ * one wins unless conflict resolvers decide otherwise, transitive test, provided and optional dependencies are
+ * skipped, and managed versions and scopes apply to transitive dependencies. When a conflict resolver picks a farther
+ * node, the dependencies collected through the nearer one are dropped and those of the winner are collected instead.
+ * Filters and listeners are honoured like the Maven collector does. Without a graph, only the given artifacts are
+ * collected.
+ *
  * @author <a href="mailto:brianf@apache.org">Brian Fox</a>
  * @version $Id: StubArtifactCollector.java 834917 2009-11-11 15:40:37Z olamy $
  */
 public class StubArtifactCollector
     implements ArtifactCollector
 {
+    private StubDependencyGraph dependencyGraph;
+
     /**
      * Default constructor
      */
@@ -50,13 +67,23 @@ public class StubArtifactCollector
         super();
     }
 
+    /**
+     * @param dependencyGraph the graph to collect dependencies from
+     * @since 3.0.1
+     */
+    public StubArtifactCollector( StubDependencyGraph dependencyGraph )
+    {
+        this.dependencyGraph = dependencyGraph;
+    }
+
     public ArtifactResolutionResult collect( Set<Artifact> artifacts, Artifact originatingArtifact,
                                              Map managedVersions, ArtifactResolutionRequest repositoryRequest,
                                              ArtifactMetadataSource source, ArtifactFilter filter,
                                              List<ResolutionListener> listeners,
                                              List<ConflictResolver> conflictResolvers )
     {
-        return new ArtifactResolutionResult();
+        return collect( artifacts, originatingArtifact, managedVersions, repositoryRequest.getRemoteRepositories(),
+                        filter, listeners, conflictResolvers );
     }
 
     public ArtifactResolutionResult collect( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -66,7 +93,8 @@ public class StubArtifactCollector
                                              List<ResolutionListener> listeners,
                                              List<ConflictResolver> conflictResolvers )
     {
-        return new ArtifactResolutionResult();
+        return collect( artifacts, originatingArtifact, managedVersions, remoteRepositories, filter, listeners,
+                        conflictResolvers );
     }
 
     public ArtifactResolutionResult collect( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -75,7 +103,7 @@ public class StubArtifactCollector
                                              ArtifactMetadataSource source, ArtifactFilter filter,
                                              List<ResolutionListener> listeners )
     {
-        return new ArtifactResolutionResult();
+        return collect( artifacts, originatingArtifact, managedVersions, remoteRepositories, filter, listeners, null );
     }
 
     public ArtifactResolutionResult collect( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -85,7 +113,210 @@ public class StubArtifactCollector
                                              List<ResolutionListener> listeners )
         throws ArtifactResolutionException
     {
-        return new ArtifactResolutionResult();
+        return collect( artifacts, originatingArtifact, null, remoteRepositories, filter, listeners, null );
+    }
+
+    /**
+     * @return the graph to collect dependencies from, or <code>null</code>.
+     * @since 3.0.1
+     */
+    public StubDependencyGraph getDependencyGraph()
+    {
+        return dependencyGraph;
+    }
+
+    /**
+     * @param dependencyGraph the graph to collect dependencies from, or <code>null</code> to only collect the given
+     *            artifacts.
+     * @since 3.0.1
+     */
+    public void setDependencyGraph( StubDependencyGraph dependencyGraph )
+    {
+        this.dependencyGraph = dependencyGraph;
+    }
+
+    private ArtifactResolutionResult collect( Set<Artifact> artifacts, Artifact originatingArtifact,
+                                              Map<String, Artifact> managedVersions,
+                                              List<ArtifactRepository> remoteRepositories, ArtifactFilter filter,
+                                              List<ResolutionListener> listeners,
+                                              List<ConflictResolver> conflictResolvers )
+    {
+        if ( managedVersions == null )
+        {
+            managedVersions = Collections.emptyMap();
+        }
+        if ( listeners == null )
+        {
+            listeners = Collections.emptyList();
+        }
+        if ( conflictResolvers == null )
+        {
+            conflictResolvers = Collections.emptyList();
+        }
+        String rootId = originatingArtifact == null ? null : originatingArtifact.getDependencyConflictId();
+
+        ResolutionNode root = null;
+        if ( originatingArtifact != null )
+        {
+            root = new ResolutionNode( originatingArtifact, remoteRepositories );
+        }
+        int directDepth = root == null ? 0 : 1;
+
+        Map<String, ResolutionNode> selected = new LinkedHashMap<String, ResolutionNode>();
+        Map<ResolutionNode, ResolutionNode> parents = new IdentityHashMap<ResolutionNode, ResolutionNode>();
+        LinkedList<ResolutionNode> queue = new LinkedList<ResolutionNode>();
+        for ( Artifact artifact : artifacts )
+        {
+            queue.add( root == null ? new ResolutionNode( artifact, remoteRepositories )
+                            : new ResolutionNode( artifact, remoteRepositories, root ) );
+        }
+
+        while ( !queue.isEmpty() )
+        {
+            ResolutionNode node = queue.removeFirst();
+            Artifact artifact = node.getArtifact();
+            String id = artifact.getDependencyConflictId();
+            for ( ResolutionListener listener : listeners )
+            {
+                listener.testArtifact( artifact );
+            }
+
+            if ( id.equals( rootId ) )
+            {
+                for ( ResolutionListener listener : listeners )
+                {
+                    listener.omitForCycle( artifact );
+                }
+                continue;
+            }
+
+            Artifact managed = node.getDepth() == directDepth ? null : managedVersions.get( id );
+            if ( managed != null )
+            {
+                boolean version = managed.getVersion() != null && !managed.getVersion().equals( artifact.getVersion() );
+                boolean scope = managed.getScope() != null && !managed.getScope().equals( artifact.getScope() );
+                if ( version || scope )
+                {
+                    for ( ResolutionListener listener : listeners )
+                    {
+                        listener.manageArtifact( artifact, managed );
+                    }
+                    artifact = ArtifactUtils.copyArtifact( artifact );
+                    if ( version )
+                    {
+                        artifact.setVersion( managed.getVersion() );
+                    }
+                    if ( scope )
+                    {
+                        artifact.setScope( managed.getScope() );
+                    }
+                    node.setArtifact( artifact );
+                }
+            }
+
+            if ( filter != null && !filter.include( artifact ) )
+            {
+                continue;
+            }
+
+            ResolutionNode previous = selected.get( id );
+            if ( previous != null )
+            {
+                ResolutionNode winner = resolveConflict( previous, node, conflictResolvers );
+                Artifact omitted = winner == previous ? artifact : previous.getArtifact();
+                for ( ResolutionListener listener : listeners )
+                {
+                    listener.omitForNearer( omitted, winner.getArtifact() );
+                }
+                if ( winner == previous )
+                {
+                    continue;
+                }
+                // the farther node wins: forget what was collected through the nearer one
+                for ( Iterator<ResolutionNode> it = selected.values().iterator(); it.hasNext(); )
+                {
+                    if ( isDescendant( it.next(), previous, parents ) )
+                    {
+                        it.remove();
+                    }
+                }
+                for ( Iterator<ResolutionNode> it = queue.iterator(); it.hasNext(); )
+                {
+                    if ( isDescendant( it.next(), previous, parents ) )
+                    {
+                        it.remove();
+                    }
+                }
+            }
+
+            selected.put( id, node );
+            for ( ResolutionListener listener : listeners )
+            {
+                listener.includeArtifact( artifact );
+            }
+
+            List<Artifact> dependencies = dependencyGraph == null ? null : dependencyGraph.getDependencies( artifact );
+            if ( dependencies != null && !dependencies.isEmpty() )
+            {
+                for ( ResolutionListener listener : listeners )
+                {
+                    listener.startProcessChildren( artifact );
+                }
+                for ( Artifact dependency : dependencies )
+                {
+                    if ( !Artifact.SCOPE_TEST.equals( dependency.getScope() )
+                        && !Artifact.SCOPE_PROVIDED.equals( dependency.getScope() ) && !dependency.isOptional() )
+                    {
+                        ResolutionNode child = new ResolutionNode( dependency, remoteRepositories, node );
+                        parents.put( child, node );
+                        queue.add( child );
+                    }
+                }
+                for ( ResolutionListener listener : listeners )
+                {
+                    listener.endProcessChildren( artifact );
+                }
+            }
+        }
+
+        Set<Artifact> collected = new LinkedHashSet<Artifact>();
+        for ( ResolutionNode node : selected.values() )
+        {
+            collected.add( node.getArtifact() );
+        }
+
+        ArtifactResolutionResult result = new ArtifactResolutionResult();
+        result.setOriginatingArtifact( originatingArtifact );
+        result.setArtifacts( collected );
+        result.setArtifactResolutionNodes( new LinkedHashSet<ResolutionNode>( selected.values() ) );
+        return result;
+    }
+
+    private static ResolutionNode resolveConflict( ResolutionNode previous, ResolutionNode node,
+                                                   List<ConflictResolver> conflictResolvers )
+    {
+        for ( ConflictResolver conflictResolver : conflictResolvers )
+        {
+            ResolutionNode winner = conflictResolver.resolveConflict( previous, node );
+            if ( winner != null )
+            {
+                return winner;
+            }
+        }
+        // nearest wins, and nodes come breadth first
+        return previous;
     }
 
+    private static boolean isDescendant( ResolutionNode node, ResolutionNode ancestor,
+                                         Map<ResolutionNode, ResolutionNode> parents )
+    {
+        for ( ResolutionNode parent = parents.get( node ); parent != null; parent = parents.get( parent ) )
+        {
+            if ( parent == ancestor )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
 }
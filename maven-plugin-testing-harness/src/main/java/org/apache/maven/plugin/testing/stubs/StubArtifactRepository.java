@@ -27,11 +27,23 @@ import org.apache.maven.artifact.repository.Authentication;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
 import org.apache.maven.repository.Proxy;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Stub of an artifact repository using the default layout. Artifacts are known to the repository through an in-memory
+ * index, populated with {@link #addArtifact(Artifact, File)}, {@link #addArtifacts(Collection)} or by scanning the
+ * base directory with {@link #scan()}, so that {@link #find(Artifact)} and {@link #findVersions(Artifact)} don't
+ * touch the file system.
+ *
  * @author <a href="mailto:brianf@apache.org">Brian Fox</a>
  * @version $Id: StubArtifactRepository.java 1206336 2011-11-25 21:41:59Z olamy $
  */
@@ -40,6 +52,14 @@ public class StubArtifactRepository
 {
     private String baseDir = null;
 
+    private ArtifactRepositoryLayout layout;
+
+    /** Indexed files, by path. */
+    private final ConcurrentMap<String, File> files = new ConcurrentHashMap<String, File>();
+
+    /** Indexed versions, by groupId:artifactId. */
+    private final ConcurrentMap<String, Set<String>> versions = new ConcurrentHashMap<String, Set<String>>();
+
     /**
      * Default constructor
      *
@@ -51,12 +71,165 @@ public class StubArtifactRepository
     }
 
     /**
-     * @return the <code>artifactId</code>.
+     * By default, return the path of the artifact in the default layout, i.e.
+     * <code>groupId/as/dirs/artifactId/baseVersion/artifactId-version[-classifier].extension</code>, unless a layout
+     * has been set.
+     *
      * @see org.apache.maven.artifact.repository.ArtifactRepository#pathOf(org.apache.maven.artifact.Artifact)
      */
     public String pathOf( Artifact artifact )
     {
-        return artifact.getId();
+        if ( layout != null )
+        {
+            return layout.pathOf( artifact );
+        }
+
+        String extension = getExtension( artifact );
+        String baseVersion = artifact.getBaseVersion() != null ? artifact.getBaseVersion() : artifact.getVersion();
+
+        StringBuilder buffer = new StringBuilder( 128 );
+        buffer.append( artifact.getGroupId().replace( '.', '/' ) ).append( '/' );
+        buffer.append( artifact.getArtifactId() ).append( '/' );
+        buffer.append( baseVersion ).append( '/' );
+        buffer.append( artifact.getArtifactId() ).append( '-' ).append( artifact.getVersion() );
+        if ( artifact.getClassifier() != null && artifact.getClassifier().length() > 0 )
+        {
+            buffer.append( '-' ).append( artifact.getClassifier() );
+        }
+        if ( extension != null && extension.length() > 0 )
+        {
+            buffer.append( '.' ).append( extension );
+        }
+        return buffer.toString();
+    }
+
+    private static String getExtension( Artifact artifact )
+    {
+        if ( artifact.getArtifactHandler() != null && artifact.getArtifactHandler().getExtension() != null )
+        {
+            return artifact.getArtifactHandler().getExtension();
+        }
+        return artifact.getType();
+    }
+
+    /**
+     * Adds an artifact to the index of this repository.
+     *
+     * @param artifact the artifact
+     * @param file its file, or <code>null</code> to use the file of the artifact, or its place in this repository
+     * @since 3.0.1
+     */
+    public void addArtifact( Artifact artifact, File file )
+    {
+        if ( file == null )
+        {
+            file = artifact.getFile() != null ? artifact.getFile() : new File( baseDir, pathOf( artifact ) );
+        }
+        String baseVersion = artifact.getBaseVersion() != null ? artifact.getBaseVersion() : artifact.getVersion();
+        addVersion( artifact.getGroupId(), artifact.getArtifactId(), baseVersion );
+        files.put( pathOf( artifact ), file );
+    }
+
+    /**
+     * Adds artifacts to the index of this repository, e.g. the ones created by an
+     * {@link org.apache.maven.plugin.testing.ArtifactStubFactory}.
+     *
+     * @param artifacts the artifacts, with or without files
+     * @since 3.0.1
+     */
+    public void addArtifacts( Collection<Artifact> artifacts )
+    {
+        for ( Artifact artifact : artifacts )
+        {
+            addArtifact( artifact, null );
+        }
+    }
+
+    /**
+     * Adds all artifact files found under the base directory, laid out in the default layout, to the index of this
+     * repository. Metadata and checksum files are skipped. The files are indexed by their path, which matches the
+     * path of their artifact in the default layout only.
+     *
+     * @return the number of files added
+     * @throws IllegalStateException if a layout other than the default one is set
+     * @since 3.0.1
+     */
+    public int scan()
+    {
+        if ( layout != null && !"default".equals( layout.getId() ) )
+        {
+            throw new IllegalStateException( "Only a repository in the default layout can be scanned, not in the "
+                + layout.getId() + " layout." );
+        }
+        File basedir = new File( baseDir );
+        List<String> segments = new ArrayList<String>();
+        return scan( basedir, segments );
+    }
+
+    private int scan( File directory, List<String> segments )
+    {
+        File[] children = directory.listFiles();
+        if ( children == null )
+        {
+            return 0;
+        }
+        Arrays.sort( children );
+
+        int count = 0;
+        for ( File child : children )
+        {
+            String name = child.getName();
+            if ( child.isDirectory() )
+            {
+                segments.add( name );
+                count += scan( child, segments );
+                segments.remove( segments.size() - 1 );
+            }
+            else if ( segments.size() >= 3 && isArtifactFile( name ) )
+            {
+                int size = segments.size();
+                StringBuilder groupId = new StringBuilder();
+                StringBuilder path = new StringBuilder();
+                for ( int i = 0; i < size; i++ )
+                {
+                    if ( i < size - 2 )
+                    {
+                        if ( i > 0 )
+                        {
+                            groupId.append( '.' );
+                        }
+                        groupId.append( segments.get( i ) );
+                    }
+                    path.append( segments.get( i ) ).append( '/' );
+                }
+                addVersion( groupId.toString(), segments.get( size - 2 ), segments.get( size - 1 ) );
+                files.put( path.append( name ).toString(), child );
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isArtifactFile( String name )
+    {
+        return !( name.startsWith( "maven-metadata" ) || name.startsWith( "_" ) || name.endsWith( ".sha1" )
+            || name.endsWith( ".md5" ) || name.endsWith( ".asc" ) || name.endsWith( ".lastUpdated" ) );
+    }
+
+    private void addVersion( String groupId, String artifactId, String version )
+    {
+        String key = groupId + ':' + artifactId;
+        Set<String> artifactVersions = versions.get( key );
+        if ( artifactVersions == null )
+        {
+            artifactVersions = Collections.synchronizedSet( new LinkedHashSet<String>() );
+            Set<String> existing = versions.putIfAbsent( key, artifactVersions );
+            if ( existing != null )
+            {
+                artifactVersions = existing;
+            }
+        }
+        artifactVersions.add( CoordinatePool.getInstance().intern( version ) );
     }
 
     /**
@@ -132,12 +305,12 @@ public class StubArtifactRepository
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the layout set, or <code>null</code> if the built-in default layout is used.
      * @see org.apache.maven.artifact.repository.ArtifactRepository#getLayout()
      */
     public ArtifactRepositoryLayout getLayout()
     {
-        return null;
+        return layout;
     }
 
     /**
@@ -177,10 +350,23 @@ public class StubArtifactRepository
         return false;
     }
 
+    /**
+     * By default, look the artifact up in the index.
+     *
+     * @return the artifact, with its file set and resolved, or <code>null</code> if it isn't indexed.
+     * @see org.apache.maven.artifact.repository.ArtifactRepository#find(org.apache.maven.artifact.Artifact)
+     */
     public Artifact find( Artifact artifact )
     {
-        // TODO Auto-generated method stub
-        return null;
+        File file = files.get( pathOf( artifact ) );
+        if ( file == null )
+        {
+            return null;
+        }
+        artifact.setFile( file );
+        artifact.setResolved( true );
+        artifact.setRepository( this );
+        return artifact;
     }
 
     public Authentication getAuthentication()
@@ -205,7 +391,7 @@ public class StubArtifactRepository
 
     public void setLayout( ArtifactRepositoryLayout layout )
     {
-
+        this.layout = layout;
     }
 
     public void setProxy( Proxy proxy )
@@ -228,9 +414,23 @@ public class StubArtifactRepository
 
     }
 
+    /**
+     * By default, look the versions up in the index.
+     *
+     * @return the indexed versions of the artifact, in the order they were added.
+     * @see org.apache.maven.artifact.repository.ArtifactRepository#findVersions(org.apache.maven.artifact.Artifact)
+     */
     public List<String> findVersions( Artifact artifact )
     {
-        return Collections.emptyList();
+        Set<String> artifactVersions = versions.get( artifact.getGroupId() + ':' + artifact.getArtifactId() );
+        if ( artifactVersions == null )
+        {
+            return Collections.emptyList();
+        }
+        synchronized ( artifactVersions )
+        {
+            return new ArrayList<String>( artifactVersions );
+        }
     }
 
     public boolean isProjectAware()
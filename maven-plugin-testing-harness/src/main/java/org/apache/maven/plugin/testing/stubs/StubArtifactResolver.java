@@ -20,11 +20,28 @@ package org.apache.maven.plugin.testing.stubs;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
@@ -39,6 +56,20 @@ import org.apache.maven.wagon.events.TransferListener;
 
 /**
  * Stub resolver. The constructor allows the specification of the exception to throw so that handling can be tested too.
+ * <p/>
+ * Transitive resolution walks an in-memory {@link StubDependencyGraph}, if one is set: test, provided and optional
+ * dependencies of dependencies are skipped, managed versions and scopes apply to copies of the transitive dependencies,
+ * the nearest artifact for each <code>groupId:artifactId:type</code> wins, the first declared one among equally near
+ * ones, like {@link StubArtifactCollector} selects them, and every artifact is resolved like {@link #resolve(Artifact,
+ * List, ArtifactRepository)} does. Listeners are told about the included artifacts, the ones omitted for a nearer one,
+ * dependencies back to a requested artifact, and artifacts carrying a version selected from a range. The dependencies
+ * of each requested artifact are walked in parallel. Unless managed versions are given, they are memoized per artifact
+ * for the last filter used, as long as the graph is a {@link CompactDependencyGraph} or an unchanged {@link
+ * MapDependencyGraph}. Without a graph, only the requested artifacts are resolved.
+ * <p/>
+ * To simulate a slow or flaky repository, latencies and failure rates can be set for artifacts matching patterns,
+ * and the total bandwidth can be limited. Every call is recorded with its timing and the number of concurrent calls,
+ * see {@link #getCalls()} and {@link #getEffectiveParallelism()}.
  *
  * @author <a href="mailto:brianf@apache.org">Brian Fox</a>
  * @version $Id: StubArtifactResolver.java 1340752 2012-05-20 15:20:59Z hboutemy $
@@ -52,6 +83,30 @@ public class StubArtifactResolver
 
     private ArtifactStubFactory factory;
 
+    private StubDependencyGraph dependencyGraph;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private final Map<Pattern, LatencyDistribution> latencies = new LinkedHashMap<Pattern, LatencyDistribution>();
+
+    private final Map<Pattern, Double> failureRates = new LinkedHashMap<Pattern, Double>();
+
+    private Random random = new Random( 0L );
+
+    private long bandwidth;
+
+    /** When the simulated link is free again, in nanoseconds. */
+    private long linkFreeNanos;
+
+    private final AtomicInteger inProgress = new AtomicInteger();
+
+    private final AtomicInteger maxConcurrency = new AtomicInteger();
+
+    private final ConcurrentLinkedQueue<ResolutionCall> calls = new ConcurrentLinkedQueue<ResolutionCall>();
+
+    /** Transitive dependencies of each artifact, for one filter and graph state. */
+    private Closures closures;
+
     /**
      * Default constructor
      *
@@ -68,13 +123,63 @@ public class StubArtifactResolver
     }
 
     /**
-     * Creates dummy file and sets it in the artifact to simulate resolution
+     * @param factory
+     * @param dependencyGraph the graph to walk for transitive resolution
+     * @since 3.0.1
+     */
+    public StubArtifactResolver( ArtifactStubFactory factory, StubDependencyGraph dependencyGraph )
+    {
+        this( factory, false, false );
+        this.dependencyGraph = dependencyGraph;
+    }
+
+    /**
+     * Creates dummy file and sets it in the artifact to simulate resolution, after the configured latency.
      *
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolve(org.apache.maven.artifact.Artifact, java.util.List, org.apache.maven.artifact.repository.ArtifactRepository)
      */
     public void resolve( Artifact artifact, List<ArtifactRepository> remoteRepositories, ArtifactRepository localRepository )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
+        String id = artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion();
+        long start = System.nanoTime();
+        int concurrency = inProgress.incrementAndGet();
+        for ( int max = maxConcurrency.get(); concurrency > max; max = maxConcurrency.get() )
+        {
+            if ( maxConcurrency.compareAndSet( max, concurrency ) )
+            {
+                break;
+            }
+        }
+
+        boolean failed = true;
+        try
+        {
+            simulate( artifact, id );
+            failed = false;
+        }
+        finally
+        {
+            inProgress.decrementAndGet();
+            calls.add( new ResolutionCall( id, start, System.nanoTime(), concurrency, failed ) );
+        }
+    }
+
+    private void simulate( Artifact artifact, String id )
+        throws ArtifactResolutionException, ArtifactNotFoundException
+    {
+        LatencyDistribution latency = match( latencies, id );
+        if ( latency != null )
+        {
+            sleep( latency.nextLatency( random ) * 1000000L, artifact );
+        }
+
+        Double failureRate = match( failureRates, id );
+        if ( failureRate != null && random.nextDouble() < failureRate.doubleValue() )
+        {
+            throw new ArtifactResolutionException( "Injected failure", artifact );
+        }
+
         if ( !this.throwArtifactNotFoundException && !this.throwArtifactResolutionException )
         {
             try
@@ -98,10 +203,189 @@ public class StubArtifactResolver
 
             throw new ArtifactNotFoundException( "Catch!", artifact );
         }
+
+        if ( bandwidth > 0 && artifact.getFile() != null )
+        {
+            // all calls share one link: a transfer starts when the previous one is done
+            long duration = artifact.getFile().length() * 1000000000L / bandwidth;
+            long end;
+            synchronized ( this )
+            {
+                end = Math.max( System.nanoTime(), linkFreeNanos ) + duration;
+                linkFreeNanos = end;
+            }
+            sleep( end - System.nanoTime(), artifact );
+        }
+    }
+
+    private static <T> T match( Map<Pattern, T> values, String id )
+    {
+        synchronized ( values )
+        {
+            for ( Map.Entry<Pattern, T> entry : values.entrySet() )
+            {
+                if ( entry.getKey().matcher( id ).matches() )
+                {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void sleep( long nanos, Artifact artifact )
+        throws ArtifactResolutionException
+    {
+        if ( nanos <= 0 )
+        {
+            return;
+        }
+        try
+        {
+            Thread.sleep( nanos / 1000000L, (int) ( nanos % 1000000L ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ArtifactResolutionException( "Interrupted", artifact, e );
+        }
+    }
+
+    /**
+     * Sets the latency of the artifacts matching a pattern. Patterns are matched against
+     * <code>groupId:artifactId:version</code>, where <code>*</code> matches any characters, in the order they were
+     * set: the first match wins.
+     *
+     * @param pattern the pattern, e.g. <code>org.apache.*</code> or <code>*</code>
+     * @param latency the latency of the matching artifacts, or <code>null</code> to remove the pattern
+     * @since 3.0.1
+     */
+    public void setLatency( String pattern, LatencyDistribution latency )
+    {
+        set( latencies, pattern, latency );
+    }
+
+    /**
+     * Sets the share of failed calls for the artifacts matching a pattern, matched like in
+     * {@link #setLatency(String, LatencyDistribution)}. Failures throw an <code>ArtifactResolutionException</code>
+     * after the latency.
+     *
+     * @param pattern the pattern
+     * @param failureRate the share of failed calls, between 0 and 1
+     * @since 3.0.1
+     */
+    public void setFailureRate( String pattern, double failureRate )
+    {
+        set( failureRates, pattern, failureRate > 0 ? Double.valueOf( failureRate ) : null );
+    }
+
+    private static <T> void set( Map<Pattern, T> values, String pattern, T value )
+    {
+        StringBuilder regex = new StringBuilder();
+        for ( String part : pattern.split( "\\*", -1 ) )
+        {
+            if ( regex.length() > 0 || pattern.startsWith( "*" ) )
+            {
+                regex.append( ".*" );
+            }
+            regex.append( Pattern.quote( part ) );
+        }
+
+        synchronized ( values )
+        {
+            for ( Pattern key : values.keySet() )
+            {
+                if ( key.pattern().equals( regex.toString() ) )
+                {
+                    values.remove( key );
+                    break;
+                }
+            }
+            if ( value != null )
+            {
+                values.put( Pattern.compile( regex.toString() ), value );
+            }
+        }
+    }
+
+    /**
+     * @param bandwidth the bandwidth shared by all calls, in bytes per second, to delay calls by the size of the
+     *            artifact files, or <code>0</code> for no limit
+     * @since 3.0.1
+     */
+    public void setBandwidth( long bandwidth )
+    {
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * @return the bandwidth shared by all calls, in bytes per second, or <code>0</code> for no limit
+     * @since 3.0.1
+     */
+    public long getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    /**
+     * @param seed the seed of the random latencies and failures
+     * @since 3.0.1
+     */
+    public void setRandomSeed( long seed )
+    {
+        this.random = new Random( seed );
+    }
+
+    /**
+     * @return the recorded calls to {@link #resolve(Artifact, List, ArtifactRepository)}, in the order they ended
+     * @since 3.0.1
+     */
+    public List<ResolutionCall> getCalls()
+    {
+        return new ArrayList<ResolutionCall>( calls );
+    }
+
+    /**
+     * @return the maximum number of concurrent calls seen
+     * @since 3.0.1
+     */
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency.get();
+    }
+
+    /**
+     * @return the total duration of the recorded calls divided by the time between the first start and the last end,
+     *         i.e. the average number of calls in progress, or <code>0</code> if there was no call
+     * @since 3.0.1
+     */
+    public double getEffectiveParallelism()
+    {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        long total = 0;
+        for ( ResolutionCall call : calls )
+        {
+            first = Math.min( first, call.getStartNanos() );
+            last = Math.max( last, call.getEndNanos() );
+            total += call.getDurationNanos();
+        }
+        return last > first ? (double) total / ( last - first ) : 0;
+    }
+
+    /**
+     * Forgets the recorded calls.
+     *
+     * @since 3.0.1
+     */
+    public void resetStatistics()
+    {
+        calls.clear();
+        maxConcurrency.set( 0 );
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the resolved artifacts.
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolveTransitively(java.util.Set, org.apache.maven.artifact.Artifact, java.util.List, org.apache.maven.artifact.repository.ArtifactRepository, org.apache.maven.artifact.metadata.ArtifactMetadataSource)
      */
     public ArtifactResolutionResult resolveTransitively( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -109,11 +393,12 @@ public class StubArtifactResolver
                                                         ArtifactMetadataSource source )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
-        return null;
+        return resolveGraph( artifacts, originatingArtifact, null, remoteRepositories, localRepository, null, null,
+                             true );
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the resolved artifacts.
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolveTransitively(java.util.Set, org.apache.maven.artifact.Artifact, java.util.List, org.apache.maven.artifact.repository.ArtifactRepository, org.apache.maven.artifact.metadata.ArtifactMetadataSource, java.util.List)
      */
     public ArtifactResolutionResult resolveTransitively( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -121,11 +406,12 @@ public class StubArtifactResolver
                                                         ArtifactMetadataSource source, List<ResolutionListener> listeners )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
-        return null;
+        return resolveGraph( artifacts, originatingArtifact, null, remoteRepositories, localRepository, null,
+                             listeners, true );
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the resolved artifacts.
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolveTransitively(java.util.Set, org.apache.maven.artifact.Artifact, org.apache.maven.artifact.repository.ArtifactRepository, java.util.List, org.apache.maven.artifact.metadata.ArtifactMetadataSource, org.apache.maven.artifact.resolver.filter.ArtifactFilter)
      */
     public ArtifactResolutionResult resolveTransitively( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -133,11 +419,12 @@ public class StubArtifactResolver
                                                         ArtifactMetadataSource source, ArtifactFilter filter )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
-        return null;
+        return resolveGraph( artifacts, originatingArtifact, null, remoteRepositories, localRepository, filter, null,
+                             true );
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the resolved artifacts.
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolveTransitively(java.util.Set, org.apache.maven.artifact.Artifact, java.util.Map, org.apache.maven.artifact.repository.ArtifactRepository, java.util.List, org.apache.maven.artifact.metadata.ArtifactMetadataSource)
      */
     public ArtifactResolutionResult resolveTransitively( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -145,11 +432,12 @@ public class StubArtifactResolver
                                                         List<ArtifactRepository> remoteRepositories, ArtifactMetadataSource source )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
-        return null;
+        return resolveGraph( artifacts, originatingArtifact, managedVersions, remoteRepositories, localRepository,
+                             null, null, true );
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the resolved artifacts.
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolveTransitively(java.util.Set, org.apache.maven.artifact.Artifact, java.util.Map, org.apache.maven.artifact.repository.ArtifactRepository, java.util.List, org.apache.maven.artifact.metadata.ArtifactMetadataSource, org.apache.maven.artifact.resolver.filter.ArtifactFilter)
      */
     public ArtifactResolutionResult resolveTransitively( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -158,11 +446,12 @@ public class StubArtifactResolver
                                                         ArtifactFilter filter )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
-        return null;
+        return resolveGraph( artifacts, originatingArtifact, managedVersions, remoteRepositories, localRepository,
+                             filter, null, true );
     }
 
     /**
-     * @return <code>null</code>.
+     * @return the resolved artifacts.
      * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolveTransitively(java.util.Set, org.apache.maven.artifact.Artifact, java.util.Map, org.apache.maven.artifact.repository.ArtifactRepository, java.util.List, org.apache.maven.artifact.metadata.ArtifactMetadataSource, org.apache.maven.artifact.resolver.filter.ArtifactFilter, java.util.List)
      */
     public ArtifactResolutionResult resolveTransitively( Set<Artifact> artifacts, Artifact originatingArtifact,
@@ -171,7 +460,8 @@ public class StubArtifactResolver
                                                         ArtifactFilter filter, List<ResolutionListener> listeners )
         throws ArtifactResolutionException, ArtifactNotFoundException
     {
-        return null;
+        return resolveGraph( artifacts, originatingArtifact, managedVersions, remoteRepositories, localRepository,
+                             filter, listeners, true );
     }
 
     /**
@@ -193,13 +483,467 @@ public class StubArtifactResolver
         
     }
     
+    /**
+     * @return the artifacts of the request, collected from the dependency graph without resolving their files.
+     * @see org.apache.maven.artifact.resolver.ArtifactResolver#collect(org.apache.maven.artifact.resolver.ArtifactResolutionRequest)
+     */
     public ArtifactResolutionResult collect( ArtifactResolutionRequest request )
     {
-        return null;
+        return resolve( request, false );
     }
 
+    /**
+     * @return the resolved artifacts of the request, with failures reported in the result.
+     * @see org.apache.maven.artifact.resolver.ArtifactResolver#resolve(org.apache.maven.artifact.resolver.ArtifactResolutionRequest)
+     */
     public ArtifactResolutionResult resolve( ArtifactResolutionRequest request )
     {
-        return null;
+        return resolve( request, true );
+    }
+
+    private ArtifactResolutionResult resolve( ArtifactResolutionRequest request, boolean resolveFiles )
+    {
+        Artifact root = request.getArtifact();
+
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        if ( request.getArtifactDependencies() != null && !request.getArtifactDependencies().isEmpty() )
+        {
+            artifacts.addAll( request.getArtifactDependencies() );
+        }
+        else if ( root != null && dependencyGraph != null && dependencyGraph.getDependencies( root ) != null )
+        {
+            artifacts.addAll( dependencyGraph.getDependencies( root ) );
+        }
+
+        ArtifactResolutionResult result = new ArtifactResolutionResult();
+        result.setOriginatingArtifact( root );
+        try
+        {
+            Set<Artifact> resolved = new LinkedHashSet<Artifact>();
+            if ( request.isResolveRoot() && root != null )
+            {
+                if ( resolveFiles )
+                {
+                    resolve( root, request.getRemoteRepositories(), request.getLocalRepository() );
+                }
+                resolved.add( root );
+            }
+            if ( request.isResolveTransitively() )
+            {
+                resolved.addAll( resolveGraph( artifacts, root, request.getManagedVersionMap(),
+                                               request.getRemoteRepositories(), request.getLocalRepository(),
+                                               request.getResolutionFilter(), request.getListeners(),
+                                               resolveFiles ).getArtifacts() );
+            }
+            result.setArtifacts( resolved );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            result.addErrorArtifactException( e );
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            result.addMissingArtifact( e.getArtifact() );
+        }
+        return result;
+    }
+
+    /**
+     * @return the graph walked for transitive resolution, or <code>null</code>.
+     * @since 3.0.1
+     */
+    public StubDependencyGraph getDependencyGraph()
+    {
+        return dependencyGraph;
+    }
+
+    /**
+     * @param dependencyGraph the graph to walk for transitive resolution, or <code>null</code> to only resolve the
+     *            requested artifacts.
+     * @since 3.0.1
+     */
+    public void setDependencyGraph( StubDependencyGraph dependencyGraph )
+    {
+        this.dependencyGraph = dependencyGraph;
+        synchronized ( this )
+        {
+            closures = null;
+        }
+    }
+
+    /**
+     * @return the maximum number of requested artifacts resolved in parallel.
+     * @since 3.0.1
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * @param threads the maximum number of requested artifacts resolved in parallel, defaults to the number of
+     *            available processors.
+     * @since 3.0.1
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    private ArtifactResolutionResult resolveGraph( Set<Artifact> artifacts, Artifact originatingArtifact,
+                                                   Map<String, Artifact> managedVersions,
+                                                   final List<ArtifactRepository> remoteRepositories,
+                                                   final ArtifactRepository localRepository,
+                                                   final ArtifactFilter filter, List<ResolutionListener> listeners,
+                                                   final boolean resolveFiles )
+        throws ArtifactResolutionException, ArtifactNotFoundException
+    {
+        final Map<String, Artifact> managed =
+            managedVersions == null ? Collections.<String, Artifact>emptyMap() : managedVersions;
+
+        List<Artifact> roots = new ArrayList<Artifact>( artifacts.size() );
+        for ( Artifact artifact : artifacts )
+        {
+            if ( filter == null || filter.include( artifact ) )
+            {
+                roots.add( artifact );
+            }
+        }
+
+        final ConcurrentMap<String, Closure> memo = managed.isEmpty() ? getClosures( filter ) : null;
+
+        // artifacts shared by several branches are only resolved once
+        final Set<String> resolved = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+        List<Closure> branches = new ArrayList<Closure>( roots.size() );
+        if ( roots.size() <= 1 || threads <= 1 )
+        {
+            for ( Artifact root : roots )
+            {
+                branches.add( resolveBranch( root, managed, filter, memo, remoteRepositories, localRepository,
+                                             resolveFiles ? resolved : null ) );
+            }
+        }
+        else
+        {
+            ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, roots.size() ) );
+            try
+            {
+                List<Future<Closure>> futures = new ArrayList<Future<Closure>>( roots.size() );
+                for ( final Artifact root : roots )
+                {
+                    futures.add( executor.submit( new Callable<Closure>()
+                    {
+                        public Closure call()
+                            throws ArtifactResolutionException, ArtifactNotFoundException
+                        {
+                            return resolveBranch( root, managed, filter, memo, remoteRepositories, localRepository,
+                                                  resolveFiles ? resolved : null );
+                        }
+                    } ) );
+                }
+                for ( Future<Closure> future : futures )
+                {
+                    branches.add( getBranch( future, originatingArtifact ) );
+                }
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        // nearest wins, like Maven: the requested artifacts first, then the dependencies depth by depth, each depth
+        // in the order of the requested artifacts, so that the first one found wins
+        Map<String, Artifact> selected = new LinkedHashMap<String, Artifact>();
+        List<Artifact[]> omitted = new ArrayList<Artifact[]>();
+        for ( Artifact root : roots )
+        {
+            select( root, selected, omitted );
+        }
+        int[] cursors = new int[branches.size()];
+        for ( int depth = 1, remaining = branches.size(); remaining > 0; depth++ )
+        {
+            remaining = 0;
+            for ( int i = 0; i < cursors.length; i++ )
+            {
+                Closure branch = branches.get( i );
+                while ( cursors[i] < branch.depths.length && branch.depths[cursors[i]] == depth )
+                {
+                    select( branch.dependencies.get( cursors[i]++ ), selected, omitted );
+                }
+                if ( cursors[i] < branch.depths.length )
+                {
+                    remaining++;
+                }
+            }
+        }
+
+        if ( listeners != null && !listeners.isEmpty() )
+        {
+            for ( ResolutionListener listener : listeners )
+            {
+                for ( Closure branch : branches )
+                {
+                    for ( Artifact cycle : branch.cycles )
+                    {
+                        listener.omitForCycle( cycle );
+                    }
+                }
+                for ( Artifact[] pair : omitted )
+                {
+                    listener.omitForNearer( pair[0], pair[1] );
+                }
+                for ( Artifact artifact : selected.values() )
+                {
+                    if ( artifact.getVersion() != null && artifact.getVersionRange() != null
+                        && artifact.getVersionRange().hasRestrictions() )
+                    {
+                        listener.selectVersionFromRange( artifact );
+                    }
+                    listener.includeArtifact( artifact );
+                }
+            }
+        }
+
+        ArtifactResolutionResult result = new ArtifactResolutionResult();
+        result.setOriginatingArtifact( originatingArtifact );
+        result.setArtifacts( new LinkedHashSet<Artifact>( selected.values() ) );
+        return result;
+    }
+
+    /**
+     * Keeps the artifact unless one with the same conflict id was selected, nearer or as near and declared first,
+     * else records the pair of the omitted and kept artifacts.
+     */
+    private static void select( Artifact artifact, Map<String, Artifact> selected, List<Artifact[]> omitted )
+    {
+        Artifact kept = selected.get( artifact.getDependencyConflictId() );
+        if ( kept == null )
+        {
+            selected.put( artifact.getDependencyConflictId(), artifact );
+        }
+        else if ( kept != artifact )
+        {
+            omitted.add( new Artifact[] { artifact, kept } );
+        }
+    }
+
+    /**
+     * @return the memo of the closures walked with this filter in the current state of the graph, or
+     *         <code>null</code> if the graph may change without notice.
+     */
+    private synchronized ConcurrentMap<String, Closure> getClosures( ArtifactFilter filter )
+    {
+        long state;
+        if ( dependencyGraph instanceof MapDependencyGraph )
+        {
+            state = ( (MapDependencyGraph) dependencyGraph ).getModificationCount();
+        }
+        else if ( dependencyGraph instanceof CompactDependencyGraph )
+        {
+            // the graph is compacted on the first walk, and cannot change afterwards
+            state = 0;
+        }
+        else
+        {
+            return null;
+        }
+
+        Object key = filter == null ? Boolean.TRUE : filter;
+        if ( closures == null || closures.graph != dependencyGraph || closures.state != state
+            || !closures.filter.equals( key ) )
+        {
+            closures = new Closures( dependencyGraph, state, key );
+        }
+        return closures.artifacts;
+    }
+
+    private static Closure getBranch( Future<Closure> future, Artifact originatingArtifact )
+        throws ArtifactResolutionException, ArtifactNotFoundException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof ArtifactResolutionException )
+            {
+                throw (ArtifactResolutionException) e.getCause();
+            }
+            if ( e.getCause() instanceof ArtifactNotFoundException )
+            {
+                throw (ArtifactNotFoundException) e.getCause();
+            }
+            throw new ArtifactResolutionException( "Unexpected error: " + e.getCause(), originatingArtifact,
+                                                   e.getCause() );
+        }
+        catch ( InterruptedException e )
+        {
+            throw new ArtifactResolutionException( "Interrupted", originatingArtifact, e );
+        }
+    }
+
+    /**
+     * @param memo the closures already walked, or <code>null</code>
+     * @param resolved the keys of the artifacts already resolved, or <code>null</code> to not resolve files
+     * @return the transitive dependencies of the artifact, breadth first, with their depths.
+     */
+    private Closure resolveBranch( Artifact root, Map<String, Artifact> managedVersions, ArtifactFilter filter,
+                                   ConcurrentMap<String, Closure> memo, List<ArtifactRepository> remoteRepositories,
+                                   ArtifactRepository localRepository, Set<String> resolved )
+        throws ArtifactResolutionException, ArtifactNotFoundException
+    {
+        Closure closure = memo == null ? null : memo.get( MapDependencyGraph.key( root ) );
+        if ( closure == null )
+        {
+            closure = walk( root, managedVersions, filter );
+            if ( memo != null )
+            {
+                memo.put( MapDependencyGraph.key( root ), closure );
+            }
+        }
+
+        if ( resolved != null )
+        {
+            if ( resolved.add( MapDependencyGraph.key( root ) ) )
+            {
+                resolve( root, remoteRepositories, localRepository );
+            }
+            for ( Artifact artifact : closure.dependencies )
+            {
+                if ( resolved.add( MapDependencyGraph.key( artifact ) ) )
+                {
+                    resolve( artifact, remoteRepositories, localRepository );
+                }
+            }
+        }
+        return closure;
+    }
+
+    private Closure walk( Artifact root, Map<String, Artifact> managedVersions, ArtifactFilter filter )
+    {
+        List<Artifact> dependencies = new ArrayList<Artifact>();
+        List<Integer> depths = new ArrayList<Integer>();
+        List<Artifact> cycles = new ArrayList<Artifact>();
+        if ( dependencyGraph != null )
+        {
+            String rootKey = MapDependencyGraph.key( root );
+            Set<String> visited = new HashSet<String>();
+            visited.add( rootKey );
+            List<Artifact> level = Collections.singletonList( root );
+            for ( int depth = 1; !level.isEmpty(); depth++ )
+            {
+                List<Artifact> next = new ArrayList<Artifact>();
+                for ( Artifact parent : level )
+                {
+                    List<Artifact> children = dependencyGraph.getDependencies( parent );
+                    if ( children == null )
+                    {
+                        continue;
+                    }
+                    for ( Artifact child : children )
+                    {
+                        if ( Artifact.SCOPE_TEST.equals( child.getScope() )
+                            || Artifact.SCOPE_PROVIDED.equals( child.getScope() ) || child.isOptional() )
+                        {
+                            continue;
+                        }
+                        child = manage( child, managedVersions.get( child.getDependencyConflictId() ) );
+                        String key = MapDependencyGraph.key( child );
+                        if ( key.equals( rootKey ) )
+                        {
+                            cycles.add( child );
+                        }
+                        else if ( ( filter == null || filter.include( child ) ) && visited.add( key ) )
+                        {
+                            dependencies.add( child );
+                            depths.add( depth );
+                            next.add( child );
+                        }
+                    }
+                }
+                level = next;
+            }
+        }
+
+        int[] levels = new int[depths.size()];
+        for ( int i = 0; i < levels.length; i++ )
+        {
+            levels[i] = depths.get( i );
+        }
+        return new Closure( Collections.unmodifiableList( dependencies ), levels,
+                            Collections.unmodifiableList( cycles ) );
+    }
+
+    /**
+     * Applies the managed version and scope to a copy of a transitive dependency, like the collector does, so that the
+     * graph and the managed artifacts are left as they are.
+     *
+     * @return the dependency, or a managed copy of it
+     */
+    private static Artifact manage( Artifact artifact, Artifact managed )
+    {
+        if ( managed == null )
+        {
+            return artifact;
+        }
+        boolean version = managed.getVersion() != null && !managed.getVersion().equals( artifact.getVersion() );
+        boolean scope = managed.getScope() != null && !managed.getScope().equals( artifact.getScope() );
+        if ( !version && !scope )
+        {
+            return artifact;
+        }
+        Artifact copy = ArtifactUtils.copyArtifact( artifact );
+        if ( version )
+        {
+            copy.setVersion( managed.getVersion() );
+        }
+        if ( scope )
+        {
+            copy.setScope( managed.getScope() );
+        }
+        return copy;
+    }
+
+    /**
+     * Transitive dependencies of an artifact, and its dependencies back to it.
+     */
+    private static final class Closure
+    {
+        private final List<Artifact> dependencies;
+
+        /** The depth of each dependency, from 1 for the direct ones. */
+        private final int[] depths;
+
+        private final List<Artifact> cycles;
+
+        Closure( List<Artifact> dependencies, int[] depths, List<Artifact> cycles )
+        {
+            this.dependencies = dependencies;
+            this.depths = depths;
+            this.cycles = cycles;
+        }
+    }
+
+    /**
+     * Closures walked with one filter in one state of one graph.
+     */
+    private static final class Closures
+    {
+        private final StubDependencyGraph graph;
+
+        private final long state;
+
+        private final Object filter;
+
+        private final ConcurrentMap<String, Closure> artifacts = new ConcurrentHashMap<String, Closure>();
+
+        Closures( StubDependencyGraph graph, long state, Object filter )
+        {
+            this.graph = graph;
+            this.state = state;
+            this.filter = filter;
+        }
     }
 }
@@ -0,0 +1,46 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * In-memory dependency graph backing {@link StubArtifactResolver} and {@link StubArtifactCollector}. Nodes are
+ * identified by <code>groupId:artifactId:type:classifier:version</code>, and the scope and optional flag of a
+ * dependency are carried by the returned artifacts. Implementations must be safe for concurrent reads once built.
+ *
+ * @since 3.0.1
+ */
+public interface StubDependencyGraph
+{
+    /**
+     * @param artifact the artifact, only its coordinates are used
+     * @return <code>true</code> if the artifact is a node of this graph
+     */
+    boolean contains( Artifact artifact );
+
+    /**
+     * @param artifact the artifact, only its coordinates are used
+     * @return the direct dependencies of the artifact, or <code>null</code> if it isn't a node of this graph
+     */
+    List<Artifact> getDependencies( Artifact artifact );
+}
@@ -0,0 +1,94 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class ArchiveCacheTest
+    extends TestCase
+{
+    private File workingDir;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        workingDir = new File( System.getProperty( "java.io.tmpdir" ), "archive-cache-test" );
+        FileUtils.deleteDirectory( workingDir );
+        workingDir.mkdirs();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( workingDir );
+        super.tearDown();
+    }
+
+    public void testKey() throws IOException
+    {
+        File srcFile = new File( workingDir, "src.txt" );
+        FileUtils.fileWrite( srcFile.getPath(), "content" );
+        File otherFile = new File( workingDir, "other.txt" );
+        FileUtils.fileWrite( otherFile.getPath(), "content" );
+
+        ArchiveCache cache = new ArchiveCache( new File( workingDir, "cache" ) );
+        String key = cache.getKey( "jar", srcFile, "a.txt" );
+        assertTrue( key.endsWith( ".jar" ) );
+        assertEquals( key, cache.getKey( "jar", otherFile, "a.txt" ) );
+        assertFalse( key.equals( cache.getKey( "zip", srcFile, "a.txt" ) ) );
+        assertFalse( key.equals( cache.getKey( "jar", srcFile, "b.txt" ) ) );
+
+        FileUtils.fileWrite( otherFile.getPath(), "changed" );
+        assertFalse( key.equals( cache.getKey( "jar", otherFile, "a.txt" ) ) );
+    }
+
+    public void testStoreAndRestore() throws IOException
+    {
+        File srcFile = new File( workingDir, "src.txt" );
+        FileUtils.fileWrite( srcFile.getPath(), "content" );
+        File archive = new File( workingDir, "archive.jar" );
+        FileUtils.fileWrite( archive.getPath(), "archive" );
+
+        ArchiveCache cache = new ArchiveCache( new File( workingDir, "cache" ) );
+        String key = cache.getKey( "jar", srcFile, "a.txt" );
+
+        File restored = new File( workingDir, "restored.jar" );
+        assertFalse( cache.restore( key, restored ) );
+        cache.store( key, archive );
+        assertTrue( cache.restore( key, restored ) );
+        assertEquals( "archive", FileUtils.fileRead( restored ) );
+
+        // a second cache on the same directory, as in a later test run
+        ArchiveCache later = new ArchiveCache( new File( workingDir, "cache" ) );
+        later.setLinkFiles( false );
+        assertTrue( later.restore( key, new File( workingDir, "copy.jar" ) ) );
+        assertEquals( "archive", FileUtils.fileRead( new File( workingDir, "copy.jar" ) ) );
+
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, later.getHits() );
+    }
+}
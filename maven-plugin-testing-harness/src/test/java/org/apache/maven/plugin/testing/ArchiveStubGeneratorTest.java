@@ -0,0 +1,110 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ArchiveStubGeneratorTest
+    extends TestCase
+{
+    private File workingDir;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        workingDir = new File( System.getProperty( "java.io.tmpdir" ), "archive-stub-generator-test" );
+        FileUtils.deleteDirectory( workingDir );
+        workingDir.mkdirs();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( workingDir );
+        super.tearDown();
+    }
+
+    public void testCreateArchive() throws IOException
+    {
+        ArchiveStubGenerator generator = new ArchiveStubGenerator( 1L );
+        generator.setEntryCount( 2000 );
+        generator.setDepth( 6 );
+        generator.setEntrySizes( 10, 1000 );
+        generator.setStoredRatio( 0.2 );
+
+        File archive = new File( workingDir, "test.zip" );
+        generator.createArchive( archive );
+
+        ZipFile zip = new ZipFile( archive );
+        try
+        {
+            assertEquals( 2000, zip.size() );
+            Set<String> names = new HashSet<String>();
+            int stored = 0;
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                names.add( entry.getName() );
+                assertTrue( entry.getSize() >= 10 && entry.getSize() <= 1000 );
+                assertTrue( entry.getName().split( "/" ).length <= 7 );
+                if ( entry.getMethod() == ZipEntry.STORED )
+                {
+                    stored++;
+                }
+            }
+            assertEquals( 2000, names.size() );
+            assertTrue( stored > 300 && stored < 500 );
+        }
+        finally
+        {
+            zip.close();
+        }
+
+        File again = new File( workingDir, "again.zip" );
+        generator.createArchive( again );
+        assertTrue( FileUtils.contentEquals( archive, again ) );
+    }
+
+    public void testSetArchiveFiles() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        Set<Artifact> artifacts = factory.getTypedArchiveArtifacts();
+
+        ArchiveStubGenerator generator = new ArchiveStubGenerator();
+        generator.setEntryCount( 10 );
+        generator.setArchiveFiles( artifacts, workingDir );
+        for ( Artifact artifact : artifacts )
+        {
+            assertTrue( artifact.getFile().isFile() );
+        }
+    }
+}
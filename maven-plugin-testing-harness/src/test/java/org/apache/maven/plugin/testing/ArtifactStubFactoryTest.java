@@ -19,10 +19,17 @@ package org.apache.maven.plugin.testing;
  * under the License.
  */
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.testing.stubs.DefaultArtifactHandlerStub;
+import org.codehaus.plexus.util.FileUtils;
+
 public class ArtifactStubFactoryTest
     extends TestCase
 {
@@ -40,4 +47,177 @@ public class ArtifactStubFactoryTest
         ArtifactStubFactory factory = new ArtifactStubFactory();
         assertFalse(factory.isCreateFiles());
     }
+
+    public void testCreateArtifacts() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        Set<Artifact> artifacts = factory.createArtifacts( 10000, 1L );
+        assertEquals( 10000, artifacts.size() );
+
+        int snapshots = 0;
+        int compile = 0;
+        for ( Artifact artifact : artifacts )
+        {
+            if ( artifact.isSnapshot() )
+            {
+                snapshots++;
+            }
+            if ( Artifact.SCOPE_COMPILE.equals( artifact.getScope() ) )
+            {
+                compile++;
+            }
+        }
+        assertTrue( "snapshots: " + snapshots, snapshots > 800 && snapshots < 1200 );
+        assertTrue( "compile: " + compile, compile > 6500 && compile < 7500 );
+
+        Iterator<Artifact> first = artifacts.iterator();
+        Iterator<Artifact> second = factory.createArtifacts( 10000, 1L ).iterator();
+        while ( first.hasNext() )
+        {
+            Artifact a = first.next();
+            Artifact b = second.next();
+            assertEquals( a.getId(), b.getId() );
+            assertEquals( a.getScope(), b.getScope() );
+            if ( a.getType().equals( b.getType() ) && a.getVersion().equals( b.getVersion() ) )
+            {
+                assertSame( a.getArtifactHandler(), b.getArtifactHandler() );
+                assertSame( a.getVersionRange(), b.getVersionRange() );
+            }
+        }
+    }
+
+    public void testSharedArtifactHandlers() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        factory.setShareArtifactHandlers( true );
+        Artifact a = factory.createArtifact( "org.test", "a", "1.0", Artifact.SCOPE_COMPILE, "test-jar", "tests" );
+        Artifact b = factory.createArtifact( "org.test", "b", "2.0", Artifact.SCOPE_TEST, "test-jar", "tests" );
+        Artifact c = factory.createArtifact( "org.test", "c", "2.0", Artifact.SCOPE_TEST, "test-jar", null );
+
+        assertSame( a.getArtifactHandler(), b.getArtifactHandler() );
+        assertNotSame( a.getArtifactHandler(), c.getArtifactHandler() );
+        assertEquals( "jar", a.getArtifactHandler().getExtension() );
+        assertEquals( "test-jars", a.getArtifactHandler().getDirectory() );
+        assertEquals( "tests", a.getArtifactHandler().getClassifier() );
+        assertNull( c.getArtifactHandler().getClassifier() );
+    }
+
+    public void testArtifactHandlersAreMutableByDefault() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        Artifact a = factory.createArtifact( "org.test", "a", "1.0", Artifact.SCOPE_COMPILE, "test-jar", "tests" );
+        Artifact b = factory.createArtifact( "org.test", "b", "2.0", Artifact.SCOPE_TEST, "test-jar", "tests" );
+
+        DefaultArtifactHandlerStub handler = (DefaultArtifactHandlerStub) a.getArtifactHandler();
+        handler.setExtension( "zip" );
+        assertEquals( "zip", a.getArtifactHandler().getExtension() );
+        assertEquals( "jar", b.getArtifactHandler().getExtension() );
+    }
+
+    public void testSharedArtifactHandlerRejectsChanges() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        factory.setShareArtifactHandlers( true );
+        Artifact a = factory.createArtifact( "org.test", "a", "1.0", Artifact.SCOPE_COMPILE, "jar", null );
+
+        DefaultArtifactHandlerStub handler = (DefaultArtifactHandlerStub) a.getArtifactHandler();
+        try
+        {
+            handler.setExtension( "zip" );
+            fail( "Expected UnsupportedOperationException" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+        assertEquals( "jar", handler.getExtension() );
+    }
+
+    public void testCreateArtifactsWithFiles() throws IOException
+    {
+        File workingDir = new File( System.getProperty( "java.io.tmpdir" ), "artifact-stub-factory-test" );
+        FileUtils.deleteDirectory( workingDir );
+        try
+        {
+            ArtifactStubFactory factory = new ArtifactStubFactory( workingDir, true );
+            for ( Artifact artifact : factory.createArtifacts( 500, 2L ) )
+            {
+                assertTrue( artifact.getFile().isFile() );
+            }
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( workingDir );
+        }
+    }
+
+    public void testSetArtifactFilesModes() throws IOException
+    {
+        File workingDir = new File( System.getProperty( "java.io.tmpdir" ), "artifact-stub-factory-test" );
+        FileUtils.deleteDirectory( workingDir );
+        try
+        {
+            File srcFile = new File( workingDir, "src.txt" );
+            workingDir.mkdirs();
+            FileUtils.fileWrite( srcFile.getPath(), "content" );
+
+            ArtifactStubFactory factory = new ArtifactStubFactory();
+            Set<Artifact> artifacts = factory.createArtifacts( 50, 3L );
+
+            factory.setFileMode( ArtifactStubFactory.FileMode.SPARSE );
+            factory.setFileSize( 4096 );
+            factory.setArtifactFiles( artifacts, new File( workingDir, "sparse" ), srcFile );
+            for ( Artifact artifact : artifacts )
+            {
+                assertEquals( 4096, artifact.getFile().length() );
+            }
+
+            factory.setFileMode( ArtifactStubFactory.FileMode.LINK );
+            factory.setArtifactFiles( artifacts, new File( workingDir, "link" ), srcFile );
+            for ( Artifact artifact : artifacts )
+            {
+                assertEquals( "content", FileUtils.fileRead( artifact.getFile() ) );
+            }
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( workingDir );
+        }
+    }
+
+    public void testUnpackableFileIgnoresSparseMode() throws IOException
+    {
+        File workingDir = new File( System.getProperty( "java.io.tmpdir" ), "artifact-stub-factory-test" );
+        FileUtils.deleteDirectory( workingDir );
+        try
+        {
+            File srcFile = new File( workingDir, "src.txt" );
+            workingDir.mkdirs();
+            FileUtils.fileWrite( srcFile.getPath(), "content" );
+
+            // seed the cache with the archive, so no archiver is needed to create it
+            ArtifactStubFactory factory = new ArtifactStubFactory();
+            Artifact artifact = factory.createArtifact( "org.test", "a", "1.0" );
+            ArchiveCache cache = new ArchiveCache( new File( workingDir, "cache" ) );
+            File archive = new File( workingDir, "archive.jar" );
+            FileUtils.fileWrite( archive.getPath(), "archive" );
+            cache.store( cache.getKey( "jar", srcFile, ArtifactStubFactory.getUnpackableFileName( artifact ) ),
+                         archive );
+
+            factory = new ArtifactStubFactory( new File( workingDir, "files" ), true );
+            factory.setSrcFile( srcFile );
+            factory.setArchiveCache( cache );
+            factory.setUnpackableFile( null );
+            factory.setFileMode( ArtifactStubFactory.FileMode.SPARSE );
+            factory.setFileSize( 4096 );
+            artifact = factory.createArtifact( "org.test", "a", "1.0" );
+
+            assertEquals( "archive", FileUtils.fileRead( artifact.getFile() ) );
+            assertEquals( 1, cache.getHits() );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( workingDir );
+        }
+    }
 }
@@ -0,0 +1,152 @@
+package org.apache.maven.plugin.testing;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.testing.stubs.CompactMavenProjectStub;
+import org.apache.maven.project.MavenProject;
+
+public class ReactorStubFactoryTest
+    extends TestCase
+{
+    public void testReactorLayout()
+    {
+        ReactorStubFactory factory = new ReactorStubFactory( 42L );
+        factory.setDepth( 2 );
+        factory.setFanOut( 10 );
+
+        List<MavenProject> projects = factory.createReactor( 111 );
+
+        assertEquals( 111, projects.size() );
+        MavenProject root = projects.get( 0 );
+        assertTrue( root.isExecutionRoot() );
+        assertEquals( "pom", root.getPackaging() );
+        assertEquals( 10, root.getModules().size() );
+        assertEquals( 110, root.getCollectedProjects().size() );
+
+        for ( MavenProject project : projects.subList( 1, projects.size() ) )
+        {
+            assertNotNull( project.getParent() );
+            assertTrue( project.getParent().getModules().contains( project.getArtifactId() ) );
+        }
+    }
+
+    public void testDependenciesPointBackwards()
+    {
+        ReactorStubFactory factory = new ReactorStubFactory( 7L );
+        factory.setDependencyDensity( 0.5 );
+
+        List<MavenProject> projects = factory.createReactor( 200 );
+
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        int dependencyCount = 0;
+        for ( int i = 0; i < projects.size(); i++ )
+        {
+            MavenProject project = projects.get( i );
+            for ( Dependency dependency : project.getDependencies() )
+            {
+                Integer position = positions.get( dependency.getArtifactId() );
+                assertNotNull( project.getArtifactId() + " depends on a later module", position );
+                assertFalse( "pom".equals( projects.get( position.intValue() ).getPackaging() ) );
+                dependencyCount++;
+            }
+            positions.put( project.getArtifactId(), Integer.valueOf( i ) );
+        }
+        assertTrue( dependencyCount > 0 );
+    }
+
+    public void testSameSeedSameReactor()
+    {
+        List<MavenProject> first = new ReactorStubFactory( 3L ).createReactor( 500 );
+        List<MavenProject> second = new ReactorStubFactory( 3L ).createReactor( 500 );
+
+        for ( int i = 0; i < first.size(); i++ )
+        {
+            assertEquals( first.get( i ).getPackaging(), second.get( i ).getPackaging() );
+            assertEquals( first.get( i ).getDependencies().size(), second.get( i ).getDependencies().size() );
+        }
+    }
+
+    public void testPackagingMix()
+    {
+        ReactorStubFactory factory = new ReactorStubFactory();
+        factory.addPackaging( "ejb", 1 );
+
+        for ( MavenProject project : factory.createReactor( 50 ) )
+        {
+            assertTrue( "pom".equals( project.getPackaging() ) || "ejb".equals( project.getPackaging() ) );
+        }
+    }
+
+    public void testTooManyModules()
+    {
+        ReactorStubFactory factory = new ReactorStubFactory();
+        factory.setDepth( 1 );
+        factory.setFanOut( 3 );
+
+        try
+        {
+            factory.createReactor( 5 );
+            fail( "Expected IllegalArgumentException" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testCompactReactor()
+    {
+        ReactorStubFactory factory = new ReactorStubFactory( 42L );
+        factory.setCompact( true );
+        factory.setDependencyDensity( 0.2 );
+
+        List<MavenProject> projects = factory.createReactor( 1000 );
+
+        for ( MavenProject project : projects )
+        {
+            CompactMavenProjectStub stub = (CompactMavenProjectStub) project;
+            assertEquals( "pom".equals( stub.getPackaging() ), stub.isModelCreated() );
+            assertSame( factory.getGroupId(), stub.getGroupId() );
+        }
+
+        MavenProject leaf = projects.get( projects.size() - 1 );
+        assertEquals( factory.getGroupId() + ":" + leaf.getArtifactId() + ":" + leaf.getPackaging() + ":"
+            + factory.getVersion(), leaf.getId() );
+        int dependencyCount = leaf.getDependencies().size();
+        assertEquals( dependencyCount, leaf.getModel().getDependencies().size() );
+        assertEquals( dependencyCount, leaf.getDependencies().size() );
+    }
+
+    public void testCreateSession()
+    {
+        MavenSession session = new ReactorStubFactory().createSession( null, 20 );
+
+        assertEquals( 20, session.getProjects().size() );
+        assertSame( session.getProjects().get( 0 ), session.getCurrentProject() );
+    }
+}
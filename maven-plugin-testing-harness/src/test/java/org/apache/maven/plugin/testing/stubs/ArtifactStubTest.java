@@ -0,0 +1,155 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+public class ArtifactStubTest
+    extends TestCase
+{
+    public void testEquals()
+    {
+        ArtifactStub a = createArtifactStub( "org.test", "a", "1.0", "jar" );
+        ArtifactStub b = createArtifactStub( "org.test", "a", "1.0", "jar" );
+        assertEquals( a, b );
+        assertEquals( a.hashCode(), b.hashCode() );
+        assertEquals( 0, a.compareTo( b ) );
+
+        Set<Artifact> set = new HashSet<Artifact>();
+        set.add( a );
+        set.add( b );
+        assertEquals( 1, set.size() );
+
+        b.setType( "war" );
+        assertFalse( a.equals( b ) );
+        set.add( b );
+        assertEquals( 2, set.size() );
+    }
+
+    public void testId()
+    {
+        ArtifactStub a = createArtifactStub( "org.test", "a", "1.0", "jar" );
+        assertEquals( "org.test:a:jar:1.0", a.getId() );
+
+        a.setVersion( "1.1" );
+        assertEquals( "org.test:a:jar:1.1", a.getId() );
+    }
+
+    public void testSubclassGetters()
+    {
+        ClassifiedArtifactStub a = new ClassifiedArtifactStub();
+        a.setGroupId( "org.test" );
+        a.setArtifactId( "a" );
+        a.setVersion( "1.0" );
+        a.setType( "jar" );
+        ArtifactStub b = createArtifactStub( "org.test", "a", "1.0", "jar" );
+        assertEquals( "org.test:a:jar:1.0", a.getId() );
+        assertEquals( b.hashCode(), a.hashCode() );
+
+        a.classifier = "tests";
+        assertEquals( "org.test:a:jar:tests:1.0", a.getId() );
+        assertFalse( b.hashCode() == a.hashCode() );
+        assertFalse( a.equals( b ) );
+    }
+
+    public void testCompareTo()
+    {
+        Set<Artifact> set = new TreeSet<Artifact>();
+        set.add( createArtifactStub( "org.test", "b", "1.0", "jar" ) );
+        set.add( createArtifactStub( "org.test", "a", "1.10", "jar" ) );
+        set.add( createArtifactStub( "org.test", "a", "1.9", "jar" ) );
+        set.add( createArtifactStub( "org.test", "a", "1.9", "jar" ) );
+        assertEquals( 3, set.size() );
+
+        Iterator<Artifact> it = set.iterator();
+        assertEquals( "org.test:a:jar:1.9", it.next().getId() );
+        assertEquals( "org.test:a:jar:1.10", it.next().getId() );
+        assertEquals( "org.test:b:jar:1.0", it.next().getId() );
+    }
+
+    public void testCompareToDefaultArtifact()
+    {
+        ArtifactStub stub = createArtifactStub( "org.test", "a", "1.0", "jar" );
+        Artifact sources =
+            new DefaultArtifact( "org.test", "a", VersionRange.createFromVersion( "1.0" ), "compile", "jar", "sources",
+                                 new DefaultArtifactHandler( "jar" ) );
+        assertTrue( stub.compareTo( sources ) > 0 );
+        assertTrue( sources.compareTo( stub ) < 0 );
+
+        ClassifiedArtifactStub classified = new ClassifiedArtifactStub();
+        classified.setGroupId( "org.test" );
+        classified.setArtifactId( "a" );
+        classified.setVersion( "1.0" );
+        classified.setType( "jar" );
+        classified.classifier = "tests";
+        Artifact plain =
+            new DefaultArtifact( "org.test", "a", VersionRange.createFromVersion( "1.0" ), "compile", "jar", null,
+                                 new DefaultArtifactHandler( "jar" ) );
+        assertTrue( classified.compareTo( plain ) < 0 );
+        assertTrue( plain.compareTo( classified ) > 0 );
+        assertEquals( 0, stub.compareTo( plain ) );
+        assertEquals( 0, plain.compareTo( stub ) );
+
+        Set<Artifact> set = new TreeSet<Artifact>();
+        set.add( stub );
+        set.add( sources );
+        set.add( classified );
+        Iterator<Artifact> it = set.iterator();
+        assertSame( sources, it.next() );
+        assertSame( classified, it.next() );
+        assertSame( stub, it.next() );
+    }
+
+    private static ArtifactStub createArtifactStub( String groupId, String artifactId, String version, String type )
+    {
+        ArtifactStub artifact = new ArtifactStub();
+        artifact.setGroupId( groupId );
+        artifact.setArtifactId( artifactId );
+        artifact.setVersion( version );
+        artifact.setType( type );
+        return artifact;
+    }
+
+    private static class ClassifiedArtifactStub
+        extends ArtifactStub
+    {
+        private String classifier;
+
+        public String getClassifier()
+        {
+            return classifier;
+        }
+
+        public boolean hasClassifier()
+        {
+            return classifier != null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.plugin.testing.ArtifactStubFactory;
+
+public class CompactDependencyGraphTest
+    extends TestCase
+{
+    public void testDependencies()
+        throws Exception
+    {
+        CompactDependencyGraph graph = new CompactDependencyGraph();
+        int a = graph.addNode( "org.test", "a", "1.0", "jar", null );
+        int b = graph.addNode( "org.test", "b", "1.0", "test-jar", "tests" );
+        int c = graph.addNode( "org.test", "c", "2.0", "jar", null );
+        assertEquals( a, graph.addNode( "org.test", "a", "1.0", "jar", null ) );
+        graph.addDependency( a, b, Artifact.SCOPE_TEST, false );
+        graph.addDependency( c, b, Artifact.SCOPE_COMPILE, false );
+        graph.addDependency( a, c, Artifact.SCOPE_RUNTIME, true );
+        assertEquals( 3, graph.getNodeCount() );
+        assertEquals( 3, graph.getEdgeCount() );
+
+        Artifact artifact = new ArtifactStubFactory().createArtifact( "org.test", "a", "1.0" );
+        List<Artifact> dependencies = graph.getDependencies( artifact );
+        assertEquals( 2, dependencies.size() );
+        assertEquals( "b", dependencies.get( 0 ).getArtifactId() );
+        assertEquals( "tests", dependencies.get( 0 ).getClassifier() );
+        assertEquals( Artifact.SCOPE_TEST, dependencies.get( 0 ).getScope() );
+        assertFalse( dependencies.get( 0 ).isOptional() );
+        assertEquals( "c", dependencies.get( 1 ).getArtifactId() );
+        assertEquals( Artifact.SCOPE_RUNTIME, dependencies.get( 1 ).getScope() );
+        assertTrue( dependencies.get( 1 ).isOptional() );
+
+        assertTrue( graph.getDependencies( graph.getArtifact( b ) ).isEmpty() );
+        assertNull( graph.getDependencies( new ArtifactStubFactory().createArtifact( "org.test", "x", "1.0" ) ) );
+
+        try
+        {
+            graph.addNode( "org.test", "d", "1.0", "jar", null );
+            fail( "the graph is compacted" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    public void testCollect()
+        throws Exception
+    {
+        CompactDependencyGraph graph = new CompactDependencyGraph();
+        int previous = graph.addNode( "org.test", "node-0", "1.0", "jar", null );
+        for ( int i = 1; i < 10000; i++ )
+        {
+            int node = graph.addNode( "org.test", "node-" + i, "1.0", "jar", null );
+            graph.addDependency( previous, node, Artifact.SCOPE_COMPILE, false );
+            graph.addDependency( node / 2, node, Artifact.SCOPE_COMPILE, false );
+            previous = node;
+        }
+        assertEquals( 5000, graph.addNode( "org.test", "node-5000", "1.0", "jar", "" ) );
+        assertEquals( 10000, graph.getNodeCount() );
+
+        ArtifactResolutionResult result =
+            new StubArtifactCollector( graph ).collect( Collections.singleton( graph.getArtifact( 0 ) ), null, null,
+                                                        null, null, null, null );
+        assertEquals( 10000, result.getArtifacts().size() );
+    }
+}
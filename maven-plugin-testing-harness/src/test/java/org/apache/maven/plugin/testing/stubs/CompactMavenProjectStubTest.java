@@ -0,0 +1,103 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+
+public class CompactMavenProjectStubTest
+    extends TestCase
+{
+    public void testLazyModel()
+    {
+        CompactMavenProjectStub project = new CompactMavenProjectStub( "org.test", "a", "1.0", "jar" );
+        project.setFile( new File( "a", "pom.xml" ) );
+        project.setParent( new CompactMavenProjectStub( "org.test", "parent", "1.0", "pom" ) );
+        project.setCollectedProjects( Collections.<MavenProject>emptyList() );
+        assertFalse( project.isModelCreated() );
+
+        assertEquals( "org.test:a:jar:1.0", project.getId() );
+        assertEquals( new File( "a" ), project.getBasedir() );
+        assertEquals( "parent", project.getParent().getArtifactId() );
+        assertFalse( project.isModelCreated() );
+
+        assertEquals( "a", project.getModel().getArtifactId() );
+        assertTrue( project.isModelCreated() );
+    }
+
+    public void testDependencies()
+    {
+        CompactMavenProjectStub project = new CompactMavenProjectStub( "org.test", "a", "1.0", "jar" );
+        project.getDependencies().add( dependency( "b" ) );
+        assertFalse( project.isModelCreated() );
+        assertEquals( 1, project.getModel().getDependencies().size() );
+
+        project.getDependencies().add( dependency( "c" ) );
+        project.setModel( null );
+        assertFalse( project.isModelCreated() );
+        assertEquals( 2, project.getDependencies().size() );
+
+        project.setModel( new Model() );
+        assertTrue( project.getDependencies().isEmpty() );
+    }
+
+    public void testSetModel()
+    {
+        Model model = new Model();
+        model.setGroupId( "org.test" );
+        model.setArtifactId( "b" );
+        model.setVersion( "2.0" );
+        model.setPackaging( "war" );
+        model.setName( "B" );
+
+        CompactMavenProjectStub project = new CompactMavenProjectStub();
+        project.setModel( model );
+        assertEquals( "org.test", project.getGroupId() );
+        assertEquals( "b", project.getArtifactId() );
+        assertEquals( "2.0", project.getVersion() );
+        assertEquals( "war", project.getPackaging() );
+        assertEquals( "B", project.getName() );
+        assertEquals( "org.test:b:war:2.0", project.getId() );
+
+        project.getModel().setVersion( "2.1" );
+        assertEquals( "2.1", project.getVersion() );
+        project.setArtifactId( "c" );
+        assertEquals( "c", model.getArtifactId() );
+
+        project.setModel( null );
+        assertEquals( "org.test:c:war:2.1", project.getId() );
+        assertEquals( "B", project.getName() );
+    }
+
+    private static Dependency dependency( String artifactId )
+    {
+        Dependency dependency = new Dependency();
+        dependency.setGroupId( "org.test" );
+        dependency.setArtifactId( artifactId );
+        dependency.setVersion( "1.0" );
+        return dependency;
+    }
+}
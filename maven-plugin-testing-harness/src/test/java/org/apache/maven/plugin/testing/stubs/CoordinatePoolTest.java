@@ -0,0 +1,93 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+public class CoordinatePoolTest
+    extends TestCase
+{
+    public void testIntern()
+    {
+        CoordinatePool pool = new CoordinatePool();
+        pool.setStatisticsEnabled( true );
+        String first = pool.intern( new String( "org.test" ) );
+        String second = pool.intern( new String( "org.test" ) );
+        assertSame( first, second );
+        assertSame( first, pool.intern( first ) );
+        assertNull( pool.intern( null ) );
+
+        assertEquals( 1, pool.size() );
+        assertEquals( 3, pool.getRequestCount() );
+        assertEquals( 1, pool.getDuplicateCount() );
+        assertEquals( 1.0 / 3, pool.getDedupRatio(), 0.0001 );
+        assertEquals( 24 + 32, pool.getBytesSaved() );
+
+        pool.clear();
+        assertEquals( 0, pool.size() );
+        assertEquals( 0, pool.getRequestCount() );
+        assertEquals( 0, pool.getBytesSaved() );
+    }
+
+    public void testStatisticsDisabledByDefault()
+    {
+        CoordinatePool pool = new CoordinatePool();
+        pool.intern( new String( "org.test" ) );
+        pool.intern( new String( "org.test" ) );
+        assertEquals( 0, pool.getRequestCount() );
+        assertEquals( 0, pool.getDuplicateCount() );
+    }
+
+    public void testUnusedStringsAreDropped()
+        throws Exception
+    {
+        CoordinatePool pool = new CoordinatePool();
+        pool.intern( new String( "org.test.unused" ) );
+        String kept = pool.intern( new String( "org.test.kept" ) );
+        for ( int i = 0; i < 50 && pool.size() > 1; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, pool.size() );
+        assertSame( kept, pool.intern( new String( "org.test.kept" ) ) );
+    }
+
+    public void testKey()
+    {
+        CoordinatePool pool = new CoordinatePool();
+        String key = pool.key( "org.test", "a", null, "1.0" );
+        assertEquals( "org.test:a::1.0", key );
+        assertSame( key, pool.key( "org.test", "a", null, "1.0" ) );
+    }
+
+    public void testSharedByStubs()
+    {
+        ArtifactStub a = new ArtifactStub();
+        a.setGroupId( new String( "org.test.shared" ) );
+        ArtifactStub b = new ArtifactStub();
+        b.setGroupId( new String( "org.test.shared" ) );
+        assertSame( a.getGroupId(), b.getGroupId() );
+
+        MavenProjectStub project = new MavenProjectStub();
+        project.setGroupId( new String( "org.test.shared" ) );
+        assertSame( a.getGroupId(), project.getGroupId() );
+    }
+}
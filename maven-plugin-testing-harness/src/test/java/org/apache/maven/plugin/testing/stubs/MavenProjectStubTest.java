@@ -0,0 +1,126 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.testing.ArtifactStubFactory;
+
+public class MavenProjectStubTest
+    extends TestCase
+{
+    private Artifact compile;
+
+    private Artifact provided;
+
+    private Artifact runtime;
+
+    private Artifact test;
+
+    private Artifact system;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        compile = factory.createArtifact( "org.test", "compile", "1.0", Artifact.SCOPE_COMPILE );
+        provided = factory.createArtifact( "org.test", "provided", "1.0", Artifact.SCOPE_PROVIDED );
+        runtime = factory.createArtifact( "org.test", "runtime", "1.0", Artifact.SCOPE_RUNTIME );
+        test = factory.createArtifact( "org.test", "test", "1.0", Artifact.SCOPE_TEST );
+        system = factory.createArtifact( "org.test", "system", "1.0", Artifact.SCOPE_SYSTEM );
+        compile.setFile( new File( "compile.jar" ) );
+        runtime.setFile( new File( "runtime.jar" ) );
+    }
+
+    public void testScopedViews()
+        throws Exception
+    {
+        MavenProjectStub project = new MavenProjectStub();
+        List<Artifact> artifacts = Arrays.asList( compile, provided, runtime, test, system );
+        project.setArtifacts( new LinkedHashSet<Artifact>( artifacts ) );
+
+        assertEquals( Arrays.asList( compile, provided, system ), project.getCompileArtifacts() );
+        assertEquals( Arrays.asList( compile, runtime ), project.getRuntimeArtifacts() );
+        assertEquals( artifacts, project.getTestArtifacts() );
+        assertEquals( Arrays.asList( system ), project.getSystemArtifacts() );
+        assertEquals( 3, project.getCompileDependencies().size() );
+        assertEquals( "provided", project.getCompileDependencies().get( 1 ).getArtifactId() );
+        assertSame( project.getCompileArtifacts(), project.getCompileArtifacts() );
+
+        assertSame( project.getArtifacts(), project.getArtifacts() );
+
+        Set<Artifact> all = project.getArtifacts();
+        project.removeArtifact( provided );
+        assertEquals( Arrays.asList( compile, system ), project.getCompileArtifacts() );
+        assertEquals( 4, project.getArtifacts().size() );
+        assertEquals( 5, all.size() );
+
+        project.addArtifact( provided );
+        assertEquals( Arrays.asList( compile, system, provided ), project.getCompileArtifacts() );
+        assertEquals( 5, project.getArtifacts().size() );
+        assertFalse( project.addArtifact( provided ) );
+    }
+
+    public void testClasspathElements()
+        throws Exception
+    {
+        MavenProjectStub project = new MavenProjectStub();
+        project.addArtifact( compile );
+        project.addArtifact( runtime );
+
+        List<String> elements = project.getRuntimeClasspathElements();
+        assertEquals( Arrays.asList( "compile.jar", "runtime.jar" ), elements );
+        assertSame( elements, project.getRuntimeClasspathElements() );
+
+        Build build = new Build();
+        build.setOutputDirectory( "classes" );
+        build.setTestOutputDirectory( "test-classes" );
+        project.setBuild( build );
+        assertEquals( Arrays.asList( "classes", "compile.jar" ), project.getCompileClasspathElements() );
+        assertEquals( Arrays.asList( "test-classes", "classes", "compile.jar", "runtime.jar" ),
+                      project.getTestClasspathElements() );
+
+        project.addArtifact( system );
+        assertEquals( Arrays.asList( "classes", "compile.jar" ), project.getCompileClasspathElements() );
+        system.setFile( new File( "system.jar" ) );
+        assertEquals( Arrays.asList( "classes", "compile.jar", "system.jar" ), project.getCompileClasspathElements() );
+
+        project.setCompileSourceRoots( Arrays.asList( "src/main/java" ) );
+        assertEquals( Arrays.asList( "src/main/java" ), project.getCompileClasspathElements() );
+    }
+
+    public void testExplicitLists()
+    {
+        MavenProjectStub project = new MavenProjectStub();
+        project.addArtifact( compile );
+        project.setCompileArtifacts( Arrays.asList( system ) );
+        assertEquals( Arrays.asList( system ), project.getCompileArtifacts() );
+        assertEquals( Arrays.asList( compile ), project.getRuntimeArtifacts() );
+    }
+}
@@ -0,0 +1,216 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ResolutionListener;
+import org.apache.maven.artifact.resolver.ResolutionNode;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.testing.ArtifactStubFactory;
+import org.apache.maven.repository.legacy.resolver.conflict.ConflictResolver;
+
+public class StubArtifactCollectorTest
+    extends TestCase
+{
+    private ArtifactStubFactory factory = new ArtifactStubFactory();
+
+    private MapDependencyGraph graph = new MapDependencyGraph();
+
+    private Artifact a;
+
+    private Artifact d;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        a = artifact( "a", "1.0" );
+        d = artifact( "d", "1.0" );
+        Artifact b = artifact( "b", "1.0" );
+        graph.addDependency( a, b );
+        graph.addDependency( b, artifact( "c", "1.0" ) );
+        graph.addDependency( b, artifact( "e", "1.0" ) );
+        graph.addDependency( d, artifact( "c", "2.0" ) );
+        graph.addDependency( artifact( "b", "1.5" ), artifact( "f", "1.0" ) );
+    }
+
+    private Artifact artifact( String artifactId, String version )
+        throws IOException
+    {
+        return factory.createArtifact( "org.test", artifactId, version );
+    }
+
+    private static List<String> ids( Set<Artifact> artifacts )
+    {
+        List<String> ids = new ArrayList<String>();
+        for ( Artifact artifact : artifacts )
+        {
+            ids.add( artifact.getArtifactId() + ":" + artifact.getVersion() );
+        }
+        return ids;
+    }
+
+    public void testNearestWins()
+        throws Exception
+    {
+        StubArtifactCollector collector = new StubArtifactCollector( graph );
+        RecordingListener listener = new RecordingListener();
+
+        ArtifactResolutionResult result =
+            collector.collect( new LinkedHashSet<Artifact>( Arrays.asList( a, d ) ), null, null, null, null, null,
+                               Collections.<ResolutionListener>singletonList( listener ) );
+
+        assertEquals( Arrays.asList( "a:1.0", "d:1.0", "b:1.0", "c:2.0", "e:1.0" ), ids( result.getArtifacts() ) );
+        assertEquals( Arrays.asList( "c:1.0" ), listener.omitted );
+        assertEquals( 5, result.getArtifactResolutionNodes().size() );
+    }
+
+    public void testManagedVersions()
+        throws Exception
+    {
+        StubArtifactCollector collector = new StubArtifactCollector( graph );
+        Map<String, Artifact> managedVersions = Collections.singletonMap( "org.test:b:jar", artifact( "b", "1.5" ) );
+
+        ArtifactResolutionResult result =
+            collector.collect( Collections.singleton( a ), null, managedVersions, (ArtifactRepository) null, null, null,
+                               null, null );
+
+        assertEquals( Arrays.asList( "a:1.0", "b:1.5", "f:1.0" ), ids( result.getArtifacts() ) );
+    }
+
+    public void testManagedScopes()
+        throws Exception
+    {
+        StubArtifactCollector collector = new StubArtifactCollector( graph );
+        Map<String, Artifact> managedVersions =
+            Collections.singletonMap( "org.test:e:jar",
+                                      factory.createArtifact( "org.test", "e", "1.0", Artifact.SCOPE_RUNTIME, "jar",
+                                                              "" ) );
+
+        ArtifactResolutionResult result =
+            collector.collect( Collections.singleton( a ), null, managedVersions, (ArtifactRepository) null, null, null,
+                               null, null );
+
+        assertEquals( Arrays.asList( "a:1.0", "b:1.0", "c:1.0", "e:1.0" ), ids( result.getArtifacts() ) );
+        for ( Artifact artifact : result.getArtifacts() )
+        {
+            assertEquals( "e".equals( artifact.getArtifactId() ) ? Artifact.SCOPE_RUNTIME : Artifact.SCOPE_COMPILE,
+                          artifact.getScope() );
+        }
+    }
+
+    public void testFartherWinnerReplacesDependencies()
+        throws Exception
+    {
+        Artifact g = artifact( "g", "1.0" );
+        graph.addDependency( d, g );
+        graph.addDependency( g, artifact( "b", "1.5" ) );
+        StubArtifactCollector collector = new StubArtifactCollector( graph );
+        RecordingListener listener = new RecordingListener();
+
+        ArtifactResolutionResult result =
+            collector.collect( new LinkedHashSet<Artifact>( Arrays.asList( a, d ) ), null, null,
+                               (ArtifactRepository) null, null, null, null,
+                               Collections.<ResolutionListener>singletonList( listener ),
+                               Collections.<ConflictResolver>singletonList( new NewestConflictResolver() ) );
+
+        assertEquals( Arrays.asList( "a:1.0", "d:1.0", "b:1.5", "c:2.0", "g:1.0", "f:1.0" ),
+                      ids( result.getArtifacts() ) );
+        assertEquals( Arrays.asList( "c:1.0", "b:1.0" ), listener.omitted );
+        assertEquals( 6, result.getArtifactResolutionNodes().size() );
+    }
+
+    private static class NewestConflictResolver
+        implements ConflictResolver
+    {
+        public ResolutionNode resolveConflict( ResolutionNode node1, ResolutionNode node2 )
+        {
+            ArtifactVersion version1 = new DefaultArtifactVersion( node1.getArtifact().getVersion() );
+            ArtifactVersion version2 = new DefaultArtifactVersion( node2.getArtifact().getVersion() );
+            return version1.compareTo( version2 ) >= 0 ? node1 : node2;
+        }
+    }
+
+    private static class RecordingListener
+        implements ResolutionListener
+    {
+        private List<String> omitted = new ArrayList<String>();
+
+        public void omitForNearer( Artifact omitted, Artifact kept )
+        {
+            this.omitted.add( omitted.getArtifactId() + ":" + omitted.getVersion() );
+        }
+
+        public void testArtifact( Artifact node )
+        {
+        }
+
+        public void startProcessChildren( Artifact artifact )
+        {
+        }
+
+        public void endProcessChildren( Artifact artifact )
+        {
+        }
+
+        public void includeArtifact( Artifact artifact )
+        {
+        }
+
+        public void updateScope( Artifact artifact, String scope )
+        {
+        }
+
+        public void manageArtifact( Artifact artifact, Artifact replacement )
+        {
+        }
+
+        public void omitForCycle( Artifact artifact )
+        {
+        }
+
+        public void updateScopeCurrentPom( Artifact artifact, String ignoredScope )
+        {
+        }
+
+        public void selectVersionFromRange( Artifact artifact )
+        {
+        }
+
+        public void restrictRange( Artifact artifact, Artifact replacement, VersionRange newRange )
+        {
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadata;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.plugin.testing.ArtifactStubFactory;
+import org.codehaus.plexus.util.FileUtils;
+
+public class StubArtifactRepositoryTest
+    extends TestCase
+{
+    public void testPathOf() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        StubArtifactRepository repository = new StubArtifactRepository( "target/repo" );
+
+        Artifact artifact = factory.createArtifact( "org.test", "a", "1.0", Artifact.SCOPE_COMPILE, "jar", "sources" );
+        assertEquals( "org/test/a/1.0/a-1.0-sources.jar", repository.pathOf( artifact ) );
+
+        artifact = factory.createArtifact( "org.test", "b", "2.0-SNAPSHOT", Artifact.SCOPE_COMPILE, "war", null );
+        assertEquals( "org/test/b/2.0-SNAPSHOT/b-2.0-SNAPSHOT.war", repository.pathOf( artifact ) );
+    }
+
+    public void testIndex() throws IOException
+    {
+        ArtifactStubFactory factory = new ArtifactStubFactory();
+        StubArtifactRepository repository = new StubArtifactRepository( "target/repo" );
+        Set<Artifact> artifacts = factory.createArtifacts( 1000, 5L );
+        repository.addArtifacts( artifacts );
+
+        for ( Artifact artifact : artifacts )
+        {
+            Artifact lookup = factory.createArtifact( artifact.getGroupId(), artifact.getArtifactId(),
+                                                      artifact.getVersion(), artifact.getScope(), artifact.getType(),
+                                                      artifact.getClassifier() );
+            assertSame( lookup, repository.find( lookup ) );
+            assertTrue( lookup.isResolved() );
+            assertTrue( repository.findVersions( lookup ).contains( artifact.getVersion() ) );
+        }
+
+        Artifact unknown = factory.createArtifact( "org.test", "unknown", "1.0" );
+        assertNull( repository.find( unknown ) );
+        assertTrue( repository.findVersions( unknown ).isEmpty() );
+    }
+
+    public void testScan() throws IOException
+    {
+        File basedir = new File( System.getProperty( "java.io.tmpdir" ), "stub-artifact-repository-test" );
+        FileUtils.deleteDirectory( basedir );
+        try
+        {
+            ArtifactStubFactory factory = new ArtifactStubFactory();
+            Artifact one = factory.createArtifact( "org.test", "a", "1.0" );
+            Artifact two = factory.createArtifact( "org.test", "a", "1.1" );
+
+            StubArtifactRepository repository = new StubArtifactRepository( basedir.getPath() );
+            for ( Artifact artifact : Arrays.asList( one, two ) )
+            {
+                File file = new File( basedir, repository.pathOf( artifact ) );
+                file.getParentFile().mkdirs();
+                file.createNewFile();
+            }
+            new File( basedir, "org/test/a/maven-metadata-local.xml" ).createNewFile();
+
+            assertEquals( 2, repository.scan() );
+            assertEquals( Arrays.asList( "1.0", "1.1" ), repository.findVersions( one ) );
+            assertEquals( new File( basedir, "org/test/a/1.1/a-1.1.jar" ), repository.find( two ).getFile() );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( basedir );
+        }
+    }
+
+    public void testScanRequiresDefaultLayout()
+    {
+        StubArtifactRepository repository = new StubArtifactRepository( "target/repo" );
+        repository.setLayout( new ArtifactRepositoryLayout()
+        {
+            public String getId()
+            {
+                return "flat";
+            }
+
+            public String pathOf( Artifact artifact )
+            {
+                return artifact.getArtifactId() + "-" + artifact.getVersion() + "." + artifact.getType();
+            }
+
+            public String pathOfLocalRepositoryMetadata( ArtifactMetadata metadata, ArtifactRepository repository )
+            {
+                return metadata.getLocalFilename( repository );
+            }
+
+            public String pathOfRemoteRepositoryMetadata( ArtifactMetadata metadata )
+            {
+                return metadata.getRemoteFilename();
+            }
+        } );
+
+        try
+        {
+            repository.scan();
+            fail( "Expected IllegalStateException" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+}
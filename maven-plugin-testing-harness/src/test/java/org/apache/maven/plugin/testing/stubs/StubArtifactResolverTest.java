@@ -0,0 +1,321 @@
+package org.apache.maven.plugin.testing.stubs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ResolutionListener;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.testing.ArtifactStubFactory;
+
+public class StubArtifactResolverTest
+    extends TestCase
+{
+    private ArtifactStubFactory factory = new ArtifactStubFactory();
+
+    private MapDependencyGraph graph = new MapDependencyGraph();
+
+    private Artifact a;
+
+    private Artifact f;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        a = artifact( "a", Artifact.SCOPE_COMPILE );
+        f = artifact( "f", Artifact.SCOPE_COMPILE );
+        Artifact b = artifact( "b", Artifact.SCOPE_COMPILE );
+        graph.addDependency( a, b );
+        graph.addDependency( a, artifact( "skipped-test", Artifact.SCOPE_TEST ) );
+        graph.addDependency( b, artifact( "c", Artifact.SCOPE_RUNTIME ) );
+        graph.addDependency( b, a );
+        graph.addDependency( f, artifact( "b", Artifact.SCOPE_COMPILE ) );
+        graph.addDependency( f, artifact( "g", Artifact.SCOPE_COMPILE ) );
+    }
+
+    private Artifact artifact( String artifactId, String scope )
+        throws IOException
+    {
+        return factory.createArtifact( "org.test", artifactId, "1.0", scope );
+    }
+
+    private static List<String> artifactIds( Set<Artifact> artifacts )
+    {
+        List<String> ids = new ArrayList<String>();
+        for ( Artifact artifact : artifacts )
+        {
+            ids.add( artifact.getArtifactId() );
+        }
+        return ids;
+    }
+
+    public void testResolveTransitively()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>( Arrays.asList( a, f ) );
+
+        ArtifactResolutionResult result = resolver.resolveTransitively( artifacts, null, null, null, null );
+        assertEquals( Arrays.asList( "a", "f", "b", "g", "c" ), artifactIds( result.getArtifacts() ) );
+
+        // memoized
+        assertEquals( artifactIds( result.getArtifacts() ),
+                      artifactIds( resolver.resolveTransitively( artifacts, null, null, null, null ).getArtifacts() ) );
+    }
+
+    public void testGraphChanges()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        Set<Artifact> artifacts = Collections.singleton( f );
+        assertEquals( Arrays.asList( "f", "b", "g", "c", "a" ),
+                      artifactIds( resolver.resolveTransitively( artifacts, null, null, null, null ).getArtifacts() ) );
+
+        graph.addDependency( f, artifact( "h", Artifact.SCOPE_COMPILE ) );
+        assertEquals( Arrays.asList( "f", "b", "g", "h", "c", "a" ),
+                      artifactIds( resolver.resolveTransitively( artifacts, null, null, null, null ).getArtifacts() ) );
+    }
+
+    public void testListeners()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        resolver.setThreads( 1 );
+        RecordingListener listener = new RecordingListener();
+
+        resolver.resolveTransitively( new LinkedHashSet<Artifact>( Arrays.asList( a, f ) ), null, null, null, null,
+                                      Collections.<ResolutionListener>singletonList( listener ) );
+        // a depends on itself through b, and f depends on another instance of b
+        assertEquals( Arrays.asList( "cycle:a", "omit:b", "include:a", "include:f", "include:b", "include:g",
+                                     "include:c" ), listener.events );
+    }
+
+    public void testNearestWins()
+        throws Exception
+    {
+        Artifact p = artifact( "p", Artifact.SCOPE_COMPILE );
+        Artifact q = artifact( "q", Artifact.SCOPE_COMPILE );
+        Artifact r = artifact( "r", Artifact.SCOPE_COMPILE );
+        Artifact s = artifact( "s", Artifact.SCOPE_COMPILE );
+        Artifact far = factory.createArtifact( "org.test", "d", "1.0", Artifact.SCOPE_COMPILE );
+        Artifact near = factory.createArtifact( "org.test", "d", "2.0", Artifact.SCOPE_COMPILE );
+        graph.addDependency( p, q );
+        graph.addDependency( q, r );
+        graph.addDependency( r, far );
+        graph.addDependency( s, near );
+
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        resolver.setThreads( 1 );
+        RecordingListener listener = new RecordingListener();
+        ArtifactResolutionResult result =
+            resolver.resolveTransitively( new LinkedHashSet<Artifact>( Arrays.asList( p, s ) ), null, null, null,
+                                          null, Collections.<ResolutionListener>singletonList( listener ) );
+
+        // d is a direct dependency of s, but three levels down under p, which comes first
+        assertEquals( Arrays.asList( "p", "s", "q", "d", "r" ), artifactIds( result.getArtifacts() ) );
+        assertTrue( result.getArtifacts().contains( near ) );
+        assertFalse( result.getArtifacts().contains( far ) );
+        assertEquals( "omit:d", listener.events.get( 0 ) );
+    }
+
+    public void testManagedVersions()
+        throws Exception
+    {
+        Artifact managed = factory.createArtifact( "org.test", "b", "2.0", Artifact.SCOPE_RUNTIME );
+        boolean resolved = managed.isResolved();
+        Map<String, Artifact> managedVersions = new HashMap<String, Artifact>();
+        managedVersions.put( managed.getDependencyConflictId(), managed );
+
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        ArtifactResolutionResult result =
+            resolver.resolveTransitively( Collections.singleton( a ), null, managedVersions, null, null, null );
+
+        Artifact b = null;
+        for ( Artifact artifact : result.getArtifacts() )
+        {
+            if ( "b".equals( artifact.getArtifactId() ) )
+            {
+                b = artifact;
+            }
+        }
+        assertNotNull( b );
+        assertNotSame( managed, b );
+        assertEquals( "2.0", b.getVersion() );
+        assertEquals( Artifact.SCOPE_RUNTIME, b.getScope() );
+
+        // the managed artifacts are left as they are
+        assertEquals( "2.0", managed.getVersion() );
+        assertEquals( resolved, managed.isResolved() );
+        assertNull( managed.getRepository() );
+    }
+
+    public void testResolveTransitivelyWithFilter()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        resolver.setThreads( 1 );
+        ArtifactFilter filter = new ArtifactFilter()
+        {
+            public boolean include( Artifact artifact )
+            {
+                return !"c".equals( artifact.getArtifactId() );
+            }
+        };
+
+        ArtifactResolutionResult result =
+            resolver.resolveTransitively( Collections.singleton( a ), null, null, null, null, filter );
+        assertEquals( Arrays.asList( "a", "b" ), artifactIds( result.getArtifacts() ) );
+    }
+
+    public void testResolveRequest()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        ArtifactResolutionRequest request = new ArtifactResolutionRequest();
+        request.setArtifact( f );
+        request.setResolveRoot( true );
+        request.setResolveTransitively( true );
+
+        ArtifactResolutionResult result = resolver.resolve( request );
+        assertTrue( result.isSuccess() );
+        assertEquals( Arrays.asList( "f", "b", "g", "c", "a" ), artifactIds( result.getArtifacts() ) );
+    }
+
+    public void testResolveRequestFailure()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, false, true );
+        ArtifactResolutionRequest request = new ArtifactResolutionRequest();
+        request.setArtifact( a );
+        request.setResolveRoot( true );
+
+        ArtifactResolutionResult result = resolver.resolve( request );
+        assertTrue( result.hasMissingArtifacts() );
+    }
+
+    public void testLatencyAndFailures()
+        throws Exception
+    {
+        StubArtifactResolver resolver = new StubArtifactResolver( null, graph );
+        resolver.setThreads( 2 );
+        resolver.setLatency( "org.test:*", LatencyDistribution.fixed( 20 ) );
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>( Arrays.asList( a, f ) );
+
+        resolver.resolveTransitively( artifacts, null, null, null, null );
+        List<ResolutionCall> calls = resolver.getCalls();
+        assertEquals( 5, calls.size() );
+        for ( ResolutionCall call : calls )
+        {
+            assertTrue( call.getDurationNanos() >= 20000000L );
+            assertFalse( call.isFailed() );
+        }
+        assertEquals( 2, resolver.getMaxConcurrency() );
+        assertTrue( resolver.getEffectiveParallelism() > 1.0 );
+
+        resolver.resetStatistics();
+        resolver.setLatency( "org.test:*", null );
+        resolver.setFailureRate( "*:g:*", 1.0 );
+        try
+        {
+            resolver.resolveTransitively( artifacts, null, null, null, null );
+            fail( "g must fail" );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            assertEquals( "g", e.getArtifactId() );
+        }
+        boolean failed = false;
+        for ( ResolutionCall call : resolver.getCalls() )
+        {
+            failed |= call.isFailed();
+        }
+        assertTrue( failed );
+    }
+
+    private static class RecordingListener
+        implements ResolutionListener
+    {
+        private List<String> events = new ArrayList<String>();
+
+        public void testArtifact( Artifact node )
+        {
+        }
+
+        public void startProcessChildren( Artifact artifact )
+        {
+        }
+
+        public void endProcessChildren( Artifact artifact )
+        {
+        }
+
+        public void includeArtifact( Artifact artifact )
+        {
+            events.add( "include:" + artifact.getArtifactId() );
+        }
+
+        public void omitForNearer( Artifact omitted, Artifact kept )
+        {
+            events.add( "omit:" + omitted.getArtifactId() );
+        }
+
+        public void updateScope( Artifact artifact, String scope )
+        {
+        }
+
+        public void manageArtifact( Artifact artifact, Artifact replacement )
+        {
+        }
+
+        public void omitForCycle( Artifact artifact )
+        {
+            events.add( "cycle:" + artifact.getArtifactId() );
+        }
+
+        public void updateScopeCurrentPom( Artifact artifact, String ignoredScope )
+        {
+        }
+
+        public void selectVersionFromRange( Artifact artifact )
+        {
+            events.add( "range:" + artifact.getArtifactId() );
+        }
+
+        public void restrictRange( Artifact artifact, Artifact replacement, VersionRange newRange )
+        {
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Keeps the artifact packaged by {@link ProjectTool#packageProjectArtifact(File, String, boolean, File)}, along with
+ * the test-time POM its <code>MavenProject</code> is read from, so that the package build can be skipped as long as
+ * the project does not change. The fingerprint of a build covers the content of the POM and of the
+ * <code>src/main</code> tree, i.e. the sources and resources, and the parameters of the build such as the test
+ * version. Parent POMs are not covered.
+ * <p/>
+ * An entry is a directory holding the POM, the artifact and a <code>build.properties</code> file, written last, with
+ * the fingerprint and the name of the artifact.
+ *
+ * @since 3.0.1
+ */
+final class ArtifactBuildCache
+{
+    private static final String PROPERTIES = "build.properties";
+
+    private static final String POM = "pom.xml";
+
+    private final File directory;
+
+    /**
+     * @param directory the directory of the entry, created when storing
+     */
+    ArtifactBuildCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @param pomFile the POM of the project
+     * @param parameters the parameters of the build changing its result
+     * @return the fingerprint of the build
+     * @throws IOException if a file of the project cannot be read
+     */
+    static String fingerprint( File pomFile, String... parameters )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not available: " + e.getMessage() );
+        }
+
+        update( digest, "pom " + IncrementalStager.hash( pomFile ) );
+        addDirectory( digest, new File( pomFile.getAbsoluteFile().getParentFile(), "src/main" ), "src/main/" );
+        for ( String parameter : parameters )
+        {
+            update( digest, "parameter " + parameter );
+        }
+
+        StringBuilder hex = new StringBuilder( 40 );
+        for ( byte b : digest.digest() )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private static void addDirectory( MessageDigest digest, File directory, String prefix )
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        Arrays.sort( files );
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                if ( !IncrementalStager.DEFAULT_EXCLUDES.contains( file.getName() ) )
+                {
+                    addDirectory( digest, file, prefix + file.getName() + '/' );
+                }
+            }
+            else
+            {
+                update( digest, prefix + file.getName() + ' ' + IncrementalStager.hash( file ) );
+            }
+        }
+    }
+
+    private static void update( MessageDigest digest, String value )
+    {
+        try
+        {
+            digest.update( ( value + '\n' ).getBytes( "UTF-8" ) );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    /**
+     * Restores the POM and the artifact of the entry to where the build wrote them.
+     *
+     * @param fingerprint the fingerprint of the build
+     * @param pomFile where to restore the test-time POM
+     * @return the restored artifact, or <code>null</code> if the entry is missing, or was stored with another
+     *         fingerprint
+     * @throws IOException if the entry cannot be restored
+     */
+    File restore( String fingerprint, File pomFile )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( new File( directory, PROPERTIES ) );
+            properties.load( in );
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        String artifactPath = properties.getProperty( "artifact" );
+        if ( !fingerprint.equals( properties.getProperty( "fingerprint" ) ) || artifactPath == null )
+        {
+            return null;
+        }
+        File cachedPom = new File( directory, POM );
+        File cachedArtifact = new File( directory, new File( artifactPath ).getName() );
+        if ( !cachedPom.isFile() || !cachedArtifact.isFile() )
+        {
+            return null;
+        }
+
+        File artifactFile = new File( pomFile.getParentFile(), artifactPath );
+        FileUtils.copyFile( cachedPom, pomFile );
+        if ( artifactFile.length() != cachedArtifact.length()
+            || artifactFile.lastModified() != cachedArtifact.lastModified() )
+        {
+            FileUtils.copyFile( cachedArtifact, artifactFile );
+            artifactFile.setLastModified( cachedArtifact.lastModified() );
+        }
+        return artifactFile;
+    }
+
+    /**
+     * Replaces the entry.
+     *
+     * @param fingerprint the fingerprint of the build
+     * @param pomFile the test-time POM of the build
+     * @param artifactPath the path of the packaged artifact, relative to the directory of the POM
+     * @throws IOException if the entry cannot be written
+     */
+    void store( String fingerprint, File pomFile, String artifactPath )
+        throws IOException
+    {
+        // an entry without properties is never used, even if this store fails halfway
+        File propertiesFile = new File( directory, PROPERTIES );
+        propertiesFile.delete();
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+
+        File artifactFile = new File( pomFile.getParentFile(), artifactPath );
+        File cachedArtifact = new File( directory, artifactFile.getName() );
+        FileUtils.copyFile( pomFile, new File( directory, POM ) );
+        FileUtils.copyFile( artifactFile, cachedArtifact );
+        cachedArtifact.setLastModified( artifactFile.lastModified() );
+
+        Properties properties = new Properties();
+        properties.setProperty( "fingerprint", fingerprint );
+        properties.setProperty( "artifact", artifactPath );
+        OutputStream out = new FileOutputStream( propertiesFile );
+        try
+        {
+            properties.store( out, "Packaged artifact of the build with this fingerprint" );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log file written by a thread of its own, so that the threads producing the lines, e.g. the output threads of a
+ * forked build, never wait for the disk. Lines are queued in a bounded buffer and appended by the writer thread to a
+ * direct byte buffer, which is written to a <code>FileChannel</code> when it is full, when the oldest unwritten line is
+ * older than the flush interval, and on {@link #close()}; being direct, it needs no copy on the way to the file. Lines
+ * are encoded with the platform encoding.
+ * <p/>
+ * When the queue is full, {@link OverflowPolicy#BLOCK} makes the producers wait, and {@link OverflowPolicy#DROP}
+ * drops their lines, writing how many were dropped instead.
+ *
+ * @since 3.0.1
+ */
+public class AsyncLogWriter
+    implements Closeable
+{
+    /**
+     * What to do with a line when the queue is full.
+     */
+    public enum OverflowPolicy
+    {
+        /** Wait for the writer thread. */
+        BLOCK,
+
+        /** Drop the line. */
+        DROP
+    }
+
+    private static final String LS = System.getProperty( "line.separator" );
+
+    /** Queued by {@link #close()}, compared by identity. */
+    private static final String END = new String( "END" );
+
+    private static final int BATCH_SIZE = 1024;
+
+    private final File file;
+
+    private final BlockingQueue<String> queue;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final long flushInterval;
+
+    private final Thread thread;
+
+    private final AtomicLong pendingDrops = new AtomicLong();
+
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    private final AtomicLong writtenLines = new AtomicLong();
+
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a log with a queue of 8192 lines, a buffer of 64 KB and a flush interval of 200 milliseconds, blocking
+     * on overflow.
+     *
+     * @param file the log file, created or truncated, with its parent directories
+     * @throws IOException if the file cannot be opened
+     */
+    public AsyncLogWriter( File file )
+        throws IOException
+    {
+        this( file, 8192, OverflowPolicy.BLOCK, 64 * 1024, 200 );
+    }
+
+    /**
+     * @param file the log file, created or truncated, with its parent directories
+     * @param capacity the number of lines the queue holds
+     * @param overflowPolicy what to do with a line when the queue is full
+     * @param bufferSize the number of bytes collected before they are written to the file
+     * @param flushInterval the time, in milliseconds, after which collected bytes are written to the file anyway
+     * @throws IOException if the file cannot be opened
+     */
+    public AsyncLogWriter( File file, int capacity, OverflowPolicy overflowPolicy, int bufferSize, long flushInterval )
+        throws IOException
+    {
+        this.file = file;
+        this.queue = new ArrayBlockingQueue<String>( capacity );
+        this.overflowPolicy = overflowPolicy;
+        this.buffer = ByteBuffer.allocateDirect( bufferSize );
+        this.flushInterval = flushInterval;
+
+        if ( file.getParentFile() != null )
+        {
+            file.getParentFile().mkdirs();
+        }
+        channel = new FileOutputStream( file ).getChannel();
+
+        thread = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                drain();
+            }
+        }, "log-writer-" + file.getName() );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Queues a line, waiting or dropping it if the queue is full, depending on the overflow policy.
+     *
+     * @param line the line, without line separator
+     * @throws IOException if the log is closed, or the writer thread failed to write to it
+     */
+    public void write( String line )
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Log closed: " + file );
+        }
+        if ( failure != null )
+        {
+            throw failure;
+        }
+
+        if ( overflowPolicy == OverflowPolicy.DROP )
+        {
+            if ( !queue.offer( line ) )
+            {
+                pendingDrops.incrementAndGet();
+                droppedLines.incrementAndGet();
+            }
+        }
+        else
+        {
+            try
+            {
+                queue.put( line );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while writing to log: " + file );
+            }
+        }
+    }
+
+    /**
+     * Writes the queued lines, then closes the file.
+     *
+     * @throws IOException if the writer thread failed to write to the file
+     */
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            queue.put( END );
+            thread.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while closing log: " + file );
+        }
+        if ( failure != null )
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the number of lines written so far, dropped ones excluded
+     */
+    public long getWrittenLines()
+    {
+        return writtenLines.get();
+    }
+
+    /**
+     * @return the number of lines dropped because the queue was full
+     */
+    public long getDroppedLines()
+    {
+        return droppedLines.get();
+    }
+
+    private void drain()
+    {
+        CharsetEncoder encoder =
+            Charset.defaultCharset().newEncoder().onMalformedInput( CodingErrorAction.REPLACE ).onUnmappableCharacter(
+                CodingErrorAction.REPLACE );
+        List<String> batch = new ArrayList<String>( BATCH_SIZE );
+        long oldest = 0;
+        boolean end = false;
+        try
+        {
+            while ( !end )
+            {
+                String first = queue.poll( flushInterval, TimeUnit.MILLISECONDS );
+                if ( first != null )
+                {
+                    batch.add( first );
+                    queue.drainTo( batch, BATCH_SIZE - 1 );
+                    if ( buffer.position() == 0 )
+                    {
+                        oldest = System.currentTimeMillis();
+                    }
+                }
+
+                for ( String line : batch )
+                {
+                    if ( line == END )
+                    {
+                        end = true;
+                        break;
+                    }
+                    encode( encoder, line );
+                    writtenLines.incrementAndGet();
+                }
+                batch.clear();
+
+                long drops = pendingDrops.getAndSet( 0 );
+                if ( drops > 0 )
+                {
+                    encode( encoder, "[" + drops + " log lines dropped]" );
+                }
+
+                if ( end || ( buffer.position() > 0 && System.currentTimeMillis() - oldest >= flushInterval ) )
+                {
+                    flush();
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+            closeChannel();
+            // keep consuming until closed, so that no producer waits forever on a full queue
+            try
+            {
+                while ( !end )
+                {
+                    end = queue.take() == END;
+                }
+            }
+            catch ( InterruptedException ie )
+            {
+                // stop
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            failure = new InterruptedIOException( "Log writer interrupted: " + file );
+        }
+        finally
+        {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch ( IOException e )
+        {
+            if ( failure == null )
+            {
+                failure = e;
+            }
+        }
+    }
+
+    private void encode( CharsetEncoder encoder, String line )
+        throws IOException
+    {
+        encode( encoder, CharBuffer.wrap( line ) );
+        encode( encoder, CharBuffer.wrap( LS ) );
+    }
+
+    private void encode( CharsetEncoder encoder, CharBuffer chars )
+        throws IOException
+    {
+        while ( true )
+        {
+            CoderResult result = encoder.encode( chars, buffer, true );
+            if ( result.isOverflow() )
+            {
+                flush();
+            }
+            else
+            {
+                break;
+            }
+        }
+        encoder.reset();
+    }
+
+    private void flush()
+        throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+}
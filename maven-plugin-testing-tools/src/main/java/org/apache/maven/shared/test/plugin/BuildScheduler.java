@@ -0,0 +1,433 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Runs many test builds of a {@link BuildTool} concurrently. Builds are scheduled under a name, then
+ * {@link #start() started} together, longest first according to the durations recorded by previous runs in the
+ * {@link #setHistoryFile(File) history file}, so that the longest builds do not end up running last and alone. Builds
+ * never run before are considered the longest. Each build gets its own log file and, if a
+ * {@link #setLocalRepositoryRoot(File) root} is given, its own local repository.
+ * <p/>
+ * The number of concurrent builds defaults to the number of processors, bounded by the physical memory divided by
+ * the {@link #setMemoryPerBuild(long) memory of a build}. With {@link #setFailFast(boolean) fail-fast}, the first
+ * failed build cancels the builds still waiting; the running ones complete. Builds of an
+ * {@link BuildTool#setEmbedded(boolean) embedded} build tool run one at a time whatever the number of threads, since
+ * they share the JVM: give the build tool a worker pool to run them in parallel.
+ *
+ * @since 3.0.1
+ */
+public class BuildScheduler
+{
+    private final BuildTool buildTool;
+
+    private int threads;
+
+    private long memoryPerBuild = 512L * 1024 * 1024;
+
+    private boolean failFast;
+
+    private File logDirectory = new File( "target/build-logs" );
+
+    private File localRepositoryRoot;
+
+    private File historyFile;
+
+    private final Properties history = new Properties();
+
+    private final List<BuildTask> pending = new ArrayList<BuildTask>();
+
+    private final List<BuildTask> tasks = new ArrayList<BuildTask>();
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * @param buildTool the tool running the builds, forked, embedded or on its worker pool
+     */
+    public BuildScheduler( BuildTool buildTool )
+    {
+        this.buildTool = buildTool;
+    }
+
+    /**
+     * @param threads the maximum number of concurrent builds, <code>0</code> to size it from the processors and the
+     *            memory, the default
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * @return the maximum number of concurrent builds
+     */
+    public int getThreads()
+    {
+        if ( threads > 0 )
+        {
+            return threads;
+        }
+        int count = Runtime.getRuntime().availableProcessors();
+        long memory = getPhysicalMemory();
+        if ( memory > 0 && memoryPerBuild > 0 )
+        {
+            count = (int) Math.min( count, memory / memoryPerBuild );
+        }
+        return Math.max( 1, count );
+    }
+
+    /**
+     * @param memoryPerBuild the memory used by a build, in bytes, 512 MB by default
+     */
+    public void setMemoryPerBuild( long memoryPerBuild )
+    {
+        this.memoryPerBuild = memoryPerBuild;
+    }
+
+    /**
+     * @param failFast <code>true</code> to cancel the waiting builds once one fails
+     */
+    public void setFailFast( boolean failFast )
+    {
+        this.failFast = failFast;
+    }
+
+    /**
+     * @param logDirectory the directory of the build logs, named after the builds, <code>target/build-logs</code> by
+     *            default
+     */
+    public void setLogDirectory( File logDirectory )
+    {
+        this.logDirectory = logDirectory;
+    }
+
+    /**
+     * @param localRepositoryRoot the directory holding a local repository per build, named after it, or
+     *            <code>null</code> to use the local repository of the requests, the default
+     */
+    public void setLocalRepositoryRoot( File localRepositoryRoot )
+    {
+        this.localRepositoryRoot = localRepositoryRoot;
+    }
+
+    /**
+     * @param historyFile the properties file recording the duration of each build by name, loaded now if it exists
+     *            and saved on {@link #shutdown()}
+     * @throws TestToolsException if the file cannot be read
+     */
+    public void setHistoryFile( File historyFile )
+        throws TestToolsException
+    {
+        this.historyFile = historyFile;
+        if ( historyFile != null && historyFile.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( historyFile );
+                synchronized ( history )
+                {
+                    history.load( in );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new TestToolsException( "Error reading build history: " + historyFile, e );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    /**
+     * @param name the name of a build
+     * @return its duration in milliseconds, as last recorded, or <code>-1</code> if unknown
+     */
+    public long getRecordedDuration( String name )
+    {
+        String duration;
+        synchronized ( history )
+        {
+            duration = history.getProperty( name );
+        }
+        return duration == null ? -1 : Long.parseLong( duration );
+    }
+
+    /**
+     * Schedules a standard build, logging to <code><i>logDirectory</i>/<i>name</i>.log</code>.
+     *
+     * @param name the name of the build, unique among the scheduled builds
+     * @param pom the POM of the build
+     * @param properties the command-line properties of the build
+     * @param goals the goals and/or lifecycle phases of the build
+     * @return the future result of the build
+     */
+    public Future<InvocationResult> schedule( String name, File pom, Properties properties, List<String> goals )
+    {
+        File logFile = new File( logDirectory, name + ".log" );
+        return schedule( name, buildTool.createBasicInvocationRequest( pom, properties, goals, logFile ) );
+    }
+
+    /**
+     * Schedules a build. It waits for {@link #start()}, unless the scheduler is already started.
+     *
+     * @param name the name of the build, unique among the scheduled builds
+     * @param request the request of the build
+     * @return the future result of the build
+     */
+    public synchronized Future<InvocationResult> schedule( String name, InvocationRequest request )
+    {
+        if ( localRepositoryRoot != null && request.getLocalRepositoryDirectory( null ) == null )
+        {
+            request.setLocalRepositoryDirectory( new File( localRepositoryRoot, name ) );
+        }
+
+        BuildTask task = new BuildTask( name, request, getRecordedDuration( name ) );
+        tasks.add( task );
+        if ( executor == null )
+        {
+            pending.add( task );
+        }
+        else
+        {
+            executor.execute( task );
+        }
+        return task;
+    }
+
+    /**
+     * Starts the scheduled builds, longest first.
+     */
+    public synchronized void start()
+    {
+        if ( executor == null )
+        {
+            int count = getThreads();
+            executor =
+                new ThreadPoolExecutor( count, count, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>() );
+            Collections.sort( pending );
+            for ( BuildTask task : pending )
+            {
+                executor.execute( task );
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Cancels the builds still waiting.
+     *
+     * @return the number of cancelled builds
+     */
+    public synchronized int cancel()
+    {
+        int count = 0;
+        for ( BuildTask task : tasks )
+        {
+            if ( !task.started && task.cancel( false ) )
+            {
+                count++;
+            }
+        }
+        if ( executor != null )
+        {
+            executor.purge();
+        }
+        return count;
+    }
+
+    /**
+     * Lets the scheduled builds complete, then stops the threads and saves the history.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return <code>true</code> if all builds completed in time
+     * @throws TestToolsException if the history cannot be saved
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown( long timeout, TimeUnit unit )
+        throws TestToolsException, InterruptedException
+    {
+        start();
+        executor.shutdown();
+        boolean terminated = executor.awaitTermination( timeout, unit );
+        saveHistory();
+        return terminated;
+    }
+
+    /**
+     * Lets the scheduled builds complete, then stops the threads and saves the history.
+     *
+     * @throws TestToolsException if the history cannot be saved
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown()
+        throws TestToolsException, InterruptedException
+    {
+        shutdown( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+    }
+
+    private void saveHistory()
+        throws TestToolsException
+    {
+        if ( historyFile == null )
+        {
+            return;
+        }
+        if ( historyFile.getParentFile() != null )
+        {
+            historyFile.getParentFile().mkdirs();
+        }
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( historyFile );
+            synchronized ( history )
+            {
+                history.store( out, "Build durations in milliseconds" );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new TestToolsException( "Error writing build history: " + historyFile, e );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private void completed( BuildTask task, long duration, boolean failed )
+    {
+        synchronized ( history )
+        {
+            history.setProperty( task.name, String.valueOf( duration ) );
+        }
+        if ( failed && failFast )
+        {
+            cancel();
+        }
+    }
+
+    /**
+     * @return the physical memory of the machine, or <code>0</code> if the JVM cannot tell
+     */
+    private static long getPhysicalMemory()
+    {
+        try
+        {
+            // through the interface, as the implementation class is not accessible from Java 9
+            Class<?> type = Class.forName( "com.sun.management.OperatingSystemMXBean" );
+            Object bean = ManagementFactory.getOperatingSystemMXBean();
+            if ( type.isInstance( bean ) )
+            {
+                return ( (Number) type.getMethod( "getTotalPhysicalMemorySize" ).invoke( bean ) ).longValue();
+            }
+        }
+        catch ( Exception e )
+        {
+            // not a Sun JVM
+        }
+        return 0;
+    }
+
+    /**
+     * A scheduled build, ordered by decreasing expected duration.
+     */
+    private final class BuildTask
+        extends FutureTask<InvocationResult>
+        implements Comparable<BuildTask>
+    {
+        private final String name;
+
+        private final long expectedDuration;
+
+        private volatile boolean started;
+
+        BuildTask( final String name, final InvocationRequest request, long recordedDuration )
+        {
+            super( new Callable<InvocationResult>()
+            {
+                public InvocationResult call()
+                    throws TestToolsException
+                {
+                    return buildTool.executeMaven( request );
+                }
+            } );
+            this.name = name;
+            this.expectedDuration = recordedDuration < 0 ? Long.MAX_VALUE : recordedDuration;
+        }
+
+        /** {@inheritDoc} */
+        public void run()
+        {
+            started = true;
+            long start = System.currentTimeMillis();
+            super.run();
+            if ( !isCancelled() )
+            {
+                boolean failed;
+                try
+                {
+                    failed = get().getExitCode() != 0;
+                }
+                catch ( Exception e )
+                {
+                    failed = true;
+                }
+                completed( this, System.currentTimeMillis() - start, failed );
+            }
+        }
+
+        /** {@inheritDoc} */
+        public int compareTo( BuildTask other )
+        {
+            if ( expectedDuration == other.expectedDuration )
+            {
+                return 0;
+            }
+            return expectedDuration > other.expectedDuration ? -1 : 1;
+        }
+    }
+}
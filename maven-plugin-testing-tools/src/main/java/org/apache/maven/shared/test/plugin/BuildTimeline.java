@@ -0,0 +1,704 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Output handler building the timeline of a build from its console output, as the lines come: the modules, the mojo
+ * executions of each module with their durations, the test summaries and the downloads. Each event is timed when its
+ * line is consumed, so the durations include the latency of the output, which is negligible for a forked build.
+ * <p/>
+ * The console output of Maven 2 and 3 is understood, with or without colors. The timeline can be written as JSON by
+ * {@link #toJson()}, with the total time spent in each <code>plugin:goal</code>, to compare builds across runs.
+ *
+ * @since 3.0.1
+ */
+public class BuildTimeline
+    implements InvocationOutputHandler
+{
+    private static final Pattern ANSI = Pattern.compile( "\u001B\\[[;\\d]*m" );
+
+    private static final Pattern LEVEL = Pattern.compile( "^\\[(?:INFO|WARNING|WARN|ERROR|DEBUG)\\] ?" );
+
+    /** Maven 3.6+ module header, e.g. <code>--------< org.example:foo >--------</code>. */
+    private static final Pattern MODULE_ID = Pattern.compile( "^-+< (\\S+) >-+$" );
+
+    /** Module name, followed by the version since Maven 3, and by the position in the reactor since Maven 3.6. */
+    private static final Pattern MODULE = Pattern.compile( "^Building (.+?)(?: (\\d\\S*))?(?:\\s+\\[\\d+/\\d+\\])?$" );
+
+    /** Maven 3, e.g. <code>--- maven-compiler-plugin:3.1:compile (default-compile) @ foo ---</code>. */
+    private static final Pattern MOJO = Pattern.compile( "^--- (\\S+?):(\\S+?):(\\S+) \\((.+?)\\) @ (\\S+) ---$" );
+
+    /** Maven 2, e.g. <code>[compiler:compile {execution: default-compile}]</code>. */
+    private static final Pattern MOJO_2 = Pattern.compile( "^\\[([\\w.-]+):([\\w.-]+)(?: \\{execution: (.+)\\})?\\]$" );
+
+    private static final Pattern TESTS =
+        Pattern.compile( "^Tests run: (\\d+), Failures: (\\d+), Errors: (\\d+), Skipped: (\\d+)$" );
+
+    private static final Pattern DOWNLOADING = Pattern.compile( "^Downloading(?: from [^:]+)?: (\\S+)$" );
+
+    private static final Pattern DOWNLOADED =
+        Pattern.compile( "^Downloaded(?: from [^:]+)?: (\\S+)(?: \\((.+?)(?: at .+)?\\))?$" );
+
+    private static final Pattern RESULT = Pattern.compile( "^BUILD (\\S+)$" );
+
+    private static final int SEPARATOR_LENGTH = 72;
+
+    private final List<Module> modules = new ArrayList<Module>();
+
+    private final List<Download> downloads = new ArrayList<Download>();
+
+    private final Map<String, Download> pendingDownloads = new HashMap<String, Download>();
+
+    private long startMillis = -1;
+
+    private long endMillis = -1;
+
+    private String result;
+
+    private String pendingModuleId;
+
+    private boolean afterSeparator;
+
+    private Module currentModule;
+
+    private MojoExecution currentMojo;
+
+    /** {@inheritDoc} */
+    public void consumeLine( String line )
+    {
+        consumeLine( line, System.currentTimeMillis() );
+    }
+
+    synchronized void consumeLine( String line, long time )
+    {
+        if ( startMillis < 0 )
+        {
+            startMillis = time;
+        }
+        endMillis = time;
+
+        String text = LEVEL.matcher( ANSI.matcher( line ).replaceAll( "" ) ).replaceFirst( "" ).trim();
+        if ( text.length() == 0 )
+        {
+            return;
+        }
+
+        boolean separator = isSeparator( text );
+        if ( separator )
+        {
+            endMojo( time );
+        }
+
+        Matcher matcher;
+        if ( ( matcher = MODULE_ID.matcher( text ) ).matches() )
+        {
+            pendingModuleId = matcher.group( 1 );
+            separator = true;
+        }
+        else if ( afterSeparator && ( matcher = MODULE.matcher( text ) ).matches() )
+        {
+            endModule( time );
+            currentModule = new Module( pendingModuleId, matcher.group( 1 ), matcher.group( 2 ), time );
+            modules.add( currentModule );
+            pendingModuleId = null;
+        }
+        else if ( ( matcher = MOJO.matcher( text ) ).matches() )
+        {
+            startMojo( matcher.group( 1 ), matcher.group( 2 ), matcher.group( 3 ), matcher.group( 4 ), time );
+        }
+        else if ( ( matcher = MOJO_2.matcher( text ) ).matches() )
+        {
+            startMojo( matcher.group( 1 ), null, matcher.group( 2 ), matcher.group( 3 ), time );
+        }
+        else if ( ( matcher = TESTS.matcher( text ) ).matches() )
+        {
+            if ( currentModule != null )
+            {
+                currentModule.tests.add( new TestSummary( Integer.parseInt( matcher.group( 1 ) ),
+                                                          Integer.parseInt( matcher.group( 2 ) ),
+                                                          Integer.parseInt( matcher.group( 3 ) ),
+                                                          Integer.parseInt( matcher.group( 4 ) ) ) );
+            }
+        }
+        else if ( ( matcher = DOWNLOADING.matcher( text ) ).matches() )
+        {
+            Download download = new Download( matcher.group( 1 ), time );
+            downloads.add( download );
+            pendingDownloads.put( download.url, download );
+        }
+        else if ( ( matcher = DOWNLOADED.matcher( text ) ).matches() )
+        {
+            Download download = pendingDownloads.remove( matcher.group( 1 ) );
+            if ( download == null )
+            {
+                download = new Download( matcher.group( 1 ), time );
+                downloads.add( download );
+            }
+            download.endMillis = time;
+            download.size = matcher.group( 2 );
+        }
+        else if ( ( matcher = RESULT.matcher( text ) ).matches() )
+        {
+            result = matcher.group( 1 );
+            endModule( time );
+        }
+        else if ( text.startsWith( "Reactor Summary" ) )
+        {
+            endModule( time );
+        }
+
+        afterSeparator = separator;
+    }
+
+    private static boolean isSeparator( String text )
+    {
+        if ( text.length() < SEPARATOR_LENGTH )
+        {
+            return false;
+        }
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            if ( text.charAt( i ) != '-' )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startMojo( String plugin, String version, String goal, String executionId, long time )
+    {
+        endMojo( time );
+        if ( currentModule == null )
+        {
+            // single module build of Maven 2 without header, or output not understood
+            currentModule = new Module( null, null, null, time );
+            modules.add( currentModule );
+        }
+        currentMojo = new MojoExecution( plugin, version, goal, executionId, time );
+        currentModule.mojos.add( currentMojo );
+    }
+
+    private void endMojo( long time )
+    {
+        if ( currentMojo != null )
+        {
+            currentMojo.endMillis = time;
+            currentMojo = null;
+        }
+    }
+
+    private void endModule( long time )
+    {
+        endMojo( time );
+        if ( currentModule != null )
+        {
+            currentModule.endMillis = time;
+            currentModule = null;
+        }
+    }
+
+    /**
+     * @return the time of the first line, or <code>-1</code> if no line was consumed
+     */
+    public synchronized long getStartMillis()
+    {
+        return startMillis;
+    }
+
+    /**
+     * @return the time of the last line, or <code>-1</code> if no line was consumed
+     */
+    public synchronized long getEndMillis()
+    {
+        return endMillis;
+    }
+
+    /**
+     * @return the result printed by Maven, e.g. <code>SUCCESS</code> or <code>FAILURE</code>, or <code>null</code> if
+     *         the build did not print it (yet)
+     */
+    public synchronized String getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return the modules, in build order
+     */
+    public synchronized List<Module> getModules()
+    {
+        return new ArrayList<Module>( modules );
+    }
+
+    /**
+     * @return the downloads, in start order
+     */
+    public synchronized List<Download> getDownloads()
+    {
+        return new ArrayList<Download>( downloads );
+    }
+
+    /**
+     * @return the total time spent in each <code>plugin:goal</code> over all the modules, the longest first
+     */
+    public synchronized Map<String, Long> getGoalDurations()
+    {
+        final Map<String, Long> totals = new HashMap<String, Long>();
+        for ( Module module : modules )
+        {
+            for ( MojoExecution mojo : module.mojos )
+            {
+                String key = mojo.getPlugin() + ':' + mojo.getGoal();
+                Long total = totals.get( key );
+                totals.put( key, Long.valueOf( ( total == null ? 0 : total.longValue() ) + mojo.getDuration() ) );
+            }
+        }
+
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>( totals.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<String, Long>>()
+        {
+            public int compare( Map.Entry<String, Long> e1, Map.Entry<String, Long> e2 )
+            {
+                return e2.getValue().compareTo( e1.getValue() );
+            }
+        } );
+        Map<String, Long> sorted = new LinkedHashMap<String, Long>();
+        for ( Map.Entry<String, Long> entry : entries )
+        {
+            sorted.put( entry.getKey(), entry.getValue() );
+        }
+        return sorted;
+    }
+
+    /**
+     * @return the timeline as a JSON object, with the fields <code>start</code>, <code>end</code>,
+     *         <code>duration</code>, <code>result</code>, <code>modules</code>, <code>goals</code> and
+     *         <code>downloads</code>, times in milliseconds
+     */
+    public synchronized String toJson()
+    {
+        StringBuilder json = new StringBuilder( 1024 );
+        json.append( "{\n  \"start\": " ).append( startMillis );
+        json.append( ",\n  \"end\": " ).append( endMillis );
+        json.append( ",\n  \"duration\": " ).append( duration( startMillis, endMillis ) );
+        json.append( ",\n  \"result\": " );
+        string( json, result );
+
+        json.append( ",\n  \"modules\": [" );
+        for ( int i = 0; i < modules.size(); i++ )
+        {
+            Module module = modules.get( i );
+            json.append( i == 0 ? "\n    {" : ",\n    {" );
+            json.append( "\"id\": " );
+            string( json, module.id );
+            json.append( ", \"name\": " );
+            string( json, module.name );
+            json.append( ", \"version\": " );
+            string( json, module.version );
+            json.append( ", \"start\": " ).append( module.startMillis );
+            json.append( ", \"duration\": " ).append( module.getDuration() );
+            json.append( ",\n      \"mojos\": [" );
+            for ( int j = 0; j < module.mojos.size(); j++ )
+            {
+                MojoExecution mojo = module.mojos.get( j );
+                json.append( j == 0 ? "\n        {" : ",\n        {" );
+                json.append( "\"plugin\": " );
+                string( json, mojo.plugin );
+                json.append( ", \"version\": " );
+                string( json, mojo.version );
+                json.append( ", \"goal\": " );
+                string( json, mojo.goal );
+                json.append( ", \"execution\": " );
+                string( json, mojo.executionId );
+                json.append( ", \"start\": " ).append( mojo.startMillis );
+                json.append( ", \"duration\": " ).append( mojo.getDuration() ).append( '}' );
+            }
+            json.append( module.mojos.isEmpty() ? "]" : "\n      ]" );
+            json.append( ",\n      \"tests\": [" );
+            for ( int j = 0; j < module.tests.size(); j++ )
+            {
+                TestSummary tests = module.tests.get( j );
+                json.append( j == 0 ? "{" : ", {" );
+                json.append( "\"run\": " ).append( tests.run );
+                json.append( ", \"failures\": " ).append( tests.failures );
+                json.append( ", \"errors\": " ).append( tests.errors );
+                json.append( ", \"skipped\": " ).append( tests.skipped ).append( '}' );
+            }
+            json.append( "]}" );
+        }
+        json.append( modules.isEmpty() ? "]" : "\n  ]" );
+
+        json.append( ",\n  \"goals\": {" );
+        boolean first = true;
+        for ( Map.Entry<String, Long> entry : getGoalDurations().entrySet() )
+        {
+            json.append( first ? "\n    " : ",\n    " );
+            string( json, entry.getKey() );
+            json.append( ": " ).append( entry.getValue() );
+            first = false;
+        }
+        json.append( first ? "}" : "\n  }" );
+
+        json.append( ",\n  \"downloads\": [" );
+        for ( int i = 0; i < downloads.size(); i++ )
+        {
+            Download download = downloads.get( i );
+            json.append( i == 0 ? "\n    {" : ",\n    {" );
+            json.append( "\"url\": " );
+            string( json, download.url );
+            json.append( ", \"size\": " );
+            string( json, download.size );
+            json.append( ", \"start\": " ).append( download.startMillis );
+            json.append( ", \"duration\": " ).append( download.getDuration() ).append( '}' );
+        }
+        json.append( downloads.isEmpty() ? "]" : "\n  ]" );
+
+        return json.append( "\n}\n" ).toString();
+    }
+
+    /**
+     * Writes {@link #toJson()} to a file, in UTF-8.
+     *
+     * @param file the file, created with its parent directories or overwritten
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson( File file )
+        throws IOException
+    {
+        if ( file.getParentFile() != null )
+        {
+            file.getParentFile().mkdirs();
+        }
+        FileUtils.fileWrite( file.getPath(), "UTF-8", toJson() );
+    }
+
+    private static void string( StringBuilder json, String value )
+    {
+        if ( value == null )
+        {
+            json.append( "null" );
+            return;
+        }
+        json.append( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                json.append( '\\' ).append( c );
+            }
+            else if ( c < 0x20 )
+            {
+                json.append( String.format( "\\u%04x", Integer.valueOf( c ) ) );
+            }
+            else
+            {
+                json.append( c );
+            }
+        }
+        json.append( '"' );
+    }
+
+    private static long duration( long start, long end )
+    {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+
+    /**
+     * A module of the build.
+     */
+    public static final class Module
+    {
+        private final String id;
+
+        private final String name;
+
+        private final String version;
+
+        private final long startMillis;
+
+        private long endMillis = -1;
+
+        private final List<MojoExecution> mojos = new ArrayList<MojoExecution>();
+
+        private final List<TestSummary> tests = new ArrayList<TestSummary>();
+
+        Module( String id, String name, String version, long startMillis )
+        {
+            this.id = id;
+            this.name = name;
+            this.version = version;
+            this.startMillis = startMillis;
+        }
+
+        /**
+         * @return the <code>groupId:artifactId</code> of the module, only printed by Maven 3.6 and later
+         */
+        public String getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return the name of the module
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the version of the module
+         */
+        public String getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * @return the time the module started
+         */
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        /**
+         * @return the duration of the module, or <code>-1</code> if it did not end
+         */
+        public long getDuration()
+        {
+            return duration( startMillis, endMillis );
+        }
+
+        /**
+         * @return the mojo executions of the module, in order
+         */
+        public List<MojoExecution> getMojoExecutions()
+        {
+            return Collections.unmodifiableList( mojos );
+        }
+
+        /**
+         * @return the test summaries printed in the module
+         */
+        public List<TestSummary> getTestSummaries()
+        {
+            return Collections.unmodifiableList( tests );
+        }
+    }
+
+    /**
+     * A mojo execution, ended by the next one, or by the end of its module.
+     */
+    public static final class MojoExecution
+    {
+        private final String plugin;
+
+        private final String version;
+
+        private final String goal;
+
+        private final String executionId;
+
+        private final long startMillis;
+
+        private long endMillis = -1;
+
+        MojoExecution( String plugin, String version, String goal, String executionId, long startMillis )
+        {
+            this.plugin = plugin;
+            this.version = version;
+            this.goal = goal;
+            this.executionId = executionId;
+            this.startMillis = startMillis;
+        }
+
+        /**
+         * @return the artifactId or the prefix of the plugin, as printed
+         */
+        public String getPlugin()
+        {
+            return plugin;
+        }
+
+        /**
+         * @return the version of the plugin, not printed by Maven 2
+         */
+        public String getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * @return the goal
+         */
+        public String getGoal()
+        {
+            return goal;
+        }
+
+        /**
+         * @return the execution id
+         */
+        public String getExecutionId()
+        {
+            return executionId;
+        }
+
+        /**
+         * @return the time the execution started
+         */
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        /**
+         * @return the duration of the execution, or <code>-1</code> if it did not end
+         */
+        public long getDuration()
+        {
+            return duration( startMillis, endMillis );
+        }
+    }
+
+    /**
+     * A <code>Tests run: ...</code> summary.
+     */
+    public static final class TestSummary
+    {
+        private final int run;
+
+        private final int failures;
+
+        private final int errors;
+
+        private final int skipped;
+
+        TestSummary( int run, int failures, int errors, int skipped )
+        {
+            this.run = run;
+            this.failures = failures;
+            this.errors = errors;
+            this.skipped = skipped;
+        }
+
+        /**
+         * @return the number of tests run
+         */
+        public int getRun()
+        {
+            return run;
+        }
+
+        /**
+         * @return the number of failures
+         */
+        public int getFailures()
+        {
+            return failures;
+        }
+
+        /**
+         * @return the number of errors
+         */
+        public int getErrors()
+        {
+            return errors;
+        }
+
+        /**
+         * @return the number of skipped tests
+         */
+        public int getSkipped()
+        {
+            return skipped;
+        }
+    }
+
+    /**
+     * A download from a remote repository.
+     */
+    public static final class Download
+    {
+        private final String url;
+
+        private final long startMillis;
+
+        private long endMillis = -1;
+
+        private String size;
+
+        Download( String url, long startMillis )
+        {
+            this.url = url;
+            this.startMillis = startMillis;
+        }
+
+        /**
+         * @return the URL
+         */
+        public String getUrl()
+        {
+            return url;
+        }
+
+        /**
+         * @return the size, as printed by Maven, e.g. <code>12 kB</code>, or <code>null</code> if not printed
+         */
+        public String getSize()
+        {
+            return size;
+        }
+
+        /**
+         * @return the time the download started
+         */
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        /**
+         * @return the duration of the download, or <code>-1</code> if it did not end, or its start was not printed
+         */
+        public long getDuration()
+        {
+            return duration( startMillis, endMillis );
+        }
+    }
+}
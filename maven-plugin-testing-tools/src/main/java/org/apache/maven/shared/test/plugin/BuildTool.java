@@ -20,27 +20,40 @@ package org.apache.maven.shared.test.plugin;
  */
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.maven.shared.invoker.CommandLineConfigurationException;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
 import org.apache.maven.shared.invoker.DefaultInvoker;
 import org.apache.maven.shared.invoker.InvocationOutputHandler;
 import org.apache.maven.shared.invoker.InvocationRequest;
 import org.apache.maven.shared.invoker.InvocationResult;
 import org.apache.maven.shared.invoker.Invoker;
+import org.apache.maven.shared.invoker.MavenCommandLineBuilder;
 import org.apache.maven.shared.invoker.MavenInvocationException;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Initializable;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.InitializationException;
-import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamPumper;
 
 /**
  * Test-tool used to execute Maven builds in order to test plugin functionality.
+ * <p/>
+ * By default, each build forks a new Maven process. In {@link #setEmbedded(boolean) embedded} mode, builds run
+ * inside the current JVM instead, in a class realm booted once from the Maven installation and isolated from the
+ * test class path, which saves the JVM startup and Maven bootstrap of every build. Where in-process builds are not
+ * safe, a {@link #setWorkerPool(MavenWorkerPool) worker pool} of long-lived forked JVMs saves them as well.
+ * <p/>
+ * {@link LogAssertion}s registered on a basic request are checked while the build runs. When one fails, a forked build
+ * is killed at once, and a pooled one is cancelled, retiring its worker; an embedded build cannot be stopped, and
+ * reports the failure when it ends. In all cases, the failure is thrown as a
+ * <code>TestToolsException</code>.
  *
  * @author jdcasey
  * @version $Id: BuildTool.java 1345442 2012-06-02 05:26:01Z hboutemy $
@@ -54,6 +67,18 @@ public class BuildTool
 
     private Invoker mavenInvoker;
 
+    private boolean embedded;
+
+    private EmbeddedMavenLauncher embeddedLauncher;
+
+    private MavenWorkerPool workerPool;
+
+    private int logCapacity = 8192;
+
+    private AsyncLogWriter.OverflowPolicy logOverflowPolicy = AsyncLogWriter.OverflowPolicy.BLOCK;
+
+    private boolean timeline;
+
     /**
      * Build a standard InvocationRequest using the specified test-build POM, command-line properties,
      * goals, and output logfile. Then, execute Maven using this standard request. Return the result
@@ -76,6 +101,25 @@ public class BuildTool
         return executeMaven( request );
     }
 
+    /**
+     * Same as {@link #executeMaven(File, Properties, List, File)}, checking the output of the build while it runs.
+     *
+     * @param pom The test-build POM
+     * @param properties command-line properties to fine-tune the test build
+     * @param goals The list of goals and/or lifecycle phases to execute during this build
+     * @param buildLogFile The logfile used to capture build output
+     * @param assertions the assertions on the build output, used for this build only
+     * @return The result of the Maven invocation
+     * @throws TestToolsException if any, or if an assertion failed
+     * @since 3.0.1
+     */
+    public InvocationResult executeMaven( File pom, Properties properties, List<String> goals, File buildLogFile,
+                                          List<LogAssertion> assertions )
+        throws TestToolsException
+    {
+        return executeMaven( createBasicInvocationRequest( pom, properties, goals, buildLogFile, assertions ) );
+    }
+
     /**
      * Execute a test build using a customized InvocationRequest. Normally, this request would be
      * created using the <code>createBasicInvocationRequest</code> method in this class.
@@ -88,19 +132,260 @@ public class BuildTool
      */
     public InvocationResult executeMaven( InvocationRequest request )
         throws TestToolsException
+    {
+        InvocationOutputHandler outHandler = request.getOutputHandler( null );
+        LoggerHandler handler = outHandler instanceof LoggerHandler ? (LoggerHandler) outHandler : null;
+        LogMonitor monitor = handler == null ? null : handler.monitor;
+        boolean completed = false;
+        try
+        {
+            InvocationResult result;
+            if ( monitor == null )
+            {
+                result = execute( request );
+            }
+            else if ( embedded )
+            {
+                monitor.start( null );
+                result = execute( request );
+            }
+            else if ( workerPool != null )
+            {
+                MavenWorkerPool.Cancellation cancellation = new MavenWorkerPool.Cancellation();
+                monitor.start( cancellation );
+                result = workerPool.execute( request, mavenInvoker.getLocalRepositoryDirectory(), cancellation );
+            }
+            else
+            {
+                result = executeMonitored( request, monitor );
+            }
+
+            if ( monitor != null )
+            {
+                monitor.end();
+                if ( monitor.getFailure() != null )
+                {
+                    throw new TestToolsException( "Build log assertion failed: " + monitor.getFailure() );
+                }
+            }
+            completed = true;
+            return result;
+        }
+        finally
+        {
+            closeHandlers( request, completed );
+        }
+    }
+
+    private InvocationResult execute( InvocationRequest request )
+        throws TestToolsException
     {
         try
         {
+            if ( embedded )
+            {
+                return getEmbeddedLauncher().execute( request, mavenInvoker.getLocalRepositoryDirectory() );
+            }
+            if ( workerPool != null )
+            {
+                return workerPool.execute( request, mavenInvoker.getLocalRepositoryDirectory() );
+            }
             return mavenInvoker.execute( request );
         }
         catch ( MavenInvocationException e )
         {
             throw new TestToolsException( "Error executing maven.", e );
         }
-        finally
+    }
+
+    /**
+     * Forks the build like the invoker does, from a command line built the same way, so with the
+     * <code>MAVEN_OPTS</code>, Java home and shell environment of the request, but keeps hold of the process so that
+     * the monitor can kill it.
+     */
+    private InvocationResult executeMonitored( InvocationRequest request, LogMonitor monitor )
+        throws TestToolsException
+    {
+        MavenCommandLineBuilder builder = new MavenCommandLineBuilder();
+        if ( mavenInvoker.getLogger() != null )
+        {
+            builder.setLogger( mavenInvoker.getLogger() );
+        }
+        if ( mavenInvoker.getMavenHome() != null )
+        {
+            builder.setMavenHome( mavenInvoker.getMavenHome() );
+        }
+        if ( mavenInvoker.getLocalRepositoryDirectory() != null )
+        {
+            builder.setLocalRepositoryDirectory( mavenInvoker.getLocalRepositoryDirectory() );
+        }
+        if ( mavenInvoker.getWorkingDirectory() != null )
+        {
+            builder.setWorkingDirectory( mavenInvoker.getWorkingDirectory() );
+        }
+        Commandline commandline;
+        try
+        {
+            commandline = builder.build( request );
+        }
+        catch ( CommandLineConfigurationException e )
+        {
+            throw new TestToolsException( "Error configuring command-line. Reason: " + e.getMessage(), e );
+        }
+
+        final Process process;
+        try
+        {
+            process = commandline.execute();
+        }
+        catch ( CommandLineException e )
+        {
+            return new SimpleInvocationResult( 1, e );
+        }
+
+        monitor.start( new Runnable()
+        {
+            public void run()
+            {
+                process.destroy();
+            }
+        } );
+        InvocationOutputHandler outHandler = request.getOutputHandler( null );
+        StreamPumper out = new StreamPumper( process.getInputStream(), outHandler );
+        StreamPumper err = new StreamPumper( process.getErrorStream(), request.getErrorHandler( outHandler ) );
+        // a killed build may leave children holding its output open: the pumpers must not keep the JVM alive
+        out.setDaemon( true );
+        err.setDaemon( true );
+        out.start();
+        err.start();
+        try
+        {
+            process.getOutputStream().close();
+            int exitCode = process.waitFor();
+            long timeout = monitor.getFailure() == null ? 0 : 1000;
+            out.join( timeout );
+            err.join( timeout );
+            return new SimpleInvocationResult( exitCode, null );
+        }
+        catch ( IOException e )
+        {
+            process.destroy();
+            throw new TestToolsException( "Error executing maven.", e );
+        }
+        catch ( InterruptedException e )
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new TestToolsException( "Interrupted while executing maven." );
+        }
+    }
+
+    /**
+     * Embedded builds share the standard streams and system properties of the JVM, so they run one at a time, even
+     * when a {@link BuildScheduler} submits several at once; use a worker pool to run builds in parallel.
+     *
+     * @param embedded <code>true</code> to run the builds inside the current JVM, <code>false</code> to fork them
+     * @since 3.0.1
+     */
+    public void setEmbedded( boolean embedded )
+    {
+        this.embedded = embedded;
+    }
+
+    /**
+     * @return <code>true</code> if the builds run inside the current JVM
+     * @since 3.0.1
+     */
+    public boolean isEmbedded()
+    {
+        return embedded;
+    }
+
+    /**
+     * @param logCapacity the number of lines the build logs of basic requests queue before applying their overflow
+     *            policy, 8192 by default
+     * @since 3.0.1
+     */
+    public void setLogCapacity( int logCapacity )
+    {
+        this.logCapacity = logCapacity;
+    }
+
+    /**
+     * @param logOverflowPolicy what the build logs of basic requests do when their queue is full: make the build
+     *            wait, the default, or drop lines
+     * @since 3.0.1
+     */
+    public void setLogOverflowPolicy( AsyncLogWriter.OverflowPolicy logOverflowPolicy )
+    {
+        this.logOverflowPolicy = logOverflowPolicy;
+    }
+
+    /**
+     * @param timeline <code>true</code> to record the {@link BuildTimeline} of the builds of basic requests, written
+     *            next to their build log, e.g. <code>build.log</code> gives <code>build.timeline.json</code>
+     * @since 3.0.1
+     */
+    public void setTimeline( boolean timeline )
+    {
+        this.timeline = timeline;
+    }
+
+    /**
+     * @param buildLogFile the build log of a basic request
+     * @return the file the timeline of the build is written to
+     * @since 3.0.1
+     */
+    public static File getTimelineFile( File buildLogFile )
+    {
+        String name = buildLogFile.getName();
+        int dot = name.lastIndexOf( '.' );
+        return new File( buildLogFile.getParentFile(), ( dot > 0 ? name.substring( 0, dot ) : name )
+            + ".timeline.json" );
+    }
+
+    /**
+     * @param workerPool the pool of worker JVMs running the forked builds, or <code>null</code> to fork a new Maven
+     *            process for each build. It is closed when this tool is disposed.
+     * @since 3.0.1
+     */
+    public void setWorkerPool( MavenWorkerPool workerPool )
+    {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * @return the pool of worker JVMs running the forked builds, or <code>null</code>
+     * @since 3.0.1
+     */
+    public MavenWorkerPool getWorkerPool()
+    {
+        return workerPool;
+    }
+
+    /**
+     * Boot the local Maven installation on first use, and keep it for the next builds.
+     *
+     * @return the launcher of embedded builds
+     * @throws TestToolsException if no Maven 3 installation can be found or booted
+     */
+    private synchronized EmbeddedMavenLauncher getEmbeddedLauncher()
+        throws TestToolsException
+    {
+        if ( embeddedLauncher == null )
         {
-            closeHandlers( request );
+            File mavenHome = mavenInvoker.getMavenHome();
+            if ( mavenHome == null && System.getProperty( "maven.home" ) != null )
+            {
+                mavenHome = new File( System.getProperty( "maven.home" ) );
+            }
+            if ( mavenHome == null )
+            {
+                throw new TestToolsException( "Cannot run Maven in-process: neither maven.home nor M2_HOME is set." );
+            }
+            embeddedLauncher = new EmbeddedMavenLauncher( mavenHome );
         }
+        return embeddedLauncher;
     }
 
     /**
@@ -136,14 +421,19 @@ public class BuildTool
      * closed.
      *
      * @param request
+     * @param report <code>false</code> if the build failed already, and that failure must not be hidden by one to
+     *            close its logs
+     * @throws TestToolsException if a log or a timeline could not be written
      */
-    private void closeHandlers( InvocationRequest request )
+    private void closeHandlers( InvocationRequest request, boolean report )
+        throws TestToolsException
     {
         InvocationOutputHandler outHandler = request.getOutputHandler( null );
+        IOException failure = null;
 
         if ( outHandler != null && ( outHandler instanceof LoggerHandler ) )
         {
-            ( (LoggerHandler) outHandler ).close();
+            failure = ( (LoggerHandler) outHandler ).close();
         }
 
         InvocationOutputHandler errHandler = request.getErrorHandler( null );
@@ -151,7 +441,16 @@ public class BuildTool
         if ( errHandler != null && ( outHandler == null || errHandler != outHandler )
             && ( errHandler instanceof LoggerHandler ) )
         {
-            ( (LoggerHandler) errHandler ).close();
+            IOException errFailure = ( (LoggerHandler) errHandler ).close();
+            if ( failure == null )
+            {
+                failure = errFailure;
+            }
+        }
+
+        if ( report && failure != null )
+        {
+            throw new TestToolsException( "Error writing build log: " + failure.getMessage(), failure );
         }
     }
 
@@ -171,6 +470,24 @@ public class BuildTool
      */
     public InvocationRequest createBasicInvocationRequest( File pom, Properties properties, List<String> goals,
                                                            File buildLogFile )
+    {
+        return createBasicInvocationRequest( pom, properties, goals, buildLogFile, null );
+    }
+
+    /**
+     * Same as {@link #createBasicInvocationRequest(File, Properties, List, File)}, with assertions checked on the
+     * output of the build while it runs, by {@link #executeMaven(InvocationRequest)}.
+     *
+     * @param pom The POM for the test build
+     * @param properties The command-line properties for use in this test build
+     * @param goals The goals and/or lifecycle phases to execute during the test build
+     * @param buildLogFile Location to which build output should be logged
+     * @param assertions the assertions on the build output, used for this build only, or <code>null</code>
+     * @return The standardized InvocationRequest for the test build
+     * @since 3.0.1
+     */
+    public InvocationRequest createBasicInvocationRequest( File pom, Properties properties, List<String> goals,
+                                                           File buildLogFile, List<LogAssertion> assertions )
     {
         InvocationRequest request = new DefaultInvocationRequest();
 
@@ -180,7 +497,9 @@ public class BuildTool
 
         request.setProperties( properties );
 
-        LoggerHandler handler = new LoggerHandler( buildLogFile );
+        LoggerHandler handler =
+            new LoggerHandler( buildLogFile, logCapacity, logOverflowPolicy, timeline ? new BuildTimeline() : null,
+                               assertions == null || assertions.isEmpty() ? null : new LogMonitor( assertions ) );
 
         request.setOutputHandler( handler );
         request.setErrorHandler( handler );
@@ -188,29 +507,63 @@ public class BuildTool
         return request;
     }
 
+    /**
+     * Sends the lines to an {@link AsyncLogWriter}, opened on the first line, and to the timeline, if any.
+     */
     private static final class LoggerHandler
         implements InvocationOutputHandler
     {
-        private static final String LS = System.getProperty( "line.separator" );
-
         private final File output;
 
-        private FileWriter writer;
+        private final int capacity;
+
+        private final AsyncLogWriter.OverflowPolicy overflowPolicy;
 
-        LoggerHandler( File logFile )
+        private final BuildTimeline timeline;
+
+        private final LogMonitor monitor;
+
+        private AsyncLogWriter writer;
+
+        LoggerHandler( File logFile, int capacity, AsyncLogWriter.OverflowPolicy overflowPolicy,
+                       BuildTimeline timeline, LogMonitor monitor )
         {
             output = logFile;
+            this.capacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            this.timeline = timeline;
+            this.monitor = monitor;
         }
 
         /** {@inheritDoc} */
         public void consumeLine( String line )
+        {
+            if ( timeline != null )
+            {
+                timeline.consumeLine( line );
+            }
+            try
+            {
+                getWriter().write( line );
+            }
+            catch ( IOException e )
+            {
+                throw new IllegalStateException( "Failed to write to build log: " + output + " output:\n\n\'" + line
+                    + "\'\n\nError: " + e.getMessage() );
+            }
+            if ( monitor != null )
+            {
+                monitor.consumeLine( line );
+            }
+        }
+
+        private synchronized AsyncLogWriter getWriter()
         {
             if ( writer == null )
             {
                 try
                 {
-                    output.getParentFile().mkdirs();
-                    writer = new FileWriter( output );
+                    writer = new AsyncLogWriter( output, capacity, overflowPolicy, 64 * 1024, 200 );
                 }
                 catch ( IOException e )
                 {
@@ -218,22 +571,43 @@ public class BuildTool
                         + e.getMessage() );
                 }
             }
+            return writer;
+        }
 
-            try
+        /**
+         * Closes the log and writes the timeline, even if closing the log fails.
+         *
+         * @return the first error, or <code>null</code>
+         */
+        synchronized IOException close()
+        {
+            IOException failure = null;
+            if ( writer != null )
             {
-                writer.write( line + LS );
-                writer.flush();
+                try
+                {
+                    writer.close();
+                }
+                catch ( IOException e )
+                {
+                    failure = e;
+                }
             }
-            catch ( IOException e )
+            if ( timeline != null )
             {
-                throw new IllegalStateException( "Failed to write to build log: " + output + " output:\n\n\'" + line
-                    + "\'\n\nError: " + e.getMessage() );
+                try
+                {
+                    timeline.writeJson( getTimelineFile( output ) );
+                }
+                catch ( IOException e )
+                {
+                    if ( failure == null )
+                    {
+                        failure = e;
+                    }
+                }
             }
-        }
-
-        void close()
-        {
-            IOUtil.close( writer );
+            return failure;
         }
     }
 
@@ -257,12 +631,18 @@ public class BuildTool
     }
 
     /**
-     * Not currently used; when this API switches to use the Maven Embedder, it will be used to
-     * shutdown the embedder and its associated container, to free up JVM memory.
+     * Dispose the class realms of the embedded builds and stop the worker JVMs, if any, to free up memory.
      */
-    public void dispose()
+    public synchronized void dispose()
     {
-        // TODO: When we switch to the embedder, use this to deallocate the MavenEmbedder, along
-        // with the PlexusContainer and ClassRealm that it wraps.
+        if ( embeddedLauncher != null )
+        {
+            embeddedLauncher.close();
+            embeddedLauncher = null;
+        }
+        if ( workerPool != null )
+        {
+            workerPool.close();
+        }
     }
 }
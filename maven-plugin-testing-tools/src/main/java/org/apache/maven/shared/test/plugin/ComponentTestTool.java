@@ -22,7 +22,6 @@ package org.apache.maven.shared.test.plugin;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
-import org.codehaus.plexus.util.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -143,52 +142,60 @@ public class ComponentTestTool
             throw new TestToolsException( "Failed to stage component for testing.", e );
         }
 
-        try
-        {
-            final File tmpDir = File.createTempFile( "component-IT-staging-project", "" );
-
-            tmpDir.delete();
+        File localRepoDir = localRepositoryDir;
 
-            tmpDir.mkdirs();
+        if ( localRepoDir == null )
+        {
+            localRepoDir = new File( "target/test-local-repository" );
+        }
 
-            Runtime.getRuntime().addShutdownHook( new Thread( new Runnable()
-            {
-                public void run()
-                {
-                    try
-                    {
-                        FileUtils.deleteDirectory( tmpDir );
-                    }
-                    catch ( IOException e )
-                    {
-                        // it'll get cleaned up when the temp dir is purged next...
-                    }
-                }
-
-            } ) );
-
-            FileUtils.copyDirectoryStructure( realProjectDir, tmpDir );
+        // the forks of a test suite share the local repository: the first one stages the component, the other ones
+        // wait for it and reuse it
+        LocalRepositoryLock lock;
+        try
+        {
+            lock = LocalRepositoryLock.acquire( localRepoDir );
         }
         catch ( IOException e )
         {
-            throw new TestToolsException( "Failed to create temporary staging directory for component project.", e );
+            throw new TestToolsException( "Failed to lock the test local repository: " + localRepoDir, e );
         }
 
-        File buildLog = new File( "target/test-build-logs/setup.build.log" );
+        try
+        {
+            String fingerprint =
+                ArtifactBuildCache.fingerprint( pomFile, testVersion, String.valueOf( skipUnitTests ),
+                                                String.valueOf( projectTool.getRemoteRepositoryUrl() ) );
+            if ( lock.isStaged( pomFile, fingerprint ) )
+            {
+                System.out.println( "Using the component already staged in: " + localRepoDir.getAbsolutePath() );
+                return localRepoDir;
+            }
 
-        buildLog.getParentFile().mkdirs();
+            // only what changed since the previous call is staged again
+            File stagingDir = new File( realProjectDir, "target/component-IT-staging-project" );
 
-        File localRepoDir = localRepositoryDir;
+            new IncrementalStager( stagingDir ).stage( realProjectDir );
 
-        if ( localRepoDir == null )
-        {
-            localRepoDir = new File( "target/test-local-repository" );
-        }
+            File buildLog = new File( "target/test-build-logs/setup.build.log" );
+
+            buildLog.getParentFile().mkdirs();
+
+            MavenProject project = projectTool.packageProjectArtifact( pomFile, testVersion, skipUnitTests, buildLog );
 
-        MavenProject project = projectTool.packageProjectArtifact( pomFile, testVersion, skipUnitTests, buildLog );
+            repositoryTool.createLocalRepositoryFromComponentProject( project, new File( realProjectDir, "pom.xml" ),
+                                                                      localRepoDir );
 
-        repositoryTool.createLocalRepositoryFromComponentProject( project, new File( realProjectDir, "pom.xml" ),
-                                                                  localRepoDir );
+            lock.markStaged( pomFile, fingerprint );
+        }
+        catch ( IOException e )
+        {
+            throw new TestToolsException( "Failed to stage the component project.", e );
+        }
+        finally
+        {
+            lock.release();
+        }
 
         return localRepoDir;
     }
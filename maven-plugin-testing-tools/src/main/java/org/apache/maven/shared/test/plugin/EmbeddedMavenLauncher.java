@@ -0,0 +1,396 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.shared.invoker.CommandLineConfigurationException;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.MavenCommandLineBuilder;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * Runs Maven 3 builds inside the current JVM. The Maven installation is booted once, like <code>bin/mvn</code> does,
+ * from its <code>bin/m2.conf</code> into a class world of its own, isolated from the test class path, and the
+ * <code>MavenCli</code> of its main realm is then called for each build, keeping loaded and compiled classes warm.
+ * <p/>
+ * Requests are turned into command-line arguments by the <code>MavenCommandLineBuilder</code> of the invoker, so they
+ * behave as with a forked build, except for the shell environment, <code>MAVEN_OPTS</code> and the Java home, which
+ * cannot change in-process. Builds share <code>System.out</code>, <code>System.err</code> and the system properties,
+ * which are redirected and restored around each build, so a launcher runs one build at a time: concurrent calls to
+ * {@link #run(String[], File, InvocationOutputHandler, InvocationOutputHandler)} wait for each other. Parallel
+ * builds need forked JVMs, e.g. a {@link MavenWorkerPool}.
+ *
+ * @since 3.0.1
+ */
+final class EmbeddedMavenLauncher
+    implements Closeable
+{
+    private final File mavenHome;
+
+    private final URLClassLoader bootLoader;
+
+    private final Object classWorld;
+
+    private final ClassLoader mainRealm;
+
+    private final Object mavenCli;
+
+    private final Method doMain;
+
+    /**
+     * Boots the given Maven installation.
+     *
+     * @param mavenHome the Maven 3 installation, with its <code>boot</code>, <code>lib</code> and
+     *            <code>bin/m2.conf</code>
+     * @throws TestToolsException if the installation cannot be booted
+     */
+    EmbeddedMavenLauncher( File mavenHome )
+        throws TestToolsException
+    {
+        this.mavenHome = mavenHome;
+
+        File config = new File( mavenHome, "bin/m2.conf" );
+        if ( !config.isFile() )
+        {
+            throw new TestToolsException( "Not a Maven 3 installation, missing " + config );
+        }
+
+        // the parent of the system class loader only holds the JDK, keeping the test class path out of the builds
+        ClassLoader jdkLoader = ClassLoader.getSystemClassLoader().getParent();
+        bootLoader = new URLClassLoader( getBootClassPath( mavenHome ), jdkLoader );
+
+        String previousHome = System.getProperty( "maven.home" );
+        System.setProperty( "maven.home", mavenHome.getAbsolutePath() );
+        InputStream in = null;
+        try
+        {
+            Class<?> classWorldClass = bootLoader.loadClass( "org.codehaus.plexus.classworlds.ClassWorld" );
+            Class<?> launcherClass = bootLoader.loadClass( "org.codehaus.plexus.classworlds.launcher.Launcher" );
+
+            Object launcher = launcherClass.newInstance();
+            launcherClass.getMethod( "setSystemClassLoader", ClassLoader.class ).invoke( launcher, bootLoader );
+            in = new FileInputStream( config );
+            launcherClass.getMethod( "configure", InputStream.class ).invoke( launcher, in );
+
+            classWorld = launcherClass.getMethod( "getWorld" ).invoke( launcher );
+            mainRealm = (ClassLoader) launcherClass.getMethod( "getMainRealm" ).invoke( launcher );
+            Class<?> cliClass = (Class<?>) launcherClass.getMethod( "getMainClass" ).invoke( launcher );
+            mavenCli = cliClass.getConstructor( classWorldClass ).newInstance( classWorld );
+            doMain = cliClass.getMethod( "doMain", String[].class, String.class, PrintStream.class,
+                                         PrintStream.class );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw new TestToolsException( "Error booting Maven from " + mavenHome, e.getTargetException() );
+        }
+        catch ( Exception e )
+        {
+            throw new TestToolsException( "Error booting Maven from " + mavenHome, e );
+        }
+        finally
+        {
+            IOUtil.close( in );
+            if ( previousHome == null )
+            {
+                System.clearProperty( "maven.home" );
+            }
+            else
+            {
+                System.setProperty( "maven.home", previousHome );
+            }
+        }
+    }
+
+    private static URL[] getBootClassPath( File mavenHome )
+        throws TestToolsException
+    {
+        File[] jars = new File( mavenHome, "boot" ).listFiles();
+        if ( jars == null )
+        {
+            throw new TestToolsException( "Not a Maven 3 installation, missing " + new File( mavenHome, "boot" ) );
+        }
+
+        List<URL> urls = new ArrayList<URL>();
+        try
+        {
+            for ( File jar : jars )
+            {
+                if ( jar.getName().endsWith( ".jar" ) )
+                {
+                    urls.add( jar.toURI().toURL() );
+                }
+            }
+        }
+        catch ( MalformedURLException e )
+        {
+            throw new TestToolsException( "Error reading Maven boot class path", e );
+        }
+        return urls.toArray( new URL[urls.size()] );
+    }
+
+    /**
+     * @return the booted Maven installation
+     */
+    File getMavenHome()
+    {
+        return mavenHome;
+    }
+
+    /**
+     * Runs a build, sending its output to the handlers of the request.
+     *
+     * @param request the request
+     * @param localRepositoryDirectory the default local repository, or <code>null</code>
+     * @return the result, with the exit code of the build
+     * @throws TestToolsException if the request cannot be turned into arguments
+     */
+    InvocationResult execute( InvocationRequest request, File localRepositoryDirectory )
+        throws TestToolsException
+    {
+        Commandline commandline = buildCommandline( request, mavenHome, localRepositoryDirectory );
+        try
+        {
+            int exitCode = run( commandline.getArguments(), getWorkingDirectory( commandline ),
+                                request.getOutputHandler( null ), request.getErrorHandler( null ) );
+            return new SimpleInvocationResult( exitCode, null );
+        }
+        catch ( CommandLineException e )
+        {
+            return new SimpleInvocationResult( 1, e );
+        }
+    }
+
+    /**
+     * Runs a build from its command-line arguments. Builds are serialized on this launcher, since they share the
+     * standard streams and system properties of the JVM.
+     *
+     * @param arguments the arguments
+     * @param workingDirectory the working directory
+     * @param outputHandler the handler of the standard output lines, or <code>null</code>
+     * @param errorHandler the handler of the standard error lines, or <code>null</code>
+     * @return the exit code of the build
+     * @throws CommandLineException if Maven failed with an exception instead of an exit code
+     */
+    synchronized int run( String[] arguments, File workingDirectory, InvocationOutputHandler outputHandler,
+                          InvocationOutputHandler errorHandler )
+        throws CommandLineException
+    {
+        PrintStream out = new PrintStream( new LineOutputStream( outputHandler ), true );
+        PrintStream err = new PrintStream( new LineOutputStream( errorHandler ), true );
+
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        Properties systemProperties = (Properties) System.getProperties().clone();
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try
+        {
+            System.setOut( out );
+            System.setErr( err );
+            System.setProperty( "maven.home", mavenHome.getAbsolutePath() );
+            System.setProperty( "maven.multiModuleProjectDirectory", workingDirectory.getAbsolutePath() );
+            thread.setContextClassLoader( mainRealm );
+
+            Object exitCode = doMain.invoke( mavenCli, arguments, workingDirectory.getAbsolutePath(), out, err );
+            return ( (Integer) exitCode ).intValue();
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw new CommandLineException( "Error executing Maven in-process.", e.getTargetException() );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new CommandLineException( "Error executing Maven in-process.", e );
+        }
+        finally
+        {
+            thread.setContextClassLoader( contextClassLoader );
+            System.setProperties( systemProperties );
+            System.setOut( systemOut );
+            System.setErr( systemErr );
+            out.close();
+            err.close();
+        }
+    }
+
+    /**
+     * Turns a request into command-line arguments, as the invoker does for a forked build.
+     *
+     * @param request the request
+     * @param mavenHome the Maven installation
+     * @param localRepositoryDirectory the default local repository, or <code>null</code>
+     * @return the command line
+     * @throws TestToolsException if the request is not valid
+     */
+    static Commandline buildCommandline( InvocationRequest request, File mavenHome, File localRepositoryDirectory )
+        throws TestToolsException
+    {
+        MavenCommandLineBuilder builder = new MavenCommandLineBuilder();
+        builder.setMavenHome( mavenHome );
+        builder.setLocalRepositoryDirectory( localRepositoryDirectory );
+        try
+        {
+            return builder.build( request );
+        }
+        catch ( CommandLineConfigurationException e )
+        {
+            throw new TestToolsException( "Error configuring command-line. Reason: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @param commandline a command line
+     * @return its working directory, the current one by default
+     */
+    static File getWorkingDirectory( Commandline commandline )
+    {
+        File workingDirectory = commandline.getWorkingDirectory();
+        if ( workingDirectory == null )
+        {
+            workingDirectory = new File( System.getProperty( "user.dir" ) );
+        }
+        return workingDirectory;
+    }
+
+    /**
+     * Disposes the realms of the booted installation and releases its jars.
+     */
+    public void close()
+    {
+        try
+        {
+            Method getRealms = classWorld.getClass().getMethod( "getRealms" );
+            Method disposeRealm = classWorld.getClass().getMethod( "disposeRealm", String.class );
+            for ( Object realm : ( (List<?>) getRealms.invoke( classWorld ) ).toArray() )
+            {
+                String id = (String) realm.getClass().getMethod( "getId" ).invoke( realm );
+                disposeRealm.invoke( classWorld, id );
+            }
+        }
+        catch ( Exception e )
+        {
+            // best effort, the class loaders are unreachable from now on anyway
+        }
+
+        // URLClassLoader is only closeable from Java 7
+        if ( bootLoader instanceof Closeable )
+        {
+            try
+            {
+                ( (Closeable) bootLoader ).close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Stream splitting its content in lines for an output handler, dropping it if there is no handler.
+     */
+    static final class LineOutputStream
+        extends OutputStream
+    {
+        private final InvocationOutputHandler handler;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream( 256 );
+
+        LineOutputStream( InvocationOutputHandler handler )
+        {
+            this.handler = handler;
+        }
+
+        /** {@inheritDoc} */
+        public synchronized void write( int b )
+            throws IOException
+        {
+            if ( b == '\n' )
+            {
+                consumeLine();
+            }
+            else if ( b != '\r' )
+            {
+                line.write( b );
+            }
+        }
+
+        /** {@inheritDoc} */
+        public synchronized void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            int start = off;
+            int end = off + len;
+            for ( int i = off; i < end; i++ )
+            {
+                if ( b[i] == '\n' || b[i] == '\r' )
+                {
+                    line.write( b, start, i - start );
+                    if ( b[i] == '\n' )
+                    {
+                        consumeLine();
+                    }
+                    start = i + 1;
+                }
+            }
+            line.write( b, start, end - start );
+        }
+
+        /** {@inheritDoc} */
+        public synchronized void close()
+            throws IOException
+        {
+            if ( line.size() > 0 )
+            {
+                consumeLine();
+            }
+        }
+
+        private void consumeLine()
+            throws IOException
+        {
+            if ( handler != null )
+            {
+                handler.consumeLine( line.toString() );
+            }
+            line.reset();
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mirrors a project directory into a persistent staging directory, copying only what changed since the previous
+ * call. A manifest next to the staging directory records the size, modification time and SHA-1 hash of every staged
+ * file: files whose size and time did not change are skipped without being read, the other ones are hashed in
+ * parallel, and copied only if their content changed. Staged files whose source is gone are deleted.
+ * <p/>
+ * The <code>target</code> directory of the project and the VCS metadata directories, at any depth, are not staged.
+ * Files are copied by default; with {@link #setLinkFiles(boolean)}, they are hard linked when the JVM and the file
+ * system allow it, and must then be treated as read-only.
+ *
+ * @since 3.0.1
+ */
+public class IncrementalStager
+{
+    /** Directories never staged, at any depth. */
+    public static final List<String> DEFAULT_EXCLUDES =
+        Collections.unmodifiableList( Arrays.asList( ".git", ".svn", ".hg", ".bzr", "CVS", "_darcs" ) );
+
+    private static final Method TO_PATH;
+
+    private static final Method CREATE_LINK;
+
+    static
+    {
+        Method toPath = null;
+        Method createLink = null;
+        try
+        {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            toPath = File.class.getMethod( "toPath" );
+            createLink = Class.forName( "java.nio.file.Files" ).getMethod( "createLink", pathClass, pathClass );
+        }
+        catch ( Exception e )
+        {
+            // pre Java 7: no hard links, copy instead
+            toPath = null;
+            createLink = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    private final File stagingDirectory;
+
+    private final File manifestFile;
+
+    private List<String> excludes = DEFAULT_EXCLUDES;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private boolean linkFiles;
+
+    private int scannedFiles;
+
+    private int hashedFiles;
+
+    private int copiedFiles;
+
+    private int deletedFiles;
+
+    /**
+     * @param stagingDirectory the staging directory, created if needed, and reused by later calls, even from other
+     *            runs
+     */
+    public IncrementalStager( File stagingDirectory )
+    {
+        this.stagingDirectory = stagingDirectory.getAbsoluteFile();
+        this.manifestFile = new File( this.stagingDirectory.getParentFile(), stagingDirectory.getName() + ".manifest" );
+    }
+
+    /**
+     * @param excludes the names of the directories not staged at any depth, {@link #DEFAULT_EXCLUDES} by default
+     */
+    public void setExcludes( List<String> excludes )
+    {
+        this.excludes = excludes == null ? Collections.<String>emptyList() : excludes;
+    }
+
+    /**
+     * @param threads the number of threads hashing and copying files, the number of processors by default
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = Math.max( 1, threads );
+    }
+
+    /**
+     * @param linkFiles <code>true</code> to hard link the changed files instead of copying them, when possible
+     */
+    public void setLinkFiles( boolean linkFiles )
+    {
+        this.linkFiles = linkFiles;
+    }
+
+    /**
+     * @return the staging directory
+     */
+    public File getStagingDirectory()
+    {
+        return stagingDirectory;
+    }
+
+    /**
+     * Brings the staging directory up to date with a project directory.
+     *
+     * @param sourceDirectory the project directory
+     * @throws IOException if a file cannot be staged
+     */
+    public synchronized void stage( File sourceDirectory )
+        throws IOException
+    {
+        Map<String, Entry> previous = stagingDirectory.isDirectory() ? readManifest() : new HashMap<String, Entry>();
+
+        Map<String, File> sources = new LinkedHashMap<String, File>();
+        scan( sourceDirectory, "", true, sources );
+
+        Map<String, Entry> current = new HashMap<String, Entry>( sources.size() * 2 );
+        final AtomicInteger copied = new AtomicInteger();
+        List<Callable<Entry>> changed = new ArrayList<Callable<Entry>>();
+        for ( Map.Entry<String, File> source : sources.entrySet() )
+        {
+            final String path = source.getKey();
+            final File file = source.getValue();
+            final File staged = new File( stagingDirectory, path );
+            final Entry entry = previous.get( path );
+            final long size = file.length();
+            final long time = file.lastModified();
+            if ( entry != null && entry.size == size && entry.time == time && staged.length() == size
+                && staged.isFile() )
+            {
+                current.put( path, entry );
+                continue;
+            }
+
+            changed.add( new Callable<Entry>()
+            {
+                public Entry call()
+                    throws IOException
+                {
+                    String hash = hash( file );
+                    if ( entry == null || !entry.hash.equals( hash ) || !staged.isFile() || staged.length() != size )
+                    {
+                        stage( file, staged );
+                        copied.incrementAndGet();
+                    }
+                    return new Entry( path, hash, size, time );
+                }
+            } );
+        }
+
+        scannedFiles = sources.size();
+        hashedFiles = changed.size();
+        copiedFiles = 0;
+        deletedFiles = 0;
+
+        if ( !changed.isEmpty() )
+        {
+            ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, changed.size() ) );
+            try
+            {
+                for ( Future<Entry> future : executor.invokeAll( changed ) )
+                {
+                    Entry entry = future.get();
+                    current.put( entry.path, entry );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while staging " + sourceDirectory );
+            }
+            catch ( ExecutionException e )
+            {
+                if ( e.getCause() instanceof IOException )
+                {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException( "Failed to stage " + sourceDirectory + ": " + e.getCause() );
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+
+        copiedFiles = copied.get();
+
+        Set<String> deleted = new HashSet<String>( previous.keySet() );
+        deleted.removeAll( current.keySet() );
+        for ( String path : deleted )
+        {
+            if ( new File( stagingDirectory, path ).delete() )
+            {
+                deletedFiles++;
+            }
+        }
+
+        stagingDirectory.mkdirs();
+        writeManifest( current );
+    }
+
+    /**
+     * @return the number of files found in the project by the last {@link #stage(File)}
+     */
+    public synchronized int getScannedFiles()
+    {
+        return scannedFiles;
+    }
+
+    /**
+     * @return the number of files hashed by the last {@link #stage(File)}, i.e. new or touched since the call before
+     */
+    public synchronized int getHashedFiles()
+    {
+        return hashedFiles;
+    }
+
+    /**
+     * @return the number of files copied or linked by the last {@link #stage(File)}
+     */
+    public synchronized int getCopiedFiles()
+    {
+        return copiedFiles;
+    }
+
+    /**
+     * @return the number of staged files deleted by the last {@link #stage(File)}, as their source was gone
+     */
+    public synchronized int getDeletedFiles()
+    {
+        return deletedFiles;
+    }
+
+    private void scan( File directory, String prefix, boolean root, Map<String, File> sources )
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        Arrays.sort( files );
+        for ( File file : files )
+        {
+            String name = file.getName();
+            if ( file.isDirectory() )
+            {
+                if ( !excludes.contains( name ) && !( root && "target".equals( name ) ) )
+                {
+                    scan( file, prefix + name + '/', false, sources );
+                }
+            }
+            else
+            {
+                sources.put( prefix + name, file );
+            }
+        }
+    }
+
+    private void stage( File source, File staged )
+        throws IOException
+    {
+        staged.getParentFile().mkdirs();
+        staged.delete();
+        if ( linkFiles && link( source, staged ) )
+        {
+            return;
+        }
+
+        FileInputStream in = new FileInputStream( source );
+        try
+        {
+            FileOutputStream out = new FileOutputStream( staged );
+            try
+            {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                long size = inChannel.size();
+                long position = 0;
+                while ( position < size )
+                {
+                    position += inChannel.transferTo( position, size - position, outChannel );
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        staged.setLastModified( source.lastModified() );
+    }
+
+    private static boolean link( File existing, File link )
+    {
+        if ( CREATE_LINK == null )
+        {
+            return false;
+        }
+        try
+        {
+            CREATE_LINK.invoke( null, TO_PATH.invoke( link ), TO_PATH.invoke( existing ) );
+            return true;
+        }
+        catch ( InvocationTargetException e )
+        {
+            // cross device link, unsupported operation, ...
+            return false;
+        }
+        catch ( IllegalAccessException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param file a file
+     * @return the SHA-1 hash of its content, in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    static String hash( File file )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not available: " + e.getMessage() );
+        }
+
+        FileInputStream in = new FileInputStream( file );
+        try
+        {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+            while ( channel.read( buffer ) >= 0 )
+            {
+                buffer.flip();
+                digest.update( buffer );
+                buffer.clear();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        StringBuilder hex = new StringBuilder( 40 );
+        for ( byte b : digest.digest() )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private Map<String, Entry> readManifest()
+        throws IOException
+    {
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        if ( !manifestFile.isFile() )
+        {
+            return entries;
+        }
+        BufferedReader reader =
+            new BufferedReader( new InputStreamReader( new FileInputStream( manifestFile ), "UTF-8" ) );
+        try
+        {
+            for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+            {
+                // hash size time path, the path last as it may contain spaces
+                String[] fields = line.split( " ", 4 );
+                if ( fields.length == 4 )
+                {
+                    entries.put( fields[3], new Entry( fields[3], fields[0], Long.parseLong( fields[1] ),
+                                                       Long.parseLong( fields[2] ) ) );
+                }
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            // corrupted: stage everything again
+            entries.clear();
+        }
+        finally
+        {
+            reader.close();
+        }
+        return entries;
+    }
+
+    private void writeManifest( Map<String, Entry> entries )
+        throws IOException
+    {
+        File tmp = new File( manifestFile.getPath() + ".tmp" );
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmp ), "UTF-8" ) );
+        try
+        {
+            for ( Entry entry : entries.values() )
+            {
+                writer.write( entry.hash + ' ' + entry.size + ' ' + entry.time + ' ' + entry.path + '\n' );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        manifestFile.delete();
+        if ( !tmp.renameTo( manifestFile ) )
+        {
+            throw new IOException( "Cannot write the staging manifest " + manifestFile );
+        }
+    }
+
+    /**
+     * A staged file, as recorded in the manifest.
+     */
+    private static final class Entry
+    {
+        private final String path;
+
+        private final String hash;
+
+        private final long size;
+
+        private final long time;
+
+        Entry( String path, String hash, long size, long time )
+        {
+            this.path = path;
+            this.hash = hash;
+            this.size = size;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a test local repository, shared by the threads of this JVM and by the other JVMs, e.g. the forks
+ * of a test suite, so that only one of them stages a project at a time. The lock is a <code>FileLock</code> on a
+ * <code>.lock</code> file next to the repository, released by the operating system if the JVM dies.
+ * <p/>
+ * The holder records the fingerprint of each project it staged in a properties file of the repository, once the
+ * project is completely installed, so that the next holders reuse it instead of building it again. The file is
+ * written to a temporary file and renamed, so that a JVM dying while staging leaves the previous state.
+ *
+ * @since 3.0.1
+ */
+final class LocalRepositoryLock
+{
+    private static final String STATE = ".staged-projects.properties";
+
+    /** File locks are held per JVM: the threads queue on these first. */
+    private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS =
+        new ConcurrentHashMap<String, ReentrantLock>();
+
+    private final File repositoryDirectory;
+
+    private final ReentrantLock jvmLock;
+
+    private final RandomAccessFile lockFile;
+
+    private final FileLock fileLock;
+
+    private LocalRepositoryLock( File repositoryDirectory, ReentrantLock jvmLock, RandomAccessFile lockFile,
+                                 FileLock fileLock )
+    {
+        this.repositoryDirectory = repositoryDirectory;
+        this.jvmLock = jvmLock;
+        this.lockFile = lockFile;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Waits for the lock of a repository.
+     *
+     * @param repositoryDirectory the repository, created if needed
+     * @return the lock, to {@link #release()}
+     * @throws IOException if the lock file cannot be locked
+     */
+    static LocalRepositoryLock acquire( File repositoryDirectory )
+        throws IOException
+    {
+        File directory = repositoryDirectory.getCanonicalFile();
+        directory.mkdirs();
+
+        ReentrantLock jvmLock = new ReentrantLock();
+        ReentrantLock existing = JVM_LOCKS.putIfAbsent( directory.getPath(), jvmLock );
+        if ( existing != null )
+        {
+            jvmLock = existing;
+        }
+        jvmLock.lock();
+
+        RandomAccessFile lockFile = null;
+        try
+        {
+            lockFile = new RandomAccessFile( new File( directory.getParentFile(), directory.getName() + ".lock" ),
+                                             "rw" );
+            FileChannel channel = lockFile.getChannel();
+            FileLock fileLock = channel.tryLock();
+            if ( fileLock == null )
+            {
+                System.out.println( "Waiting for another test JVM to release " + directory + "..." );
+                fileLock = channel.lock();
+            }
+            return new LocalRepositoryLock( directory, jvmLock, lockFile, fileLock );
+        }
+        catch ( IOException e )
+        {
+            close( lockFile );
+            jvmLock.unlock();
+            throw e;
+        }
+        catch ( RuntimeException e )
+        {
+            close( lockFile );
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * @param pomFile the POM of a project
+     * @param fingerprint the fingerprint of the project
+     * @return <code>true</code> if the project was staged in the repository with this fingerprint
+     * @throws IOException if the state of the repository cannot be read
+     */
+    boolean isStaged( File pomFile, String fingerprint )
+        throws IOException
+    {
+        return fingerprint.equals( readState().getProperty( pomFile.getCanonicalPath() ) );
+    }
+
+    /**
+     * Records that a project was staged in the repository.
+     *
+     * @param pomFile the POM of the project
+     * @param fingerprint the fingerprint of the project
+     * @throws IOException if the state of the repository cannot be written
+     */
+    void markStaged( File pomFile, String fingerprint )
+        throws IOException
+    {
+        Properties state = readState();
+        state.setProperty( pomFile.getCanonicalPath(), fingerprint );
+
+        File stateFile = new File( repositoryDirectory, STATE );
+        File tmp = new File( repositoryDirectory, STATE + ".tmp" );
+        OutputStream out = new FileOutputStream( tmp );
+        try
+        {
+            state.store( out, "Fingerprints of the projects staged in this repository" );
+        }
+        finally
+        {
+            out.close();
+        }
+        // replaces the state atomically where the file system can; Windows refuses to rename over an existing file,
+        // so the state is deleted first there, and a reader in between finds none, and stages again
+        if ( !tmp.renameTo( stateFile ) && !( stateFile.delete() && tmp.renameTo( stateFile ) ) )
+        {
+            tmp.delete();
+            throw new IOException( "Cannot write " + stateFile );
+        }
+    }
+
+    /**
+     * Releases the lock, to the other threads and JVMs.
+     */
+    void release()
+    {
+        try
+        {
+            fileLock.release();
+        }
+        catch ( IOException e )
+        {
+            // released when closing anyway
+        }
+        close( lockFile );
+        jvmLock.unlock();
+    }
+
+    private Properties readState()
+        throws IOException
+    {
+        Properties state = new Properties();
+        File stateFile = new File( repositoryDirectory, STATE );
+        if ( stateFile.isFile() )
+        {
+            InputStream in = new FileInputStream( stateFile );
+            try
+            {
+                state.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return state;
+    }
+
+    private static void close( RandomAccessFile file )
+    {
+        if ( file != null )
+        {
+            try
+            {
+                file.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+}
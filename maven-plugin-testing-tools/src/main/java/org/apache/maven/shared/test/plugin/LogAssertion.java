@@ -0,0 +1,126 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.regex.Pattern;
+
+/**
+ * Assertion on the output of a build, checked line by line while the build runs, so that a broken build can be
+ * stopped as soon as the assertion fails instead of when it ends. Register them with
+ * {@link BuildTool#createBasicInvocationRequest(java.io.File, java.util.Properties, java.util.List, java.io.File,
+ * java.util.List)}.
+ * <p/>
+ * An assertion is used by one build only: {@link #expectWithin(String, long)} remembers whether its line was seen.
+ *
+ * @since 3.0.1
+ */
+public abstract class LogAssertion
+{
+    /**
+     * Checks a line of output.
+     *
+     * @param line the line
+     * @param elapsed the time since the build started, in milliseconds
+     * @return the reason the assertion failed, or <code>null</code>
+     */
+    protected abstract String checkLine( String line, long elapsed );
+
+    /**
+     * Checks the assertion while no line comes, about every 100 milliseconds. Does nothing by default.
+     *
+     * @param elapsed the time since the build started, in milliseconds
+     * @return the reason the assertion failed, or <code>null</code>
+     */
+    protected String checkTime( long elapsed )
+    {
+        return null;
+    }
+
+    /**
+     * Checks the assertion once the build ended. Does nothing by default.
+     *
+     * @param elapsed the duration of the build, in milliseconds
+     * @return the reason the assertion failed, or <code>null</code>
+     */
+    protected String checkEnd( long elapsed )
+    {
+        return null;
+    }
+
+    /**
+     * @param regex a regular expression, found anywhere in the line
+     * @return an assertion failing on the first line matching the expression
+     */
+    public static LogAssertion mustNotContain( String regex )
+    {
+        final Pattern pattern = Pattern.compile( regex );
+        return new LogAssertion()
+        {
+            protected String checkLine( String line, long elapsed )
+            {
+                return pattern.matcher( line ).find() ? "Unexpected line matching '" + pattern + "': " + line : null;
+            }
+        };
+    }
+
+    /**
+     * @param regex a regular expression, found anywhere in the line
+     * @return an assertion failing if the build ends without printing a line matching the expression
+     */
+    public static LogAssertion mustContain( String regex )
+    {
+        return expectWithin( regex, Long.MAX_VALUE );
+    }
+
+    /**
+     * @param regex a regular expression, found anywhere in the line
+     * @param timeout the time, in milliseconds since the build started, the line must come within
+     * @return an assertion failing if no line matching the expression came within the timeout, or by the end of the
+     *         build
+     */
+    public static LogAssertion expectWithin( String regex, final long timeout )
+    {
+        final Pattern pattern = Pattern.compile( regex );
+        return new LogAssertion()
+        {
+            private boolean seen;
+
+            protected String checkLine( String line, long elapsed )
+            {
+                if ( !seen && pattern.matcher( line ).find() )
+                {
+                    seen = true;
+                }
+                return checkTime( elapsed );
+            }
+
+            protected String checkTime( long elapsed )
+            {
+                return seen || elapsed <= timeout ? null : "No line matching '" + pattern + "' within " + timeout
+                    + " ms.";
+            }
+
+            protected String checkEnd( long elapsed )
+            {
+                return seen ? null : "No line matching '" + pattern + "' in the build output.";
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates the {@link LogAssertion}s of a build as its output comes, on the output threads, and on a thread of its
+ * own for the assertions on time. The first failure is kept, and runs the cancel action, if any.
+ *
+ * @since 3.0.1
+ */
+final class LogMonitor
+{
+    private static final long TICK = 100;
+
+    private final List<LogAssertion> assertions;
+
+    private long startMillis;
+
+    private Thread watchdog;
+
+    private Runnable cancelAction;
+
+    private volatile String failure;
+
+    LogMonitor( List<LogAssertion> assertions )
+    {
+        this.assertions = new ArrayList<LogAssertion>( assertions );
+    }
+
+    /**
+     * Starts the clock, and the watchdog checking the assertions on time.
+     *
+     * @param cancelAction run once on the first failure, to stop the build, or <code>null</code>
+     */
+    synchronized void start( Runnable cancelAction )
+    {
+        this.cancelAction = cancelAction;
+        startMillis = System.currentTimeMillis();
+        watchdog = new Thread( "log-monitor" )
+        {
+            public void run()
+            {
+                try
+                {
+                    while ( !isInterrupted() && failure == null )
+                    {
+                        Thread.sleep( TICK );
+                        checkTime();
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    // stopped
+                }
+            }
+        };
+        watchdog.setDaemon( true );
+        watchdog.start();
+    }
+
+    synchronized void consumeLine( String line )
+    {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        for ( LogAssertion assertion : assertions )
+        {
+            fail( assertion.checkLine( line, elapsed ) );
+        }
+    }
+
+    private synchronized void checkTime()
+    {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        for ( LogAssertion assertion : assertions )
+        {
+            fail( assertion.checkTime( elapsed ) );
+        }
+    }
+
+    /**
+     * Stops the watchdog, and checks the assertions on the end of the build, unless one failed already.
+     */
+    void end()
+    {
+        Thread thread;
+        synchronized ( this )
+        {
+            thread = watchdog;
+            watchdog = null;
+            cancelAction = null;
+        }
+        if ( thread != null )
+        {
+            thread.interrupt();
+            try
+            {
+                thread.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized ( this )
+        {
+            long elapsed = System.currentTimeMillis() - startMillis;
+            for ( LogAssertion assertion : assertions )
+            {
+                fail( assertion.checkEnd( elapsed ) );
+            }
+        }
+    }
+
+    private void fail( String reason )
+    {
+        if ( reason == null || failure != null )
+        {
+            return;
+        }
+        failure = reason;
+        if ( cancelAction != null )
+        {
+            cancelAction.run();
+        }
+    }
+
+    /**
+     * @return the reason of the first failure, or <code>null</code>
+     */
+    String getFailure()
+    {
+        return failure;
+    }
+}
@@ -0,0 +1,223 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.codehaus.plexus.util.cli.CommandLineException;
+
+/**
+ * Main class of the JVMs forked by a {@link MavenWorkerPool}. A worker connects back to the pool on a local port,
+ * boots the Maven installation once with an {@link EmbeddedMavenLauncher}, then runs the builds it is sent, one at a
+ * time, streaming their output back, until it is asked to quit or the connection is closed.
+ * <p/>
+ * Frames are a type byte followed by their content, strings being written as their UTF-8 length and bytes.
+ *
+ * @since 3.0.1
+ */
+public final class MavenWorker
+{
+    /** Pool to worker: working directory, heap measure flag, argument count and arguments. */
+    static final byte BUILD = 'B';
+
+    /** Pool to worker: health check. Worker to pool: answer, with the used heap. */
+    static final byte PING = 'P';
+
+    /** Pool to worker: exit. */
+    static final byte QUIT = 'Q';
+
+    /** Worker to pool: Maven booted. */
+    static final byte READY = 'R';
+
+    /** Worker to pool: Maven failed to boot, with the error. */
+    static final byte FAILED = 'F';
+
+    /** Worker to pool: a line of standard output. */
+    static final byte OUT = 'O';
+
+    /** Worker to pool: a line of standard error. */
+    static final byte ERR = 'E';
+
+    /** Worker to pool: build finished, with its exit code and the used heap. */
+    static final byte EXIT = 'X';
+
+    /** Worker to pool: build failed with an exception, with its message and the used heap. */
+    static final byte ERROR = 'T';
+
+    private static final String UTF_8 = "UTF-8";
+
+    private MavenWorker()
+    {
+        // main class
+    }
+
+    /**
+     * @param args the local port of the pool and the Maven installation
+     * @throws IOException if the connection to the pool fails
+     */
+    public static void main( String[] args )
+        throws IOException
+    {
+        Socket socket = new Socket( InetAddress.getByName( "127.0.0.1" ), Integer.parseInt( args[0] ) );
+        socket.setTcpNoDelay( true );
+        DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+        final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+
+        EmbeddedMavenLauncher launcher;
+        try
+        {
+            launcher = new EmbeddedMavenLauncher( new File( args[1] ) );
+            out.writeByte( READY );
+            out.flush();
+        }
+        catch ( TestToolsException e )
+        {
+            out.writeByte( FAILED );
+            writeString( out, e.getMessage() + ( e.getCause() != null ? ": " + e.getCause() : "" ) );
+            out.flush();
+            socket.close();
+            System.exit( 1 );
+            return;
+        }
+
+        try
+        {
+            for ( byte command = in.readByte(); command != QUIT; command = in.readByte() )
+            {
+                if ( command == PING )
+                {
+                    out.writeByte( PING );
+                    out.writeLong( getUsedHeap( false ) );
+                }
+                else if ( command == BUILD )
+                {
+                    File workingDirectory = new File( readString( in ) );
+                    boolean measureHeap = in.readBoolean();
+                    String[] arguments = new String[in.readInt()];
+                    for ( int i = 0; i < arguments.length; i++ )
+                    {
+                        arguments[i] = readString( in );
+                    }
+
+                    try
+                    {
+                        int exitCode = launcher.run( arguments, workingDirectory, new FrameOutputHandler( out, OUT ),
+                                                     new FrameOutputHandler( out, ERR ) );
+                        synchronized ( out )
+                        {
+                            out.writeByte( EXIT );
+                            out.writeInt( exitCode );
+                            out.writeLong( getUsedHeap( measureHeap ) );
+                        }
+                    }
+                    catch ( CommandLineException e )
+                    {
+                        synchronized ( out )
+                        {
+                            out.writeByte( ERROR );
+                            writeString( out, String.valueOf( e.getCause() ) );
+                            out.writeLong( getUsedHeap( measureHeap ) );
+                        }
+                    }
+                }
+                out.flush();
+            }
+        }
+        finally
+        {
+            launcher.close();
+            socket.close();
+        }
+        // builds may leave non-daemon threads behind
+        System.exit( 0 );
+    }
+
+    private static long getUsedHeap( boolean collect )
+    {
+        if ( collect )
+        {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void writeString( DataOutput out, String value )
+        throws IOException
+    {
+        byte[] bytes = value.getBytes( UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    static String readString( DataInput in )
+        throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, UTF_8 );
+    }
+
+    /**
+     * Sends each line as a frame to the pool.
+     */
+    private static final class FrameOutputHandler
+        implements InvocationOutputHandler
+    {
+        private final DataOutputStream out;
+
+        private final byte type;
+
+        FrameOutputHandler( DataOutputStream out, byte type )
+        {
+            this.out = out;
+            this.type = type;
+        }
+
+        /** {@inheritDoc} */
+        public void consumeLine( String line )
+        {
+            try
+            {
+                synchronized ( out )
+                {
+                    out.writeByte( type );
+                    writeString( out, line );
+                    // lines are streamed, so the pool can follow a build as it runs
+                    out.flush();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new IllegalStateException( "Failed to send output to the pool: " + e.getMessage() );
+            }
+        }
+    }
+}
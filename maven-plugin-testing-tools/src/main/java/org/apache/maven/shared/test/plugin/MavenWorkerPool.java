@@ -0,0 +1,751 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamPumper;
+
+/**
+ * Pool of long-lived forked JVMs running Maven builds, for builds that cannot run in the test JVM but should not pay a
+ * cold JVM each. Each worker boots Maven once, see {@link MavenWorker}, and runs one build at a time, sent over a
+ * local socket. Workers are started on demand, up to the {@link #setSize(int) size} of the pool, checked before each
+ * build, and recycled after a {@link #setMaxBuilds(int) number of builds} or once their
+ * {@link #setMaxHeap(long) heap} has grown too much.
+ * <p/>
+ * Requests are turned into command-line arguments like for forked builds, so the shell environment,
+ * <code>MAVEN_OPTS</code> and the Java home of a request are ignored: use {@link #setJvmArguments(List)} instead.
+ *
+ * @since 3.0.1
+ */
+public class MavenWorkerPool
+{
+    private final File mavenHome;
+
+    private int size = Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 );
+
+    private int maxBuilds = 50;
+
+    private long maxHeap;
+
+    private List<String> jvmArguments = Collections.emptyList();
+
+    private int startTimeout = 60000;
+
+    private int pingTimeout = 5000;
+
+    private final LinkedList<Worker> idle = new LinkedList<Worker>();
+
+    private final List<Worker> workers = new ArrayList<Worker>();
+
+    private int live;
+
+    private boolean closed;
+
+    /**
+     * @param mavenHome the Maven 3 installation run by the workers
+     */
+    public MavenWorkerPool( File mavenHome )
+    {
+        this.mavenHome = mavenHome;
+    }
+
+    /**
+     * @return the Maven installation run by the workers
+     */
+    public File getMavenHome()
+    {
+        return mavenHome;
+    }
+
+    /**
+     * @param size the maximum number of workers, i.e. of concurrent builds, half the processors by default
+     */
+    public void setSize( int size )
+    {
+        this.size = size;
+    }
+
+    /**
+     * @return the maximum number of workers
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @param maxBuilds the number of builds after which a worker is replaced, 50 by default, <code>0</code> for no
+     *            limit
+     */
+    public void setMaxBuilds( int maxBuilds )
+    {
+        this.maxBuilds = maxBuilds;
+    }
+
+    /**
+     * @return the number of builds after which a worker is replaced
+     */
+    public int getMaxBuilds()
+    {
+        return maxBuilds;
+    }
+
+    /**
+     * @param maxHeap the used heap, in bytes, measured after a garbage collection at the end of each build, above which
+     *            a worker is replaced, <code>0</code> for no limit, the default
+     */
+    public void setMaxHeap( long maxHeap )
+    {
+        this.maxHeap = maxHeap;
+    }
+
+    /**
+     * @return the used heap above which a worker is replaced
+     */
+    public long getMaxHeap()
+    {
+        return maxHeap;
+    }
+
+    /**
+     * @param jvmArguments the arguments of the worker JVMs, e.g. <code>-Xmx512m</code>
+     */
+    public void setJvmArguments( List<String> jvmArguments )
+    {
+        this.jvmArguments = jvmArguments == null ? Collections.<String>emptyList() : jvmArguments;
+    }
+
+    /**
+     * @return the arguments of the worker JVMs
+     */
+    public List<String> getJvmArguments()
+    {
+        return jvmArguments;
+    }
+
+    /**
+     * @param startTimeout the time, in milliseconds, a new worker has to boot Maven, 60 seconds by default
+     */
+    public void setStartTimeout( int startTimeout )
+    {
+        this.startTimeout = startTimeout;
+    }
+
+    /**
+     * @param pingTimeout the time, in milliseconds, an idle worker has to answer the health check before a build, 5
+     *            seconds by default
+     */
+    public void setPingTimeout( int pingTimeout )
+    {
+        this.pingTimeout = pingTimeout;
+    }
+
+    /**
+     * Runs a build on an idle worker, starting one if none is idle and the pool is not full, or else waiting for one.
+     *
+     * @param request the request
+     * @param localRepositoryDirectory the default local repository, or <code>null</code>
+     * @return the result, with the exit code of the build
+     * @throws TestToolsException if the request is not valid, or no worker could run it
+     */
+    public InvocationResult execute( InvocationRequest request, File localRepositoryDirectory )
+        throws TestToolsException
+    {
+        return execute( request, localRepositoryDirectory, null );
+    }
+
+    /**
+     * Runs a build like {@link #execute(InvocationRequest, File)}, unless cancelled first. A build cancelled while
+     * running retires its worker, which is still busy with it, and fails.
+     *
+     * @param request the request
+     * @param localRepositoryDirectory the default local repository, or <code>null</code>
+     * @param cancellation the cancellation of the build, or <code>null</code>
+     * @return the result, with the exit code of the build
+     * @throws TestToolsException if the request is not valid, or no worker could run it
+     */
+    InvocationResult execute( InvocationRequest request, File localRepositoryDirectory, Cancellation cancellation )
+        throws TestToolsException
+    {
+        Commandline commandline =
+            EmbeddedMavenLauncher.buildCommandline( request, mavenHome, localRepositoryDirectory );
+        File workingDirectory = EmbeddedMavenLauncher.getWorkingDirectory( commandline );
+
+        Worker worker = acquire();
+        boolean healthy = false;
+        try
+        {
+            if ( cancellation != null && !cancellation.attach( worker ) )
+            {
+                healthy = true;
+                return Cancellation.result();
+            }
+            InvocationResult result =
+                worker.build( commandline.getArguments(), workingDirectory, request.getOutputHandler( null ),
+                              request.getErrorHandler( null ), maxHeap > 0 );
+            healthy = true;
+            return result;
+        }
+        catch ( IOException e )
+        {
+            if ( cancellation != null && cancellation.isCancelled() )
+            {
+                return Cancellation.result();
+            }
+            worker.retiredReason = "connection lost: " + e.getMessage();
+            throw new TestToolsException( "Maven worker " + worker.id + " failed during the build.", e );
+        }
+        finally
+        {
+            if ( cancellation != null && cancellation.detach() )
+            {
+                worker.retiredReason = "build cancelled";
+                healthy = false;
+            }
+            release( worker, healthy );
+        }
+    }
+
+    private Worker acquire()
+        throws TestToolsException
+    {
+        while ( true )
+        {
+            Worker worker;
+            synchronized ( this )
+            {
+                while ( !closed && idle.isEmpty() && live >= size )
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new TestToolsException( "Interrupted while waiting for a Maven worker." );
+                    }
+                }
+                if ( closed )
+                {
+                    throw new TestToolsException( "The Maven worker pool is closed." );
+                }
+                // the most recently used worker is the warmest one
+                worker = idle.pollLast();
+                if ( worker == null )
+                {
+                    live++;
+                }
+            }
+
+            if ( worker == null )
+            {
+                try
+                {
+                    return start();
+                }
+                catch ( TestToolsException e )
+                {
+                    synchronized ( this )
+                    {
+                        live--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            }
+
+            if ( worker.ping( pingTimeout ) )
+            {
+                return worker;
+            }
+            worker.retiredReason = "health check failed";
+            release( worker, false );
+        }
+    }
+
+    private void release( Worker worker, boolean healthy )
+    {
+        boolean retire = !healthy;
+        if ( healthy && maxBuilds > 0 && worker.builds >= maxBuilds )
+        {
+            worker.retiredReason = "reached " + maxBuilds + " builds";
+            retire = true;
+        }
+        else if ( healthy && maxHeap > 0 && worker.heap > maxHeap )
+        {
+            worker.retiredReason = "heap grew to " + worker.heap + " bytes";
+            retire = true;
+        }
+
+        synchronized ( this )
+        {
+            if ( retire || closed )
+            {
+                live--;
+            }
+            else
+            {
+                idle.add( worker );
+            }
+            notifyAll();
+        }
+        if ( retire || closed )
+        {
+            worker.destroy();
+        }
+    }
+
+    private Worker start()
+        throws TestToolsException
+    {
+        List<String> command = new ArrayList<String>();
+        command.add( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+        command.addAll( jvmArguments );
+        command.add( "-cp" );
+        command.add( System.getProperty( "java.class.path" ) );
+        command.add( MavenWorker.class.getName() );
+
+        Worker worker;
+        synchronized ( this )
+        {
+            worker = new Worker( workers.size() + 1 );
+            workers.add( worker );
+        }
+
+        ServerSocket server = null;
+        try
+        {
+            server = new ServerSocket( 0, 1, InetAddress.getByName( "127.0.0.1" ) );
+            server.setSoTimeout( startTimeout );
+            command.add( String.valueOf( server.getLocalPort() ) );
+            command.add( mavenHome.getAbsolutePath() );
+
+            long deadline = System.currentTimeMillis() + startTimeout;
+            worker.process = new ProcessBuilder( command ).redirectErrorStream( true ).start();
+            // the worker does not write to its own output, but a crashing JVM may: drain it so it never blocks
+            new StreamPumper( worker.process.getInputStream() ).start();
+
+            worker.connect( server.accept() );
+            // the worker connects before booting Maven: the start timeout also bounds the wait for its status
+            if ( startTimeout > 0 )
+            {
+                worker.socket.setSoTimeout( (int) Math.max( 1, deadline - System.currentTimeMillis() ) );
+            }
+            byte status = worker.in.readByte();
+            if ( status != MavenWorker.READY )
+            {
+                throw new TestToolsException( "Maven worker " + worker.id + " failed to start: "
+                    + MavenWorker.readString( worker.in ) );
+            }
+            worker.socket.setSoTimeout( 0 );
+            worker.startMillis = System.currentTimeMillis();
+            return worker;
+        }
+        catch ( IOException e )
+        {
+            worker.retiredReason = "failed to start: " + e.getMessage();
+            worker.destroy();
+            throw new TestToolsException( "Maven worker " + worker.id + " failed to start.", e );
+        }
+        catch ( TestToolsException e )
+        {
+            worker.retiredReason = e.getMessage();
+            worker.destroy();
+            throw e;
+        }
+        finally
+        {
+            if ( server != null )
+            {
+                try
+                {
+                    server.close();
+                }
+                catch ( IOException e )
+                {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of every worker started so far, retired ones included, in start order
+     */
+    public synchronized List<WorkerStatistics> getStatistics()
+    {
+        List<WorkerStatistics> statistics = new ArrayList<WorkerStatistics>( workers.size() );
+        for ( Worker worker : workers )
+        {
+            statistics.add( new WorkerStatistics( worker ) );
+        }
+        return statistics;
+    }
+
+    /**
+     * Stops the idle workers, and the busy ones once their build is done. No build can be run afterwards.
+     */
+    public void close()
+    {
+        List<Worker> stopped;
+        synchronized ( this )
+        {
+            closed = true;
+            stopped = new ArrayList<Worker>( idle );
+            live -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        for ( Worker worker : stopped )
+        {
+            worker.retiredReason = "pool closed";
+            worker.destroy();
+        }
+    }
+
+    /**
+     * A forked JVM, and its connection.
+     */
+    private static final class Worker
+    {
+        private final int id;
+
+        private Process process;
+
+        private Socket socket;
+
+        private DataInputStream in;
+
+        private DataOutputStream out;
+
+        private long startMillis;
+
+        private volatile int builds;
+
+        private volatile long buildMillis;
+
+        private volatile long heap;
+
+        private volatile boolean busy;
+
+        private volatile String retiredReason;
+
+        Worker( int id )
+        {
+            this.id = id;
+        }
+
+        void connect( Socket socket )
+            throws IOException
+        {
+            this.socket = socket;
+            socket.setTcpNoDelay( true );
+            in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+            out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+        }
+
+        boolean ping( int timeout )
+        {
+            try
+            {
+                socket.setSoTimeout( timeout );
+                out.writeByte( MavenWorker.PING );
+                out.flush();
+                if ( in.readByte() != MavenWorker.PING )
+                {
+                    return false;
+                }
+                heap = in.readLong();
+                socket.setSoTimeout( 0 );
+                return true;
+            }
+            catch ( IOException e )
+            {
+                return false;
+            }
+        }
+
+        InvocationResult build( String[] arguments, File workingDirectory, InvocationOutputHandler outputHandler,
+                                InvocationOutputHandler errorHandler, boolean measureHeap )
+            throws IOException
+        {
+            busy = true;
+            long start = System.currentTimeMillis();
+            try
+            {
+                out.writeByte( MavenWorker.BUILD );
+                MavenWorker.writeString( out, workingDirectory.getAbsolutePath() );
+                out.writeBoolean( measureHeap );
+                out.writeInt( arguments.length );
+                for ( String argument : arguments )
+                {
+                    MavenWorker.writeString( out, argument );
+                }
+                out.flush();
+
+                while ( true )
+                {
+                    byte type = in.readByte();
+                    if ( type == MavenWorker.OUT || type == MavenWorker.ERR )
+                    {
+                        String line = MavenWorker.readString( in );
+                        InvocationOutputHandler handler = type == MavenWorker.OUT ? outputHandler : errorHandler;
+                        if ( handler != null )
+                        {
+                            handler.consumeLine( line );
+                        }
+                    }
+                    else if ( type == MavenWorker.EXIT )
+                    {
+                        int exitCode = in.readInt();
+                        heap = in.readLong();
+                        return new SimpleInvocationResult( exitCode, null );
+                    }
+                    else if ( type == MavenWorker.ERROR )
+                    {
+                        String message = MavenWorker.readString( in );
+                        heap = in.readLong();
+                        return new SimpleInvocationResult( 1, new CommandLineException( message ) );
+                    }
+                    else
+                    {
+                        throw new IOException( "Unexpected frame from Maven worker " + id + ": " + type );
+                    }
+                }
+            }
+            finally
+            {
+                builds++;
+                buildMillis += System.currentTimeMillis() - start;
+                busy = false;
+            }
+        }
+
+        /**
+         * Closes the connection, which fails the build running on the worker, if any.
+         */
+        void abort()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+
+        void destroy()
+        {
+            if ( out != null )
+            {
+                try
+                {
+                    out.writeByte( MavenWorker.QUIT );
+                    out.flush();
+                    socket.close();
+                }
+                catch ( IOException e )
+                {
+                    // the worker is gone already
+                }
+            }
+            if ( process != null )
+            {
+                process.destroy();
+            }
+            if ( retiredReason == null )
+            {
+                retiredReason = "stopped";
+            }
+        }
+    }
+
+    /**
+     * Cancels a build, typically as the cancel action of a {@link LogMonitor}: a build waiting for a worker is not
+     * run, and a running one is stopped by closing the connection to its worker.
+     */
+    static final class Cancellation
+        implements Runnable
+    {
+        private boolean cancelled;
+
+        private Worker worker;
+
+        /** {@inheritDoc} */
+        public synchronized void run()
+        {
+            cancelled = true;
+            if ( worker != null )
+            {
+                worker.abort();
+            }
+        }
+
+        synchronized boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        /**
+         * @param worker the worker about to run the build
+         * @return <code>false</code> if the build is cancelled already, and must not run
+         */
+        synchronized boolean attach( Worker worker )
+        {
+            if ( cancelled )
+            {
+                return false;
+            }
+            this.worker = worker;
+            return true;
+        }
+
+        /**
+         * @return <code>true</code> if the build was cancelled while running, which leaves its worker unusable
+         */
+        synchronized boolean detach()
+        {
+            boolean aborted = cancelled && worker != null;
+            worker = null;
+            return aborted;
+        }
+
+        static InvocationResult result()
+        {
+            return new SimpleInvocationResult( 1, new CommandLineException( "Build cancelled." ) );
+        }
+    }
+
+    /**
+     * Snapshot of the statistics of a worker.
+     */
+    public static final class WorkerStatistics
+    {
+        private final int id;
+
+        private final long startMillis;
+
+        private final int builds;
+
+        private final long buildMillis;
+
+        private final long heap;
+
+        private final boolean busy;
+
+        private final String retiredReason;
+
+        WorkerStatistics( Worker worker )
+        {
+            id = worker.id;
+            startMillis = worker.startMillis;
+            builds = worker.builds;
+            buildMillis = worker.buildMillis;
+            heap = worker.heap;
+            busy = worker.busy;
+            retiredReason = worker.retiredReason;
+        }
+
+        /**
+         * @return the number of the worker, from 1 in start order
+         */
+        public int getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return the time Maven was booted by the worker, or <code>0</code> if it failed to start
+         */
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        /**
+         * @return the number of builds run by the worker
+         */
+        public int getBuilds()
+        {
+            return builds;
+        }
+
+        /**
+         * @return the total duration of the builds run by the worker, in milliseconds
+         */
+        public long getBuildMillis()
+        {
+            return buildMillis;
+        }
+
+        /**
+         * @return the used heap of the worker, in bytes, as last reported
+         */
+        public long getHeap()
+        {
+            return heap;
+        }
+
+        /**
+         * @return <code>true</code> if the worker is running a build
+         */
+        public boolean isBusy()
+        {
+            return busy;
+        }
+
+        /**
+         * @return <code>true</code> if the worker has been stopped
+         */
+        public boolean isRetired()
+        {
+            return retiredReason != null;
+        }
+
+        /**
+         * @return why the worker has been stopped, or <code>null</code> if it is still running
+         */
+        public String getRetiredReason()
+        {
+            return retiredReason;
+        }
+    }
+}
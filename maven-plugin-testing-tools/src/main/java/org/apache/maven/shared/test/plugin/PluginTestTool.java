@@ -22,7 +22,6 @@ package org.apache.maven.shared.test.plugin;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
-import org.codehaus.plexus.util.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -143,53 +142,60 @@ public class PluginTestTool
             throw new TestToolsException( "Failed to stage plugin for testing.", e );
         }
 
-        try
-        {
-            final File tmpDir = File.createTempFile( "plugin-IT-staging-project", "" );
-
-            tmpDir.delete();
-
-            tmpDir.mkdirs();
+        File localRepoDir = localRepositoryDir;
 
-            Runtime.getRuntime().addShutdownHook( new Thread( new Runnable()
-            {
+        if ( localRepoDir == null )
+        {
+            localRepoDir = new File( "target/test-local-repository" );
+        }
 
-                public void run()
-                {
-                    try
-                    {
-                        FileUtils.deleteDirectory( tmpDir );
-                    }
-                    catch ( IOException e )
-                    {
-                        // it'll get cleaned up when the temp dir is purged next...
-                    }
-                }
-
-            } ) );
-
-            FileUtils.copyDirectoryStructure( realProjectDir, tmpDir );
+        // the forks of a test suite share the local repository: the first one stages the plugin, the other ones
+        // wait for it and reuse it
+        LocalRepositoryLock lock;
+        try
+        {
+            lock = LocalRepositoryLock.acquire( localRepoDir );
         }
         catch ( IOException e )
         {
-            throw new TestToolsException( "Failed to create temporary staging directory for plugin project.", e );
+            throw new TestToolsException( "Failed to lock the test local repository: " + localRepoDir, e );
         }
 
-        File buildLog = new File( "target/test-build-logs/setup.build.log" );
+        try
+        {
+            String fingerprint =
+                ArtifactBuildCache.fingerprint( pomFile, testVersion, String.valueOf( skipUnitTests ),
+                                                String.valueOf( projectTool.getRemoteRepositoryUrl() ) );
+            if ( lock.isStaged( pomFile, fingerprint ) )
+            {
+                System.out.println( "Using the plugin already staged in: " + localRepoDir.getAbsolutePath() );
+                return localRepoDir;
+            }
+
+            // only what changed since the previous call is staged again
+            File stagingDir = new File( realProjectDir, "target/plugin-IT-staging-project" );
 
-        buildLog.getParentFile().mkdirs();
+            new IncrementalStager( stagingDir ).stage( realProjectDir );
 
-        File localRepoDir = localRepositoryDir;
+            File buildLog = new File( "target/test-build-logs/setup.build.log" );
 
-        if ( localRepoDir == null )
-        {
-            localRepoDir = new File( "target/test-local-repository" );
-        }
+            buildLog.getParentFile().mkdirs();
 
-        MavenProject project = projectTool.packageProjectArtifact( pomFile, testVersion, skipUnitTests, buildLog );
+            MavenProject project = projectTool.packageProjectArtifact( pomFile, testVersion, skipUnitTests, buildLog );
 
-        repositoryTool.createLocalRepositoryFromComponentProject( project, new File( realProjectDir, "pom.xml" ),
-                                                                  localRepoDir );
+            repositoryTool.createLocalRepositoryFromComponentProject( project, new File( realProjectDir, "pom.xml" ),
+                                                                      localRepoDir );
+
+            lock.markStaged( pomFile, fingerprint );
+        }
+        catch ( IOException e )
+        {
+            throw new TestToolsException( "Failed to stage the plugin project.", e );
+        }
+        finally
+        {
+            lock.release();
+        }
 
         return localRepoDir;
     }
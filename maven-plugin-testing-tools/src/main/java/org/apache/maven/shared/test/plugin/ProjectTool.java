@@ -50,6 +50,7 @@ import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.project.ProjectBuildingRequest;
 import org.apache.maven.project.artifact.ProjectArtifactMetadata;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.apache.maven.shared.invoker.InvocationResult;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.util.FileUtils;
@@ -93,6 +94,47 @@ public class ProjectTool
     @Requirement
     private ArtifactRepositoryFactory artifactRepositoryFactory;
 
+    private String remoteRepositoryUrl;
+
+    private boolean buildAvoidance = true;
+
+    /**
+     * Sets the URL through which test builds reach the main local repository, e.g. the one of a
+     * {@link RepositoryServer} serving it, to go through the HTTP transport like real builds do.
+     *
+     * @param remoteRepositoryUrl the URL, or <code>null</code> to use the <code>file:</code> URL of the local
+     *   repository, the default
+     * @since 3.0.1
+     */
+    public void setRemoteRepositoryUrl( String remoteRepositoryUrl )
+    {
+        this.remoteRepositoryUrl = remoteRepositoryUrl;
+    }
+
+    /**
+     * @return the URL through which test builds reach the main local repository, or <code>null</code> for its
+     *   <code>file:</code> URL
+     * @since 3.0.1
+     */
+    public String getRemoteRepositoryUrl()
+    {
+        return remoteRepositoryUrl;
+    }
+
+    /**
+     * Sets whether {@link #packageProjectArtifact(File, String, boolean, File)} skips the package build when the
+     * POM, the <code>src/main</code> tree and the parameters of the build did not change since the last one, reusing
+     * the artifact kept under <code>target/it-build-cache</code>. Parent POMs are not checked: disable it while
+     * working on them.
+     *
+     * @param buildAvoidance <code>false</code> to always build, <code>true</code> by default
+     * @since 3.0.1
+     */
+    public void setBuildAvoidance( boolean buildAvoidance )
+    {
+        this.buildAvoidance = buildAvoidance;
+    }
+
     /**
      * Construct a MavenProject instance from the specified POM file.
      *
@@ -220,6 +262,33 @@ public class ProjectTool
     public MavenProject packageProjectArtifact( File pomFile, String testVersion, boolean skipUnitTests, File logFile )
         throws TestToolsException
     {
+        ArtifactBuildCache cache = null;
+        String fingerprint = null;
+        if ( buildAvoidance )
+        {
+            File cacheDir = new File( pomFile.getParentFile(), "target/it-build-cache/" + testVersion );
+            cache = new ArtifactBuildCache( cacheDir );
+            File pom = new File( pomFile.getParentFile(), "pom-" + testVersion + ".xml" );
+            try
+            {
+                fingerprint =
+                    ArtifactBuildCache.fingerprint( pomFile, testVersion, String.valueOf( skipUnitTests ),
+                                                    String.valueOf( remoteRepositoryUrl ) );
+                File artifactFile = cache.restore( fingerprint, pom );
+                if ( artifactFile != null )
+                {
+                    pom.deleteOnExit();
+                    System.out.println( "Plugin unchanged since its last test build, using IT Plugin Jar: "
+                        + artifactFile.getAbsolutePath() );
+                    return readPackagedProject( pom, artifactFile );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new TestToolsException( "Error checking the last test build of: " + pomFile, e );
+            }
+        }
+
         PomInfo pomInfo = manglePomForTesting( pomFile, testVersion, skipUnitTests );
 
         Properties properties = new Properties();
@@ -231,17 +300,37 @@ public class ProjectTool
         System.out.println( "Now Building test version of the plugin...\nUsing staged plugin-pom: "
             + pomInfo.getPomFile().getAbsolutePath() );
 
-        buildTool.executeMaven( pomInfo.getPomFile(), properties, goals, buildLog );
+        InvocationResult result = buildTool.executeMaven( pomInfo.getPomFile(), properties, goals, buildLog );
 
-        File artifactFile = new File( pomInfo.getPomFile().getParentFile(),
-                                      pomInfo.getBuildDirectory() + "/" + pomInfo.getFinalName() );
+        String artifactPath = pomInfo.getBuildDirectory() + "/" + pomInfo.getFinalName();
+        File artifactFile = new File( pomInfo.getPomFile().getParentFile(), artifactPath );
         System.out.println( "Using IT Plugin Jar: " + artifactFile.getAbsolutePath() );
+
+        if ( cache != null && result != null && result.getExitCode() == 0 && artifactFile.isFile() )
+        {
+            try
+            {
+                cache.store( fingerprint, pomInfo.getPomFile(), artifactPath );
+            }
+            catch ( IOException e )
+            {
+                // the next test build will package it again
+                System.out.println( "Failed to keep the IT Plugin Jar for later test builds: " + e.getMessage() );
+            }
+        }
+
+        return readPackagedProject( pomInfo.getPomFile(), artifactFile );
+    }
+
+    private MavenProject readPackagedProject( File pomFile, File artifactFile )
+        throws TestToolsException
+    {
         try
         {
             ProjectBuildingRequest request = new DefaultProjectBuildingRequest();
             request.setLocalRepository( artifactRepositoryFactory.createArtifactRepository( "local", new File( "target/localrepo" ).getCanonicalFile().toURL().toExternalForm(), "default", null, null ) );
             request.setRepositorySession( MavenRepositorySystemUtils.newSession() );
-            MavenProject project = projectBuilder.build( pomInfo.getPomFile(), request ).getProject();
+            MavenProject project = projectBuilder.build( pomFile, request ).getProject();
 
             Artifact artifact = artifactFactory.createArtifact( project.getGroupId(), project.getArtifactId(), project
                 .getVersion(), null, project.getPackaging() );
@@ -256,19 +345,19 @@ public class ProjectTool
         catch ( ProjectBuildingException e )
         {
             throw new TestToolsException(
-                                          "Error building MavenProject instance from test pom: " + pomInfo.getPomFile(),
+                                          "Error building MavenProject instance from test pom: " + pomFile,
                                           e );
         }
         catch ( UnknownRepositoryLayoutException e )
         {
             throw new TestToolsException(
-                                         "Error building ArtifactRepository instance from test pom: " + pomInfo.getPomFile(),
+                                         "Error building ArtifactRepository instance from test pom: " + pomFile,
                                          e );
         }
         catch ( IOException e )
         {
             throw new TestToolsException(
-                                         "Error building ArtifactRepository instance from test pom: " + pomInfo.getPomFile(),
+                                         "Error building ArtifactRepository instance from test pom: " + pomFile,
                                          e );
         }
     }
@@ -370,8 +459,15 @@ public class ProjectTool
             Repository localAsRemote = new Repository();
             localAsRemote.setId( "testing.mainLocalAsRemote" );
 
-            File localRepoDir = repositoryTool.findLocalRepositoryDirectory();
-            localAsRemote.setUrl( localRepoDir.toURL().toExternalForm() );
+            if ( remoteRepositoryUrl != null )
+            {
+                localAsRemote.setUrl( remoteRepositoryUrl );
+            }
+            else
+            {
+                File localRepoDir = repositoryTool.findLocalRepositoryDirectory();
+                localAsRemote.setUrl( localRepoDir.toURL().toExternalForm() );
+            }
 
             model.addRepository( localAsRemote );
             model.addPluginRepository( localAsRemote );
@@ -0,0 +1,487 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Minimal HTTP server serving a local directory, typically a repository in the default layout, on localhost. It
+ * lets test builds go through the HTTP transport, as real builds do, without network access: see
+ * {@link ProjectTool#setRemoteRepositoryUrl(String)}. Only <code>GET</code> and <code>HEAD</code> are supported,
+ * with persistent connections. Each connection is served by its own thread over NIO channels, and files are sent with
+ * <code>FileChannel.transferTo</code>.
+ * <p/>
+ * A fixed latency before each response and a bandwidth per connection can be simulated. The server counts requests,
+ * missing files, bytes sent and concurrent connections.
+ *
+ * @since 3.0.1
+ */
+public class RepositoryServer
+{
+    private static final String CRLF = "\r\n";
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final File basedir;
+
+    private int port;
+
+    private long latency;
+
+    private long bandwidth;
+
+    private ServerSocketChannel serverChannel;
+
+    private ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong notFound = new AtomicLong();
+
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final AtomicInteger maxConnections = new AtomicInteger();
+
+    /**
+     * @param basedir the directory to serve
+     */
+    public RepositoryServer( File basedir )
+    {
+        this.basedir = basedir;
+    }
+
+    /**
+     * Starts listening on localhost.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start()
+        throws IOException
+    {
+        if ( serverChannel != null )
+        {
+            return;
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress( true );
+        serverChannel.socket().bind( new InetSocketAddress( "127.0.0.1", port ) );
+        port = serverChannel.socket().getLocalPort();
+
+        executor = Executors.newCachedThreadPool();
+        executor.execute( new Runnable()
+        {
+            public void run()
+            {
+                accept();
+            }
+        } );
+    }
+
+    /**
+     * Stops listening and closes all connections.
+     */
+    public synchronized void stop()
+    {
+        if ( serverChannel == null )
+        {
+            return;
+        }
+
+        try
+        {
+            serverChannel.close();
+        }
+        catch ( IOException e )
+        {
+            // ignore
+        }
+        executor.shutdownNow();
+        try
+        {
+            executor.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel = null;
+    }
+
+    private void accept()
+    {
+        ServerSocketChannel channel = serverChannel;
+        while ( channel.isOpen() )
+        {
+            final SocketChannel socket;
+            try
+            {
+                socket = channel.accept();
+            }
+            catch ( IOException e )
+            {
+                // closed by stop()
+                return;
+            }
+
+            executor.execute( new Runnable()
+            {
+                public void run()
+                {
+                    serve( socket );
+                }
+            } );
+        }
+    }
+
+    private void serve( SocketChannel socket )
+    {
+        int current = connections.incrementAndGet();
+        for ( int max = maxConnections.get(); current > max; max = maxConnections.get() )
+        {
+            if ( maxConnections.compareAndSet( max, current ) )
+            {
+                break;
+            }
+        }
+
+        try
+        {
+            socket.socket().setTcpNoDelay( true );
+            InputStream in = new BufferedInputStream( Channels.newInputStream( socket ) );
+            while ( handle( in, socket ) )
+            {
+                // next request on the same connection
+            }
+        }
+        catch ( ClosedChannelException e )
+        {
+            // closed by stop()
+        }
+        catch ( IOException e )
+        {
+            // client went away
+        }
+        catch ( InterruptedException e )
+        {
+            // stopped while simulating latency or bandwidth
+        }
+        finally
+        {
+            connections.decrementAndGet();
+            IOUtil.close( socket );
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the connection is kept alive
+     */
+    private boolean handle( InputStream in, SocketChannel socket )
+        throws IOException, InterruptedException
+    {
+        String requestLine = readLine( in );
+        if ( requestLine == null )
+        {
+            return false;
+        }
+
+        boolean keepAlive = requestLine.endsWith( "HTTP/1.1" );
+        for ( String header = readLine( in ); header != null && header.length() > 0; header = readLine( in ) )
+        {
+            String lower = header.toLowerCase( Locale.ENGLISH );
+            if ( lower.startsWith( "connection:" ) )
+            {
+                keepAlive = lower.indexOf( "keep-alive" ) >= 0 || ( keepAlive && lower.indexOf( "close" ) < 0 );
+            }
+        }
+        requests.incrementAndGet();
+
+        if ( latency > 0 )
+        {
+            Thread.sleep( latency );
+        }
+
+        String[] parts = requestLine.split( " " );
+        String method = parts[0];
+        if ( parts.length < 3 || !( "GET".equals( method ) || "HEAD".equals( method ) ) )
+        {
+            sendStatus( socket, "405 Method Not Allowed", keepAlive );
+            return keepAlive;
+        }
+
+        File file = getFile( parts[1] );
+        if ( file == null || !file.isFile() )
+        {
+            notFound.incrementAndGet();
+            sendStatus( socket, "404 Not Found", keepAlive );
+            return keepAlive;
+        }
+
+        FileInputStream input = new FileInputStream( file );
+        try
+        {
+            FileChannel fileChannel = input.getChannel();
+            long length = fileChannel.size();
+            write( socket, "HTTP/1.1 200 OK" + CRLF + "Content-Type: application/octet-stream" + CRLF
+                + "Content-Length: " + length + CRLF + "Connection: " + ( keepAlive ? "keep-alive" : "close" ) + CRLF
+                + CRLF );
+            if ( "GET".equals( method ) )
+            {
+                send( fileChannel, length, socket );
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+        return keepAlive;
+    }
+
+    private void send( FileChannel fileChannel, long length, SocketChannel socket )
+        throws IOException, InterruptedException
+    {
+        // with a bandwidth, send about ten chunks per second, each one once it is due
+        long chunkSize = bandwidth > 0 ? Math.max( 1, Math.min( CHUNK_SIZE, bandwidth / 10 ) ) : length;
+        long start = System.nanoTime();
+        long position = 0;
+        while ( position < length )
+        {
+            long chunk = Math.min( chunkSize, length - position );
+            if ( bandwidth > 0 )
+            {
+                long wait = start + ( position + chunk ) * 1000000000L / bandwidth - System.nanoTime();
+                if ( wait > 0 )
+                {
+                    Thread.sleep( wait / 1000000L, (int) ( wait % 1000000L ) );
+                }
+            }
+
+            // counted before the client can see the bytes
+            bytesSent.addAndGet( chunk );
+            long sent = fileChannel.transferTo( position, chunk, socket );
+            if ( sent < chunk )
+            {
+                bytesSent.addAndGet( sent - chunk );
+            }
+            position += sent;
+        }
+    }
+
+    private File getFile( String target )
+    {
+        try
+        {
+            String path = new URI( target ).getPath();
+            if ( path == null )
+            {
+                return null;
+            }
+            File file = new File( basedir, path ).getCanonicalFile();
+            String root = basedir.getCanonicalPath();
+            return file.getPath().equals( root ) || file.getPath().startsWith( root + File.separator ) ? file : null;
+        }
+        catch ( URISyntaxException e )
+        {
+            return null;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+
+    private void sendStatus( SocketChannel socket, String status, boolean keepAlive )
+        throws IOException
+    {
+        write( socket, "HTTP/1.1 " + status + CRLF + "Content-Length: 0" + CRLF + "Connection: "
+            + ( keepAlive ? "keep-alive" : "close" ) + CRLF + CRLF );
+    }
+
+    private void write( SocketChannel socket, String text )
+        throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( text.getBytes( "ISO-8859-1" ) );
+        while ( buffer.hasRemaining() )
+        {
+            socket.write( buffer );
+        }
+    }
+
+    private static String readLine( InputStream in )
+        throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        for ( int c = in.read(); c != '\n'; c = in.read() )
+        {
+            if ( c < 0 )
+            {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if ( c != '\r' )
+            {
+                line.append( (char) c );
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the URL of the served directory, e.g. <code>http://127.0.0.1:1234/</code>
+     * @throws IllegalStateException if the server isn't started
+     */
+    public String getUrl()
+    {
+        if ( serverChannel == null )
+        {
+            throw new IllegalStateException( "The server isn't started." );
+        }
+        return "http://127.0.0.1:" + port + "/";
+    }
+
+    /**
+     * @return the directory served
+     */
+    public File getBasedir()
+    {
+        return basedir;
+    }
+
+    /**
+     * @return the port listened on, or the port to listen on if the server isn't started
+     */
+    public int getPort()
+    {
+        return port;
+    }
+
+    /**
+     * @param port the port to listen on, <code>0</code> for any free port, the default
+     */
+    public void setPort( int port )
+    {
+        this.port = port;
+    }
+
+    /**
+     * @return the latency before each response, in milliseconds
+     */
+    public long getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * @param latency the latency before each response, in milliseconds
+     */
+    public void setLatency( long latency )
+    {
+        this.latency = latency;
+    }
+
+    /**
+     * @return the bandwidth of each connection in bytes per second, or <code>0</code> for no limit
+     */
+    public long getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    /**
+     * @param bandwidth the bandwidth of each connection in bytes per second, or <code>0</code> for no limit
+     */
+    public void setBandwidth( long bandwidth )
+    {
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long getRequestCount()
+    {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests for missing files
+     */
+    public long getNotFoundCount()
+    {
+        return notFound.get();
+    }
+
+    /**
+     * @return the number of bytes of files sent
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return the number of open connections
+     */
+    public int getConnectionCount()
+    {
+        return connections.get();
+    }
+
+    /**
+     * @return the maximum number of concurrent connections seen
+     */
+    public int getMaxConnectionCount()
+    {
+        return maxConnections.get();
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics()
+    {
+        requests.set( 0 );
+        notFound.set( 0 );
+        bytesSent.set( 0 );
+        maxConnections.set( connections.get() );
+    }
+}
@@ -0,0 +1,54 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.codehaus.plexus.util.cli.CommandLineException;
+
+/**
+ * Result of a build run without the invoker, i.e. embedded or by a worker of a {@link MavenWorkerPool}.
+ *
+ * @since 3.0.1
+ */
+final class SimpleInvocationResult
+    implements InvocationResult
+{
+    private final int exitCode;
+
+    private final CommandLineException executionException;
+
+    SimpleInvocationResult( int exitCode, CommandLineException executionException )
+    {
+        this.exitCode = exitCode;
+        this.executionException = executionException;
+    }
+
+    /** {@inheritDoc} */
+    public int getExitCode()
+    {
+        return exitCode;
+    }
+
+    /** {@inheritDoc} */
+    public CommandLineException getExecutionException()
+    {
+        return executionException;
+    }
+}
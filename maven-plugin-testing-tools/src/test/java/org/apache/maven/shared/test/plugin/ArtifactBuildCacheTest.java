@@ -0,0 +1,89 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class ArtifactBuildCacheTest
+    extends TestCase
+{
+    private File project;
+
+    protected void setUp()
+        throws Exception
+    {
+        project = new File( "target/unit/artifact-build-cache" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( project );
+        write( "pom.xml", "<project/>" );
+        write( "src/main/java/Foo.java", "class Foo {}" );
+        write( "src/test/java/FooTest.java", "class FooTest {}" );
+    }
+
+    public void testFingerprint()
+        throws Exception
+    {
+        File pom = new File( project, "pom.xml" );
+        String fingerprint = ArtifactBuildCache.fingerprint( pom, "test" );
+        assertEquals( fingerprint, ArtifactBuildCache.fingerprint( pom, "test" ) );
+        assertFalse( fingerprint.equals( ArtifactBuildCache.fingerprint( pom, "other" ) ) );
+
+        // tests and build outputs do not change the artifact
+        write( "src/test/java/FooTest.java", "class FooTest { }" );
+        write( "target/classes/Foo.class", "compiled" );
+        assertEquals( fingerprint, ArtifactBuildCache.fingerprint( pom, "test" ) );
+
+        write( "src/main/resources/plugin.properties", "a=b" );
+        assertFalse( fingerprint.equals( ArtifactBuildCache.fingerprint( pom, "test" ) ) );
+    }
+
+    public void testStoreAndRestore()
+        throws Exception
+    {
+        File pom = new File( project, "pom-test.xml" );
+        write( "pom-test.xml", "<project><version>test</version></project>" );
+        write( "target/it-build-target/foo-test.jar", "jar" );
+
+        ArtifactBuildCache cache = new ArtifactBuildCache( new File( project, "target/it-build-cache/test" ) );
+        assertNull( cache.restore( "1234", pom ) );
+        cache.store( "1234", pom, "target/it-build-target/foo-test.jar" );
+
+        // e.g. after the test-time POM was deleted on exit and the build directory cleaned
+        pom.delete();
+        FileUtils.deleteDirectory( new File( project, "target/it-build-target" ) );
+
+        assertNull( cache.restore( "5678", pom ) );
+        File artifact = cache.restore( "1234", pom );
+        assertEquals( new File( project, "target/it-build-target/foo-test.jar" ), artifact );
+        assertEquals( "jar", FileUtils.fileRead( artifact ) );
+        assertEquals( "<project><version>test</version></project>", FileUtils.fileRead( pom ) );
+    }
+
+    private void write( String path, String content )
+        throws Exception
+    {
+        File file = new File( project, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), content );
+    }
+}
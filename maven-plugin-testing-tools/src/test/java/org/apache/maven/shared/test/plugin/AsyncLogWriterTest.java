@@ -0,0 +1,83 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class AsyncLogWriterTest
+    extends TestCase
+{
+    public void testWriteAndClose()
+        throws Exception
+    {
+        File file = new File( "target/unit/async-log/build.log" ).getAbsoluteFile();
+        file.delete();
+
+        AsyncLogWriter writer = new AsyncLogWriter( file );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            writer.write( "line " + i );
+        }
+        writer.close();
+
+        assertEquals( 1000, writer.getWrittenLines() );
+        assertEquals( 0, writer.getDroppedLines() );
+
+        String[] lines = FileUtils.fileRead( file ).split( "\r?\n" );
+        assertEquals( 1000, lines.length );
+        assertEquals( "line 0", lines[0] );
+        assertEquals( "line 999", lines[999] );
+
+        try
+        {
+            writer.write( "too late" );
+            fail( "a closed writer must reject lines" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+
+    public void testDropOnOverflow()
+        throws Exception
+    {
+        File file = new File( "target/unit/async-log/dropped.log" ).getAbsoluteFile();
+        file.delete();
+
+        AsyncLogWriter writer = new AsyncLogWriter( file, 1, AsyncLogWriter.OverflowPolicy.DROP, 16, 200 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            writer.write( "line " + i );
+        }
+        writer.close();
+
+        assertEquals( 100000, writer.getWrittenLines() + writer.getDroppedLines() );
+        if ( writer.getDroppedLines() > 0 )
+        {
+            assertTrue( FileUtils.fileRead( file ).indexOf( "log lines dropped]" ) >= 0 );
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.codehaus.plexus.util.FileUtils;
+
+public class BuildSchedulerTest
+    extends TestCase
+{
+    private final List<String> builds = Collections.synchronizedList( new ArrayList<String>() );
+
+    /** Runs no Maven: the goal of a request is its name, and builds named "fail" fail. */
+    private final BuildTool buildTool = new BuildTool()
+    {
+        public InvocationResult executeMaven( InvocationRequest request )
+        {
+            String name = request.getGoals().get( 0 );
+            builds.add( name );
+            try
+            {
+                Thread.sleep( 20 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return new SimpleInvocationResult( "fail".equals( name ) ? 1 : 0, null );
+        }
+    };
+
+    public void testLongestFirst()
+        throws Exception
+    {
+        File historyFile = new File( "target/unit/build-scheduler/history.properties" );
+        historyFile.getParentFile().mkdirs();
+        FileUtils.fileWrite( historyFile.getPath(), "short=10\nlong=1000\n" );
+
+        BuildScheduler scheduler = new BuildScheduler( buildTool );
+        scheduler.setThreads( 1 );
+        scheduler.setHistoryFile( historyFile );
+        Future<InvocationResult> shortBuild = scheduler.schedule( "short", request( "short" ) );
+        scheduler.schedule( "long", request( "long" ) );
+        scheduler.schedule( "new", request( "new" ) );
+        assertEquals( 0, builds.size() );
+
+        scheduler.start();
+        assertEquals( 0, shortBuild.get().getExitCode() );
+        scheduler.shutdown();
+        assertEquals( "[new, long, short]", builds.toString() );
+
+        scheduler = new BuildScheduler( buildTool );
+        scheduler.setHistoryFile( historyFile );
+        assertTrue( scheduler.getRecordedDuration( "new" ) >= 20 );
+        assertTrue( scheduler.getRecordedDuration( "short" ) >= 20 );
+    }
+
+    public void testFailFast()
+        throws Exception
+    {
+        BuildScheduler scheduler = new BuildScheduler( buildTool );
+        scheduler.setThreads( 1 );
+        scheduler.setFailFast( true );
+        Future<InvocationResult> failed = scheduler.schedule( "fail", request( "fail" ) );
+        Future<InvocationResult> second = scheduler.schedule( "second", request( "second" ) );
+        Future<InvocationResult> third = scheduler.schedule( "third", request( "third" ) );
+        scheduler.shutdown();
+
+        assertEquals( 1, failed.get().getExitCode() );
+        assertTrue( second.isCancelled() );
+        assertTrue( third.isCancelled() );
+        assertEquals( "[fail]", builds.toString() );
+    }
+
+    public void testIsolatedLocalRepositories()
+    {
+        BuildScheduler scheduler = new BuildScheduler( buildTool );
+        File root = new File( "target/unit/build-scheduler/repositories" );
+        scheduler.setLocalRepositoryRoot( root );
+        InvocationRequest request = request( "a" );
+        scheduler.schedule( "a", request );
+        assertEquals( new File( root, "a" ), request.getLocalRepositoryDirectory( null ) );
+    }
+
+    private static InvocationRequest request( String name )
+    {
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals( Collections.singletonList( name ) );
+        return request;
+    }
+}
@@ -0,0 +1,119 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class BuildTimelineTest
+    extends TestCase
+{
+    private static final String SEPARATOR =
+        "[INFO] ------------------------------------------------------------------------";
+
+    public void testMaven3Output()
+    {
+        BuildTimeline timeline = new BuildTimeline();
+        timeline.consumeLine( "[INFO] Scanning for projects...", 1000 );
+        timeline.consumeLine( "[INFO] ", 1000 );
+        timeline.consumeLine( "[INFO] ------------------------< org.example:foo >------------------------", 1010 );
+        timeline.consumeLine( "[INFO] Building foo 1.0-SNAPSHOT                                   [1/2]", 1010 );
+        timeline.consumeLine( "[INFO] --------------------------------[ jar ]---------------------------------", 1010 );
+        timeline.consumeLine( "[INFO] Downloading from central: https://repo/p/x.pom", 1020 );
+        timeline.consumeLine( "[INFO] Downloaded from central: https://repo/p/x.pom (2 kB at 10 kB/s)", 1070 );
+        timeline.consumeLine( "[INFO] \u001B[1m--- compiler:3.11.0:compile (default-compile) @ foo ---\u001B[m", 1100 );
+        timeline.consumeLine( "[INFO] Building jar: /work/foo/target/foo.jar", 1200 );
+        timeline.consumeLine( "[INFO] --- surefire:3.2.2:test (default-test) @ foo ---", 1400 );
+        timeline.consumeLine( "[INFO] Tests run: 1, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 1 s", 1500 );
+        timeline.consumeLine( "[ERROR] Tests run: 3, Failures: 1, Errors: 0, Skipped: 1", 1500 );
+        timeline.consumeLine( "[INFO] ", 1500 );
+        timeline.consumeLine( "[INFO] ------------------------< org.example:bar >------------------------", 1600 );
+        timeline.consumeLine( "[INFO] Building bar 1.0-SNAPSHOT                                   [2/2]", 1600 );
+        timeline.consumeLine( "[INFO] --- compiler:3.11.0:compile (default-compile) @ bar ---", 1600 );
+        timeline.consumeLine( SEPARATOR, 1900 );
+        timeline.consumeLine( "[INFO] Reactor Summary:", 1900 );
+        timeline.consumeLine( SEPARATOR, 1950 );
+        timeline.consumeLine( "[INFO] BUILD SUCCESS", 1950 );
+
+        assertEquals( 950, timeline.getEndMillis() - timeline.getStartMillis() );
+        assertEquals( "SUCCESS", timeline.getResult() );
+
+        List<BuildTimeline.Module> modules = timeline.getModules();
+        assertEquals( 2, modules.size() );
+        BuildTimeline.Module foo = modules.get( 0 );
+        assertEquals( "org.example:foo", foo.getId() );
+        assertEquals( "foo", foo.getName() );
+        assertEquals( "1.0-SNAPSHOT", foo.getVersion() );
+        assertEquals( 590, foo.getDuration() );
+        assertEquals( 2, foo.getMojoExecutions().size() );
+        BuildTimeline.MojoExecution compile = foo.getMojoExecutions().get( 0 );
+        assertEquals( "compiler", compile.getPlugin() );
+        assertEquals( "3.11.0", compile.getVersion() );
+        assertEquals( "compile", compile.getGoal() );
+        assertEquals( "default-compile", compile.getExecutionId() );
+        assertEquals( 300, compile.getDuration() );
+        assertEquals( 200, foo.getMojoExecutions().get( 1 ).getDuration() );
+        assertEquals( 1, foo.getTestSummaries().size() );
+        assertEquals( 3, foo.getTestSummaries().get( 0 ).getRun() );
+        assertEquals( 1, foo.getTestSummaries().get( 0 ).getFailures() );
+
+        assertEquals( "org.example:bar", modules.get( 1 ).getId() );
+        assertEquals( 300, modules.get( 1 ).getMojoExecutions().get( 0 ).getDuration() );
+
+        Map<String, Long> goals = timeline.getGoalDurations();
+        Iterator<Map.Entry<String, Long>> iterator = goals.entrySet().iterator();
+        Map.Entry<String, Long> longest = iterator.next();
+        assertEquals( "compiler:compile", longest.getKey() );
+        assertEquals( 600, longest.getValue().longValue() );
+
+        assertEquals( 1, timeline.getDownloads().size() );
+        assertEquals( "2 kB", timeline.getDownloads().get( 0 ).getSize() );
+        assertEquals( 50, timeline.getDownloads().get( 0 ).getDuration() );
+
+        String json = timeline.toJson();
+        assertTrue( json, json.indexOf( "\"result\": \"SUCCESS\"" ) > 0 );
+        assertTrue( json, json.indexOf( "\"compiler:compile\": 600" ) > 0 );
+        assertTrue( json, json.indexOf( "\"url\": \"https://repo/p/x.pom\"" ) > 0 );
+    }
+
+    public void testMaven2Output()
+    {
+        BuildTimeline timeline = new BuildTimeline();
+        timeline.consumeLine( SEPARATOR, 0 );
+        timeline.consumeLine( "[INFO] Building Unnamed - org.example:foo:jar:1.0", 0 );
+        timeline.consumeLine( SEPARATOR, 0 );
+        timeline.consumeLine( "[INFO] [resources:resources {execution: default-resources}]", 10 );
+        timeline.consumeLine( "[INFO] [compiler:compile]", 30 );
+        timeline.consumeLine( SEPARATOR, 100 );
+        timeline.consumeLine( "[INFO] BUILD SUCCESSFUL", 100 );
+
+        BuildTimeline.Module module = timeline.getModules().get( 0 );
+        assertEquals( "Unnamed - org.example:foo:jar:1.0", module.getName() );
+        assertEquals( 2, module.getMojoExecutions().size() );
+        assertEquals( "default-resources", module.getMojoExecutions().get( 0 ).getExecutionId() );
+        assertEquals( 20, module.getMojoExecutions().get( 0 ).getDuration() );
+        assertEquals( "compile", module.getMojoExecutions().get( 1 ).getGoal() );
+        assertEquals( 70, module.getMojoExecutions().get( 1 ).getDuration() );
+        assertEquals( "SUCCESSFUL", timeline.getResult() );
+    }
+}
@@ -0,0 +1,111 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+public class EmbeddedMavenLauncherTest
+    extends TestCase
+{
+    public void testLineOutputStream()
+        throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        EmbeddedMavenLauncher.LineOutputStream out =
+            new EmbeddedMavenLauncher.LineOutputStream( new InvocationOutputHandler()
+            {
+                public void consumeLine( String line )
+                {
+                    lines.add( line );
+                }
+            } );
+
+        out.write( "first\r\nsec".getBytes( "UTF-8" ) );
+        out.write( "ond\n\nthird, ignored".getBytes( "UTF-8" ), 0, 10 );
+        out.write( '\r' );
+        out.write( '\n' );
+        out.write( "last".getBytes( "UTF-8" ) );
+        assertEquals( Arrays.asList( "first", "second", "", "third" ), lines );
+
+        out.close();
+        assertEquals( Arrays.asList( "first", "second", "", "third", "last" ), lines );
+    }
+
+    public void testLineOutputStreamWithoutHandler()
+        throws IOException
+    {
+        EmbeddedMavenLauncher.LineOutputStream out = new EmbeddedMavenLauncher.LineOutputStream( null );
+        out.write( "dropped\n".getBytes( "UTF-8" ) );
+        out.close();
+    }
+
+    public void testBuildCommandline()
+        throws Exception
+    {
+        File basedir = new File( "target/unit/embedded-launcher" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( basedir );
+        File mavenHome = new File( basedir, "maven-home" );
+        File mvn = new File( mavenHome, "bin/mvn" );
+        mvn.getParentFile().mkdirs();
+        FileUtils.fileWrite( mvn.getPath(), "" );
+        File project = new File( basedir, "project" );
+        project.mkdirs();
+        FileUtils.fileWrite( new File( project, "pom.xml" ).getPath(), "" );
+        File localRepository = new File( basedir, "repository" );
+        localRepository.mkdirs();
+
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setBaseDirectory( project );
+        request.setGoals( Arrays.asList( "clean", "install" ) );
+        request.setInteractive( false );
+
+        Commandline commandline = EmbeddedMavenLauncher.buildCommandline( request, mavenHome, localRepository );
+        List<String> arguments = Arrays.asList( commandline.getArguments() );
+        assertTrue( arguments.toString(), arguments.contains( "clean" ) );
+        assertTrue( arguments.toString(), arguments.contains( "install" ) );
+        assertTrue( arguments.toString(), arguments.contains( "-B" ) );
+        boolean repositorySet = false;
+        for ( String argument : arguments )
+        {
+            repositorySet |= argument.startsWith( "-Dmaven.repo.local=" );
+        }
+        assertTrue( arguments.toString(), repositorySet );
+        assertEquals( project.getCanonicalFile(),
+                      EmbeddedMavenLauncher.getWorkingDirectory( commandline ).getCanonicalFile() );
+    }
+
+    public void testDefaultWorkingDirectory()
+    {
+        assertEquals( new File( System.getProperty( "user.dir" ) ),
+                      EmbeddedMavenLauncher.getWorkingDirectory( new Commandline() ) );
+    }
+}
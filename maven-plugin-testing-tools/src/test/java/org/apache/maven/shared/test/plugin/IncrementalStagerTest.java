@@ -0,0 +1,108 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class IncrementalStagerTest
+    extends TestCase
+{
+    private File project;
+
+    private File staging;
+
+    protected void setUp()
+        throws Exception
+    {
+        File base = new File( "target/unit/incremental-stager" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( base );
+        project = new File( base, "project" );
+        staging = new File( base, "staging" );
+
+        write( "pom.xml", "<project/>" );
+        write( "src/main/java/Foo.java", "class Foo {}" );
+        write( "src/main/resources/a b.txt", "spaces" );
+        write( "target/classes/Foo.class", "compiled" );
+        write( ".git/HEAD", "ref" );
+        write( "module/.svn/entries", "svn" );
+        write( "module/target/kept.txt", "only the root target is a build output" );
+    }
+
+    public void testIncrementalStaging()
+        throws Exception
+    {
+        IncrementalStager stager = new IncrementalStager( staging );
+        stager.stage( project );
+
+        assertEquals( 4, stager.getScannedFiles() );
+        assertEquals( 4, stager.getCopiedFiles() );
+        assertEquals( "class Foo {}", FileUtils.fileRead( new File( staging, "src/main/java/Foo.java" ) ) );
+        assertTrue( new File( staging, "src/main/resources/a b.txt" ).isFile() );
+        assertTrue( new File( staging, "module/target/kept.txt" ).isFile() );
+        assertFalse( new File( staging, "target" ).exists() );
+        assertFalse( new File( staging, ".git" ).exists() );
+        assertFalse( new File( staging, "module/.svn" ).exists() );
+
+        // nothing changed: nothing is read
+        stager = new IncrementalStager( staging );
+        stager.stage( project );
+        assertEquals( 0, stager.getHashedFiles() );
+        assertEquals( 0, stager.getCopiedFiles() );
+
+        // touched only: hashed, not copied
+        File pom = new File( project, "pom.xml" );
+        pom.setLastModified( pom.lastModified() - 10000 );
+        // changed
+        write( "src/main/java/Foo.java", "class Foo { int bar; }" );
+        // deleted
+        new File( project, "module/target/kept.txt" ).delete();
+
+        stager.stage( project );
+        assertEquals( 2, stager.getHashedFiles() );
+        assertEquals( 1, stager.getCopiedFiles() );
+        assertEquals( 1, stager.getDeletedFiles() );
+        assertEquals( "class Foo { int bar; }", FileUtils.fileRead( new File( staging, "src/main/java/Foo.java" ) ) );
+        assertFalse( new File( staging, "module/target/kept.txt" ).exists() );
+    }
+
+    public void testStagedFileRestored()
+        throws Exception
+    {
+        IncrementalStager stager = new IncrementalStager( staging );
+        stager.stage( project );
+
+        new File( staging, "pom.xml" ).delete();
+        stager.stage( project );
+        assertEquals( 1, stager.getCopiedFiles() );
+        assertEquals( "<project/>", FileUtils.fileRead( new File( staging, "pom.xml" ) ) );
+    }
+
+    private void write( String path, String content )
+        throws Exception
+    {
+        File file = new File( project, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), content );
+    }
+}
@@ -0,0 +1,132 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class LocalRepositoryLockTest
+    extends TestCase
+{
+    private File repository;
+
+    protected void setUp()
+        throws Exception
+    {
+        File base = new File( "target/unit/local-repository-lock" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( base );
+        repository = new File( base, "repository" );
+    }
+
+    public void testStagedOnce()
+        throws Exception
+    {
+        final File pom = new File( repository.getParentFile(), "pom.xml" );
+        final List<String> events = Collections.synchronizedList( new ArrayList<String>() );
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < 4; i++ )
+        {
+            threads.add( new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        LocalRepositoryLock lock = LocalRepositoryLock.acquire( repository );
+                        try
+                        {
+                            if ( lock.isStaged( pom, "1234" ) )
+                            {
+                                events.add( "reused" );
+                            }
+                            else
+                            {
+                                events.add( "start" );
+                                Thread.sleep( 100 );
+                                lock.markStaged( pom, "1234" );
+                                events.add( "end" );
+                            }
+                        }
+                        finally
+                        {
+                            lock.release();
+                        }
+                    }
+                    catch ( Exception e )
+                    {
+                        events.add( e.toString() );
+                    }
+                }
+            } );
+        }
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals( "[start, end, reused, reused, reused]", events.toString() );
+        assertTrue( new File( repository.getParentFile(), "repository.lock" ).isFile() );
+
+        LocalRepositoryLock lock = LocalRepositoryLock.acquire( repository );
+        try
+        {
+            assertTrue( lock.isStaged( pom, "1234" ) );
+            assertFalse( "a changed project is staged again", lock.isStaged( pom, "5678" ) );
+            assertFalse( lock.isStaged( new File( "other/pom.xml" ), "1234" ) );
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    public void testStateReplaced()
+        throws Exception
+    {
+        File pom = new File( repository.getParentFile(), "pom.xml" );
+        File other = new File( repository.getParentFile(), "other/pom.xml" );
+        LocalRepositoryLock lock = LocalRepositoryLock.acquire( repository );
+        try
+        {
+            lock.markStaged( pom, "1234" );
+            lock.markStaged( other, "1234" );
+            lock.markStaged( pom, "5678" );
+            assertTrue( lock.isStaged( pom, "5678" ) );
+            assertFalse( lock.isStaged( pom, "1234" ) );
+            assertTrue( lock.isStaged( other, "1234" ) );
+            assertEquals( 1, repository.list().length );
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+}
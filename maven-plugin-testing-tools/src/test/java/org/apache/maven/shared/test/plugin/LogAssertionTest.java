@@ -0,0 +1,100 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+public class LogAssertionTest
+    extends TestCase
+{
+    public void testMustNotContain()
+    {
+        LogAssertion assertion = LogAssertion.mustNotContain( "\\[ERROR\\]" );
+        assertNull( assertion.checkLine( "[INFO] BUILD SUCCESS", 0 ) );
+        assertNotNull( assertion.checkLine( "[ERROR] Failed to execute goal", 0 ) );
+        assertNull( assertion.checkEnd( 0 ) );
+    }
+
+    public void testExpectWithin()
+    {
+        LogAssertion assertion = LogAssertion.expectWithin( "BUILD SUCCESS", 1000 );
+        assertNull( assertion.checkLine( "[INFO] Scanning for projects...", 500 ) );
+        assertNull( assertion.checkTime( 1000 ) );
+        assertNotNull( assertion.checkTime( 1001 ) );
+        assertNotNull( assertion.checkEnd( 1001 ) );
+
+        assertion = LogAssertion.expectWithin( "BUILD SUCCESS", 1000 );
+        assertNull( assertion.checkLine( "[INFO] BUILD SUCCESS", 900 ) );
+        assertNull( assertion.checkTime( 2000 ) );
+        assertNull( assertion.checkEnd( 2000 ) );
+    }
+
+    public void testMonitorCancelsOnFirstFailure()
+    {
+        final int[] cancelled = new int[1];
+        LogMonitor monitor =
+            new LogMonitor( Arrays.asList( LogAssertion.mustNotContain( "ERROR" ),
+                                           LogAssertion.mustContain( "done" ) ) );
+        monitor.start( new Runnable()
+        {
+            public void run()
+            {
+                cancelled[0]++;
+            }
+        } );
+        monitor.consumeLine( "[INFO] fine" );
+        assertNull( monitor.getFailure() );
+        monitor.consumeLine( "[ERROR] first" );
+        monitor.consumeLine( "[ERROR] second" );
+        monitor.end();
+
+        assertEquals( 1, cancelled[0] );
+        assertTrue( monitor.getFailure(), monitor.getFailure().endsWith( "[ERROR] first" ) );
+    }
+
+    public void testMonitorTimeout()
+        throws Exception
+    {
+        LogMonitor monitor = new LogMonitor( Collections.singletonList( LogAssertion.expectWithin( "never", 50 ) ) );
+        final Object cancelled = new Object();
+        monitor.start( new Runnable()
+        {
+            public void run()
+            {
+                synchronized ( cancelled )
+                {
+                    cancelled.notifyAll();
+                }
+            }
+        } );
+        synchronized ( cancelled )
+        {
+            if ( monitor.getFailure() == null )
+            {
+                cancelled.wait( 5000 );
+            }
+        }
+        assertNotNull( "the watchdog must fail the assertion without any line", monitor.getFailure() );
+        monitor.end();
+    }
+}
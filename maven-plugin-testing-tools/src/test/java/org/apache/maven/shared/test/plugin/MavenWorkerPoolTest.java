@@ -0,0 +1,79 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.codehaus.plexus.util.FileUtils;
+
+public class MavenWorkerPoolTest
+    extends TestCase
+{
+    public void testStartFailure()
+        throws Exception
+    {
+        // a Maven home the command-line builder accepts, but the worker cannot boot
+        File mavenHome = new File( "target/unit/worker-pool/maven-home" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( mavenHome );
+        File mvn = new File( mavenHome, "bin/mvn" );
+        mvn.getParentFile().mkdirs();
+        FileUtils.fileWrite( mvn.getPath(), "" );
+        FileUtils.fileWrite( new File( mavenHome, "pom.xml" ).getPath(), "" );
+
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setPomFile( new File( mavenHome, "pom.xml" ) );
+        request.setGoals( Collections.singletonList( "validate" ) );
+
+        MavenWorkerPool pool = new MavenWorkerPool( mavenHome );
+        pool.setSize( 1 );
+        try
+        {
+            pool.execute( request, null );
+            fail( "the worker must fail to start" );
+        }
+        catch ( TestToolsException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "m2.conf" ) > 0 );
+        }
+
+        // the failed worker does not count against the size of the pool
+        try
+        {
+            pool.execute( request, null );
+            fail( "the worker must fail to start" );
+        }
+        catch ( TestToolsException e )
+        {
+            // expected
+        }
+
+        List<MavenWorkerPool.WorkerStatistics> statistics = pool.getStatistics();
+        assertEquals( 2, statistics.size() );
+        assertTrue( statistics.get( 0 ).isRetired() );
+        assertEquals( 0, statistics.get( 0 ).getBuilds() );
+        pool.close();
+    }
+}
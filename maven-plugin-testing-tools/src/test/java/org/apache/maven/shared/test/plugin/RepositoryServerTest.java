@@ -0,0 +1,116 @@
+package org.apache.maven.shared.test.plugin;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+public class RepositoryServerTest
+    extends TestCase
+{
+    private File basedir;
+
+    private RepositoryServer server;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        basedir = new File( "target/unit/repository-server" );
+        FileUtils.deleteDirectory( basedir );
+        File file = new File( basedir, "org/test/a/1.0/a-1.0.jar" );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getPath(), "0123456789" );
+
+        server = new RepositoryServer( basedir );
+        server.start();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        server.stop();
+        super.tearDown();
+    }
+
+    private String get( String path )
+        throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( server.getUrl() + path ).openConnection();
+        InputStream in = connection.getInputStream();
+        try
+        {
+            return IOUtil.toString( in );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    public void testServeFiles()
+        throws Exception
+    {
+        assertEquals( "0123456789", get( "org/test/a/1.0/a-1.0.jar" ) );
+        assertEquals( "0123456789", get( "org/test/a/1.0/a-1.0.jar" ) );
+        try
+        {
+            get( "org/test/a/1.0/a-1.0.pom" );
+            fail( "the pom doesn't exist" );
+        }
+        catch ( FileNotFoundException e )
+        {
+            // expected
+        }
+        try
+        {
+            get( "../repository-server/org/test/a/1.0/a-1.0.jar" );
+        }
+        catch ( FileNotFoundException e )
+        {
+            // depending on the client, the path is normalized or refused
+        }
+
+        assertTrue( server.getRequestCount() >= 3 );
+        assertTrue( server.getNotFoundCount() >= 1 );
+        assertEquals( 10 * ( server.getRequestCount() - server.getNotFoundCount() ), server.getBytesSent() );
+        assertTrue( server.getMaxConnectionCount() >= 1 );
+    }
+
+    public void testLatencyAndBandwidth()
+        throws Exception
+    {
+        server.setLatency( 50 );
+        server.setBandwidth( 100 );
+
+        long start = System.currentTimeMillis();
+        assertEquals( "0123456789", get( "org/test/a/1.0/a-1.0.jar" ) );
+        // 50 ms of latency, then 10 bytes at 100 bytes per second
+        assertTrue( System.currentTimeMillis() - start >= 140 );
+    }
+}